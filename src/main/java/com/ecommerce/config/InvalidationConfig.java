@@ -0,0 +1,38 @@
+package com.ecommerce.config;
+
+import com.ecommerce.service.InMemoryInvalidationTransport;
+import com.ecommerce.service.InvalidationTransport;
+import com.ecommerce.service.PostgresInvalidationTransport;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class InvalidationConfig {
+    
+    @ConfigProperty(name = "app.invalidation.transport", defaultValue = "postgres")
+    String transport;
+    
+    @ConfigProperty(name = "app.invalidation.channel", defaultValue = "catalog_invalidation")
+    String channel;
+    
+    @Inject
+    Instance<PgPool> pool;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Produces
+    @Singleton
+    InvalidationTransport invalidationTransport() {
+        if ("memory".equalsIgnoreCase(transport)) {
+            return new InMemoryInvalidationTransport();
+        }
+        return new PostgresInvalidationTransport(pool.get(), vertx, channel);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheStatsDTO {
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private long evictedWeight;
+    private long size;
+    private long weight;
+    private long maximumWeight;
+    
+    public CacheStatsDTO(long hits, long misses, long evictions, long evictedWeight,
+            long size, long weight, long maximumWeight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRate = hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+        this.evictions = evictions;
+        this.evictedWeight = evictedWeight;
+        this.size = size;
+        this.weight = weight;
+        this.maximumWeight = maximumWeight;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CartDTO {
+    private String userId;
+    private List<Item> items = new ArrayList<>();
+    private BigDecimal totalAmount;
+    private int itemCount;
+    
+    public CartDTO(String userId, BigDecimal totalAmount, int itemCount) {
+        this.userId = userId;
+        this.totalAmount = totalAmount;
+        this.itemCount = itemCount;
+    }
+    
+    @Data
+    public static class Item {
+        private Long productId;
+        private String productName;
+        private Integer quantity;
+        private BigDecimal price;
+        private BigDecimal subtotal;
+        
+        public Item(Long productId, String productName, Integer quantity, BigDecimal price, BigDecimal subtotal) {
+            this.productId = productId;
+            this.productName = productName;
+            this.quantity = quantity;
+            this.price = price;
+            this.subtotal = subtotal;
+        }
+    }
+}
\ No newline at end of file
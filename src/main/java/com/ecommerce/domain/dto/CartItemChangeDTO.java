@@ -0,0 +1,16 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import jakarta.validation.constraints.NotNull;
+
+@Data
+public class CartItemChangeDTO {
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+    
+    // The line's new quantity, 0 removing it; added to the current quantity when increment is set
+    @NotNull(message = "Quantity is required")
+    private Integer quantity;
+    
+    private Boolean increment = false;
+}
\ No newline at end of file
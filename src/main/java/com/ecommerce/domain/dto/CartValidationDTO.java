@@ -0,0 +1,68 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CartValidationDTO {
+    // The cart with every line at its product's current price
+    private CartDTO cart;
+    private BigDecimal previousTotal;
+    private List<PriceChange> priceChanges = new ArrayList<>();
+    private List<Unavailable> unavailable = new ArrayList<>();
+    private List<Shortfall> shortfalls = new ArrayList<>();
+    
+    // Nothing stands in the way of checkout; repriced lines still need the shopper's review
+    public boolean isValid() {
+        return unavailable.isEmpty() && shortfalls.isEmpty();
+    }
+    
+    public boolean isChanged() {
+        return !priceChanges.isEmpty() || !isValid();
+    }
+    
+    @Data
+    public static class PriceChange {
+        private Long productId;
+        private String productName;
+        private BigDecimal previousPrice;
+        private BigDecimal price;
+        
+        public PriceChange(Long productId, String productName, BigDecimal previousPrice, BigDecimal price) {
+            this.productId = productId;
+            this.productName = productName;
+            this.previousPrice = previousPrice;
+            this.price = price;
+        }
+    }
+    
+    @Data
+    public static class Unavailable {
+        private Long productId;
+        private String productName;
+        private String reason;
+        
+        public Unavailable(Long productId, String productName, String reason) {
+            this.productId = productId;
+            this.productName = productName;
+            this.reason = reason;
+        }
+    }
+    
+    @Data
+    public static class Shortfall {
+        private Long productId;
+        private String productName;
+        private int requested;
+        private long available;
+        
+        public Shortfall(Long productId, String productName, int requested, long available) {
+            this.productId = productId;
+            this.productName = productName;
+            this.requested = requested;
+            this.available = available;
+        }
+    }
+}
\ No newline at end of file
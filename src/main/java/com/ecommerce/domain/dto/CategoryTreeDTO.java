@@ -0,0 +1,28 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CategoryTreeDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private Long parentId;
+    private Boolean active;
+    private int depth;
+    private int descendantCount;
+    private List<CategoryTreeDTO> children = new ArrayList<>();
+    
+    public CategoryTreeDTO(Long id, String name, String description, Long parentId, Boolean active,
+            int depth, int descendantCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.parentId = parentId;
+        this.active = active;
+        this.depth = depth;
+        this.descendantCount = descendantCount;
+    }
+}
\ No newline at end of file
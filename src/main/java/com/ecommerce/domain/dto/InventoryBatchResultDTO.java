@@ -0,0 +1,31 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class InventoryBatchResultDTO {
+    private long received;
+    private long recorded;
+    private long failed;
+    private long elapsedMillis;
+    private List<ItemResult> results = new ArrayList<>();
+    
+    @Data
+    public static class ItemResult {
+        private long index;
+        private Long productId;
+        private Long transactionId;
+        private Integer stockQuantity;
+        private String error;
+        
+        public ItemResult(long index, Long productId, Long transactionId, Integer stockQuantity, String error) {
+            this.index = index;
+            this.productId = productId;
+            this.transactionId = transactionId;
+            this.stockQuantity = stockQuantity;
+            this.error = error;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+
+@Data
+public class LowStockAlertDTO {
+    private Long productId;
+    private String productName;
+    private Integer stockQuantity;
+    private Integer threshold;
+    
+    public LowStockAlertDTO(Long productId, String productName, Integer stockQuantity, Integer threshold) {
+        this.productId = productId;
+        this.productName = productName;
+        this.stockQuantity = stockQuantity;
+        this.threshold = threshold;
+    }
+}
\ No newline at end of file
@@ -6,12 +6,14 @@ import java.util.List;
 @Data
 public class PageDTO<T> {
     private List<T> content;
-    private long totalElements;
-    private int totalPages;
-    private int currentPage;
+    private Long totalElements;
+    private Integer totalPages;
+    private Integer currentPage;
     private int pageSize;
     private boolean hasNext;
     private boolean hasPrevious;
+    private String nextCursor;
+    private Long estimatedTotal;
     
     public PageDTO(List<T> content, long totalElements, int page, int size) {
         this.content = content;
@@ -22,4 +24,13 @@ public class PageDTO<T> {
         this.hasNext = page < totalPages - 1;
         this.hasPrevious = page > 0;
     }
+    
+    // Keyset page: no exact count, hasNext comes from fetching one row past the page
+    public PageDTO(List<T> content, int size, boolean hasNext, boolean hasPrevious, String nextCursor) {
+        this.content = content;
+        this.pageSize = size;
+        this.hasNext = hasNext;
+        this.hasPrevious = hasPrevious;
+        this.nextCursor = nextCursor;
+    }
 }
\ No newline at end of file
@@ -29,6 +29,8 @@ public class ProductDTO {
     
     private Set<String> imageUrls;
     
+    private Set<String> tags;
+    
     private Double averageRating;
     
     private Boolean active;
@@ -0,0 +1,38 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+@Data
+public class ProductDetailDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private Integer stockQuantity;
+    private Long categoryId;
+    private String categoryName;
+    private List<Image> images;
+    private Set<String> tags;
+    private Double averageRating;
+    private Boolean active;
+    private Long version;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    
+    @Data
+    public static class Image {
+        private Long id;
+        private String imageUrl;
+        private Boolean isCover;
+        
+        public Image(Long id, String imageUrl, Boolean isCover) {
+            this.id = id;
+            this.imageUrl = imageUrl;
+            this.isCover = isCover;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class ProductExportDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private Integer stockQuantity;
+    private Long categoryId;
+    private String categoryName;
+    private Double averageRating;
+    private String imageUrl;
+    private LocalDateTime updatedAt;
+    
+    public ProductExportDTO(Long id, String name, String description, BigDecimal price, Integer stockQuantity,
+            Long categoryId, String categoryName, Double averageRating, String imageUrl, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.averageRating = averageRating;
+        this.imageUrl = imageUrl;
+        this.updatedAt = updatedAt;
+    }
+}
\ No newline at end of file
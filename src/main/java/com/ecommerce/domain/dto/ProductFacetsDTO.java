@@ -0,0 +1,30 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class ProductFacetsDTO {
+    private long totalElements;
+    private Map<Long, Long> categories;
+    private List<PriceBucket> priceRanges;
+    private Map<Integer, Long> ratings;
+    private Map<String, Long> tags;
+    private long inStock;
+    private long outOfStock;
+    
+    @Data
+    public static class PriceBucket {
+        private BigDecimal from;
+        private BigDecimal to;
+        private long count;
+        
+        public PriceBucket(BigDecimal from, BigDecimal to, long count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+    }
+}
\ No newline at end of file
@@ -2,19 +2,26 @@ package com.ecommerce.domain.dto;
 
 import lombok.Data;
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Set;
 
 @Data
 public class ProductFilterDTO {
     private String searchTerm;
     private Long categoryId;
+    private Boolean includeSubcategories;
+    // Resolved from the category tree when includeSubcategories is set
+    private List<Long> categoryIds;
     private BigDecimal minPrice;
     private BigDecimal maxPrice;
     private Double minRating;
     private Set<String> tags;
+    private String tagQuery;
     private Boolean inStock;
     private String sortBy;
     private String sortDirection;
     private Integer page;
     private Integer size;
+    private String cursor;
+    private Boolean estimateTotal;
 }
\ No newline at end of file
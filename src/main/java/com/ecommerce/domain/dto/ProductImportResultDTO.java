@@ -0,0 +1,28 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ProductImportResultDTO {
+    private long rows;
+    private long created;
+    private long updated;
+    private long failed;
+    private long elapsedMillis;
+    private long rowsPerMinute;
+    private List<RowError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+    
+    @Data
+    public static class RowError {
+        private long line;
+        private String message;
+        
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import org.jboss.resteasy.reactive.multipart.FileUpload;
+
+@Data
+public class ProductImportUploadDTO {
+    private FileUpload file;
+    private String format;
+}
\ No newline at end of file
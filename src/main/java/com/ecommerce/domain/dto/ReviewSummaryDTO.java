@@ -0,0 +1,41 @@
+package com.ecommerce.domain.dto;
+
+import com.ecommerce.domain.model.RatingAggregate;
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ReviewSummaryDTO {
+    private Long productId;
+    private int reviewCount;
+    private Double averageRating;
+    
+    // Five stars first
+    private List<Bucket> histogram = new ArrayList<>();
+    
+    public ReviewSummaryDTO(Long productId, RatingAggregate ratings) {
+        this.productId = productId;
+        this.reviewCount = ratings.getReviewCount();
+        this.averageRating = reviewCount > 0 ? (double) ratings.getRatingSum() / reviewCount : null;
+        int[] counts = { ratings.getFiveStars(), ratings.getFourStars(), ratings.getThreeStars(),
+            ratings.getTwoStars(), ratings.getOneStar() };
+        for (int i = 0; i < counts.length; i++) {
+            int percentage = reviewCount > 0 ? Math.round(counts[i] * 100f / reviewCount) : 0;
+            histogram.add(new Bucket(5 - i, counts[i], percentage));
+        }
+    }
+    
+    @Data
+    public static class Bucket {
+        private int stars;
+        private int count;
+        private int percentage;
+        
+        public Bucket(int stars, int count, int percentage) {
+            this.stars = stars;
+            this.count = count;
+            this.percentage = percentage;
+        }
+    }
+}
\ No newline at end of file
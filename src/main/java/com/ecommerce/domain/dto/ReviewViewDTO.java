@@ -0,0 +1,31 @@
+package com.ecommerce.domain.dto;
+
+import com.ecommerce.domain.model.Review;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class ReviewViewDTO {
+    private Long id;
+    private Long productId;
+    private String userId;
+    private Integer rating;
+    private String comment;
+    private Integer helpfulVotes;
+    private Boolean verifiedPurchase;
+    private LocalDateTime createdAt;
+    private List<String> imageUrls;
+    
+    public ReviewViewDTO(Review review, Long productId, List<String> imageUrls) {
+        this.id = review.getId();
+        this.productId = productId;
+        this.userId = review.getUserId();
+        this.rating = review.getRating();
+        this.comment = review.getComment();
+        this.helpfulVotes = review.getHelpfulVotes();
+        this.verifiedPurchase = review.getVerifiedPurchase();
+        this.createdAt = review.getCreatedAt();
+        this.imageUrls = imageUrls;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.ecommerce.domain.event;
+
+import lombok.Data;
+
+// Invalidation messages may have been missed; every in-process catalog cache and cart copy must start over
+@Data
+public class CacheFlushEvent {
+    private String reason;
+    
+    public CacheFlushEvent(String reason) {
+        this.reason = reason;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.ecommerce.domain.event;
+
+import lombok.Data;
+
+// A cart was written back at a new version; nodes holding an older copy of it drop that copy
+@Data
+public class CartChangedEvent {
+    private Long cartId;
+    private long version;
+    
+    // Raised from another node's invalidation message rather than a local write
+    private boolean remote;
+    
+    public CartChangedEvent(Long cartId, long version, boolean remote) {
+        this.cartId = cartId;
+        this.version = version;
+        this.remote = remote;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.ecommerce.domain.event;
+
+import com.ecommerce.domain.model.Category;
+import lombok.Data;
+
+@Data
+public class CategoryChangedEvent {
+    private Long categoryId;
+    private boolean deleted;
+    
+    // The saved entity for local writes; null for deletes and remote changes, which observers re-read
+    private Category category;
+    
+    // Raised from another node's invalidation message rather than a local write
+    private boolean remote;
+    
+    public CategoryChangedEvent(Category category) {
+        this.categoryId = category.getId();
+        this.category = category;
+    }
+    
+    public CategoryChangedEvent(Long categoryId, boolean deleted) {
+        this.categoryId = categoryId;
+        this.deleted = deleted;
+    }
+    
+    public CategoryChangedEvent(Long categoryId, boolean deleted, boolean remote) {
+        this(categoryId, deleted);
+        this.remote = remote;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.ecommerce.domain.event;
+
+import com.ecommerce.domain.model.Product;
+import lombok.Data;
+import java.util.Set;
+
+@Data
+public class ProductChangedEvent {
+    private Long productId;
+    
+    // Null when the product was deleted
+    private Product product;
+    
+    // Normalized tag names; null when the write left the product's tags untouched
+    private Set<String> tags;
+    
+    // Raised from another node's invalidation message rather than a local write
+    private boolean remote;
+    
+    public ProductChangedEvent(Product product) {
+        this.productId = product.getId();
+        this.product = product;
+    }
+    
+    public ProductChangedEvent(Product product, Set<String> tags) {
+        this(product);
+        this.tags = tags;
+    }
+    
+    public ProductChangedEvent(Long productId) {
+        this.productId = productId;
+    }
+    
+    public static ProductChangedEvent remote(Product product, Set<String> tags) {
+        ProductChangedEvent event = new ProductChangedEvent(product, tags);
+        event.remote = true;
+        return event;
+    }
+    
+    public static ProductChangedEvent remoteDelete(Long productId) {
+        ProductChangedEvent event = new ProductChangedEvent(productId);
+        event.remote = true;
+        return event;
+    }
+    
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
\ No newline at end of file
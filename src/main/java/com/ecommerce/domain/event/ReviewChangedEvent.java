@@ -0,0 +1,26 @@
+package com.ecommerce.domain.event;
+
+import lombok.Data;
+
+@Data
+public class ReviewChangedEvent {
+    private Long productId;
+    private Long reviewId;
+    
+    // Helpful votes after the write; ignored for deletes
+    private int helpfulVotes;
+    
+    private boolean deleted;
+    
+    public ReviewChangedEvent(Long productId, Long reviewId, int helpfulVotes) {
+        this.productId = productId;
+        this.reviewId = reviewId;
+        this.helpfulVotes = helpfulVotes;
+    }
+    
+    public static ReviewChangedEvent deleted(Long productId, Long reviewId) {
+        ReviewChangedEvent event = new ReviewChangedEvent(productId, reviewId, 0);
+        event.deleted = true;
+        return event;
+    }
+}
\ No newline at end of file
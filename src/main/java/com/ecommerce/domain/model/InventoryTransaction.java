@@ -29,6 +29,10 @@ public class InventoryTransaction extends PanacheEntityBase {
     
     private String reference;
     
+    // Product stock level around this transaction
+    private Integer stockBefore;
+    private Integer stockAfter;
+    
     @Column(nullable = false)
     private LocalDateTime timestamp;
     
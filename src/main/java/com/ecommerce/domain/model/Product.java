@@ -6,6 +6,7 @@ import lombok.EqualsAndHashCode;
 
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -30,6 +31,9 @@ public class Product extends PanacheEntityBase {
     @Column(nullable = false)
     private Integer stockQuantity;
     
+    @Column(nullable = false)
+    private Integer lowStockThreshold = 10;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     private Category category;
@@ -40,11 +44,39 @@ public class Product extends PanacheEntityBase {
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
     private Set<Review> reviews = new HashSet<>();
     
+    @ManyToMany
+    @JoinTable(
+        name = "product_tags",
+        joinColumns = @JoinColumn(name = "product_id"),
+        inverseJoinColumns = @JoinColumn(name = "tag_id")
+    )
+    private Set<Tag> tags = new HashSet<>();
+    
     private Double averageRating;
     
+    @Embedded
+    private RatingAggregate ratings = new RatingAggregate();
+    
     @Column(nullable = false)
     private Boolean active = true;
     
     @Version
     private Long version;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.ecommerce.domain.model;
+
+import lombok.Data;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+// Running review totals for a product, maintained by delta updates as reviews are written
+@Data
+@Embeddable
+public class RatingAggregate {
+    @Column(name = "review_count", nullable = false)
+    private Integer reviewCount = 0;
+    
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+    
+    @Column(name = "rating_1_count", nullable = false)
+    private Integer oneStar = 0;
+    
+    @Column(name = "rating_2_count", nullable = false)
+    private Integer twoStars = 0;
+    
+    @Column(name = "rating_3_count", nullable = false)
+    private Integer threeStars = 0;
+    
+    @Column(name = "rating_4_count", nullable = false)
+    private Integer fourStars = 0;
+    
+    @Column(name = "rating_5_count", nullable = false)
+    private Integer fiveStars = 0;
+}
\ No newline at end of file
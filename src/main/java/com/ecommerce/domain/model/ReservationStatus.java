@@ -0,0 +1,8 @@
+package com.ecommerce.domain.model;
+
+public enum ReservationStatus {
+    HELD,
+    COMMITTED,
+    RELEASED,
+    EXPIRED
+}
\ No newline at end of file
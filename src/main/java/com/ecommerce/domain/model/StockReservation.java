@@ -0,0 +1,58 @@
+package com.ecommerce.domain.model;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Units of one product held for a checkout until payment commits or releases them
+@Data
+@Entity
+@EqualsAndHashCode(callSuper = true)
+@Table(name = "stock_reservations")
+public class StockReservation extends PanacheEntityBase {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String holdId;
+    
+    private Long orderId;
+    
+    @Column(nullable = false)
+    private Long productId;
+    
+    // Inventory shard the units were taken from
+    @Column(nullable = false)
+    private Integer shard;
+    
+    @Column(nullable = false)
+    private Integer quantity;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReservationStatus status;
+    
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
\ No newline at end of file
@@ -2,13 +2,249 @@ package com.ecommerce.domain.repository;
 
 import com.ecommerce.domain.model.Cart;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.reactive.mutiny.Mutiny;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class CartRepository implements PanacheRepository<Cart> {
     
+    // Rows per multi-row statement, well below the bind parameter limit
+    private static final int ROWS_PER_STATEMENT = 1000;
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
     public Uni<Cart> findByUserId(String userId) {
-        return find("userId", userId).firstResult();
+        return find("userId = ?1 order by id", userId).firstResult();
+    }
+    
+    // The shopper's cart as rows of cart id and version, then product id, name, quantity, price and
+    // subtotal of each line (nulls for a cart without lines); no rows when the shopper has no cart
+    public Uni<List<Object[]>> findLines(String userId) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select c.id, c.version, i.product_id, p.name, i.quantity, i.price, i.subtotal " +
+                "from carts c left join cart_items i on i.cart_id = c.id left join products p on p.id = i.product_id " +
+                "where c.id = (select min(id) from carts where user_id = ?1) order by i.id", Object[].class)
+            .setParameter(1, userId)
+            .getResultList());
+    }
+    
+    // Id and version of the shopper's cart; null when the shopper has no cart
+    public Uni<Object[]> findVersion(String userId) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select id, version from carts where user_id = ?1 order by id", Object[].class)
+            .setParameter(1, userId)
+            .setMaxResults(1)
+            .getResultList()
+            .map(rows -> rows.isEmpty() ? null : rows.get(0)));
+    }
+    
+    // Writes buffered cart changes in one transaction: carts not saved yet are created, totals are set,
+    // changed lines are upserted and removed lines deleted. Created carts get their id only here, so a
+    // caller adopts it once the transaction has committed. A cart is only written over the version it was
+    // loaded at, and only created when the shopper has none yet; otherwise another node wrote it first,
+    // and the write is marked as a conflict with none of its lines applied.
+    public Uni<Void> writeBack(List<CartWrite> writes) {
+        LocalDateTime now = LocalDateTime.now();
+        return sessionFactory.withTransaction((session, tx) -> insertCarts(session, writes)
+            .chain(() -> updateTotals(session, writes, now))
+            .chain(() -> {
+                List<Object[]> upserts = new ArrayList<>();
+                List<Object[]> deletes = new ArrayList<>();
+                for (CartWrite write : writes) {
+                    if (write.conflict) {
+                        continue;
+                    }
+                    for (LineWrite line : write.lines) {
+                        if (line.quantity > 0) {
+                            upserts.add(new Object[] { write.cartId, line.productId, line.quantity, line.price,
+                                line.subtotal });
+                        } else {
+                            deletes.add(new Object[] { write.cartId, line.productId });
+                        }
+                    }
+                }
+                return inChunks(session, upserts, CartRepository::upsertLines)
+                    .chain(() -> inChunks(session, deletes, CartRepository::deleteLines));
+            }));
+    }
+    
+    private Uni<Void> insertCarts(Mutiny.Session session, List<CartWrite> writes) {
+        List<CartWrite> created = writes.stream().filter(CartWrite::created).collect(Collectors.toList());
+        if (created.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        StringBuilder sql = new StringBuilder("insert into carts (user_id, total_amount) " +
+            "select v.user_id, v.total from (values ");
+        for (int i = 0; i < created.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(cast(?").append(i * 2 + 1).append(" as varchar), cast(?")
+                .append(i * 2 + 2).append(" as numeric))");
+        }
+        Mutiny.SelectionQuery<Object[]> insert = session.createNativeQuery(sql.append(") as v(user_id, total) " +
+            "where not exists (select 1 from carts c where c.user_id = v.user_id) returning user_id, id").toString(),
+            Object[].class);
+        for (int i = 0; i < created.size(); i++) {
+            insert.setParameter(i * 2 + 1, created.get(i).userId)
+                .setParameter(i * 2 + 2, created.get(i).totalAmount);
+        }
+        return insert.getResultList()
+            .invoke(rows -> {
+                Map<String, CartWrite> byUser = created.stream()
+                    .collect(Collectors.toMap(write -> write.userId, write -> write));
+                rows.forEach(row -> byUser.get((String) row[0]).cartId = ((Number) row[1]).longValue());
+                // The shopper's cart was created by another node meanwhile
+                created.forEach(write -> write.conflict = write.cartId == null);
+            })
+            .replaceWithVoid();
+    }
+    
+    // Carts created above already carry their total
+    private Uni<Void> updateTotals(Mutiny.Session session, List<CartWrite> writes, LocalDateTime now) {
+        List<CartWrite> existing = writes.stream().filter(write -> !write.created()).collect(Collectors.toList());
+        if (existing.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        StringBuilder sql = new StringBuilder("update carts c set total_amount = v.total, " +
+            "version = c.version + 1, updated_at = ?1 from (values ");
+        for (int i = 0; i < existing.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(cast(?").append(i * 3 + 2).append(" as bigint), cast(?")
+                .append(i * 3 + 3).append(" as numeric), cast(?").append(i * 3 + 4).append(" as bigint))");
+        }
+        Mutiny.SelectionQuery<Long> update = session.createNativeQuery(sql.append(") as v(id, total, version) " +
+            "where c.id = v.id and c.version = v.version returning c.id").toString(), Long.class);
+        update.setParameter(1, now);
+        for (int i = 0; i < existing.size(); i++) {
+            update.setParameter(i * 3 + 2, existing.get(i).cartId)
+                .setParameter(i * 3 + 3, existing.get(i).totalAmount)
+                .setParameter(i * 3 + 4, existing.get(i).version);
+        }
+        return update.getResultList()
+            .invoke(ids -> {
+                Set<Long> written = new HashSet<>(ids);
+                for (CartWrite write : existing) {
+                    if (written.contains(write.cartId)) {
+                        write.version++;
+                    } else {
+                        write.conflict = true;
+                    }
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    private static Uni<Integer> upsertLines(Mutiny.Session session, List<Object[]> rows) {
+        StringBuilder sql = new StringBuilder(
+            "insert into cart_items (cart_id, product_id, quantity, price, subtotal) values ");
+        return bind(session, sql, rows, " on conflict (cart_id, product_id) do update set " +
+            "quantity = excluded.quantity, price = excluded.price, subtotal = excluded.subtotal");
+    }
+    
+    private static Uni<Integer> deleteLines(Mutiny.Session session, List<Object[]> rows) {
+        StringBuilder sql = new StringBuilder("delete from cart_items where (cart_id, product_id) in (");
+        return bind(session, sql, rows, ")");
+    }
+    
+    // Appends one parenthesized group of placeholders per row, then binds the rows in order
+    private static Uni<Integer> bind(Mutiny.Session session, StringBuilder sql, List<Object[]> rows, String tail) {
+        int width = rows.get(0).length;
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (");
+            for (int column = 0; column < width; column++) {
+                sql.append(column == 0 ? "?" : ", ?").append(i * width + column + 1);
+            }
+            sql.append(")");
+        }
+        Mutiny.MutationQuery query = session.createNativeQuery(sql.append(tail).toString());
+        for (int i = 0; i < rows.size(); i++) {
+            for (int column = 0; column < width; column++) {
+                query.setParameter(i * width + column + 1, rows.get(i)[column]);
+            }
+        }
+        return query.executeUpdate();
+    }
+    
+    private static Uni<Void> inChunks(Mutiny.Session session, List<Object[]> rows,
+            BiFunction<Mutiny.Session, List<Object[]>, Uni<Integer>> statement) {
+        if (rows.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return Multi.createFrom().range(0, (rows.size() + ROWS_PER_STATEMENT - 1) / ROWS_PER_STATEMENT)
+            .onItem().transformToUniAndConcatenate(chunk -> statement.apply(session, rows.subList(
+                chunk * ROWS_PER_STATEMENT, Math.min((chunk + 1) * ROWS_PER_STATEMENT, rows.size()))))
+            .collect().last()
+            .replaceWithVoid();
+    }
+    
+    // Buffered state of one cart: its total and the lines changed since the last write. The version is
+    // the one the cart was loaded or last written at, and after the write the one it now has.
+    public static class CartWrite {
+        private final String userId;
+        private final boolean created;
+        private Long cartId;
+        private long version;
+        private final BigDecimal totalAmount;
+        private final List<LineWrite> lines;
+        private boolean conflict;
+        
+        public CartWrite(String userId, Long cartId, long version, BigDecimal totalAmount, List<LineWrite> lines) {
+            this.userId = userId;
+            this.created = cartId == null;
+            this.cartId = cartId;
+            this.version = version;
+            this.totalAmount = totalAmount;
+            this.lines = lines;
+        }
+        
+        public Long getCartId() {
+            return cartId;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+        
+        // Another node wrote the cart since it was loaded; nothing of this write was applied
+        public boolean isConflict() {
+            return conflict;
+        }
+        
+        public List<LineWrite> getLines() {
+            return lines;
+        }
+        
+        boolean created() {
+            return created;
+        }
+    }
+    
+    // A line as it is now; quantity 0 when the line was removed
+    public static class LineWrite {
+        private final Long productId;
+        private final int quantity;
+        private final BigDecimal price;
+        private final BigDecimal subtotal;
+        
+        public LineWrite(Long productId, int quantity, BigDecimal price, BigDecimal subtotal) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.price = price;
+            this.subtotal = subtotal;
+        }
+        
+        public Long getProductId() {
+            return productId;
+        }
     }
 }
\ No newline at end of file
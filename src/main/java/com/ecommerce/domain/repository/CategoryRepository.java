@@ -4,11 +4,20 @@ import com.ecommerce.domain.model.Category;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import java.util.List;
+import java.util.function.Function;
+import org.hibernate.reactive.mutiny.Mutiny;
 
 @ApplicationScoped
 public class CategoryRepository implements PanacheRepository<Category> {
     
+    private static final String TREE_ROW =
+        "select c.id, c.name, c.description, p.id, c.active from Category c left join c.parent p";
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
     public Uni<List<Category>> findRootCategories() {
         return list("parent is null");
     }
@@ -25,4 +34,23 @@ public class CategoryRepository implements PanacheRepository<Category> {
         return find("select count(p) > 0 from Product p where p.category.id = ?1", categoryId)
             .firstResult();
     }
+    
+    // Rows of id, name, description, parent id and active for every category, in one round trip
+    public Uni<List<Object[]>> findTreeRows() {
+        return withReadSession(session -> session
+            .createQuery(TREE_ROW, Object[].class)
+            .getResultList());
+    }
+    
+    public Uni<Object[]> findTreeRow(Long id) {
+        return withReadSession(session -> session
+            .createQuery(TREE_ROW + " where c.id = ?1", Object[].class)
+            .setParameter(1, id)
+            .getSingleResultOrNull());
+    }
+    
+    private <T> Uni<T> withReadSession(Function<Mutiny.Session, Uni<T>> work) {
+        return sessionFactory.openSession()
+            .chain(session -> work.apply(session).eventually(session::close));
+    }
 }
\ No newline at end of file
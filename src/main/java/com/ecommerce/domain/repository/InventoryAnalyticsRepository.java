@@ -1,15 +1,71 @@
 package com.ecommerce.domain.repository;
 
 import com.ecommerce.domain.model.InventoryAnalytics;
+import com.ecommerce.domain.model.TransactionType;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.reactive.mutiny.Mutiny;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class InventoryAnalyticsRepository implements PanacheRepository<InventoryAnalytics> {
     
+    // ?1 claims the transactions; each row is id, product id, quantity, type, stock before and after,
+    // day and the product's low stock threshold
+    private static final String CLAIM = "update inventory_transactions t set aggregated_at = ?2 " +
+        "from products p where p.id = t.product_id and t.id in ?1 and t.aggregated_at is null " +
+        "returning t.id, t.product_id, t.quantity, t.type, t.stock_before, t.stock_after, " +
+        "cast(t.timestamp as date), p.low_stock_threshold";
+    
+    // Counters add up; starting and ending stock come from the earliest and latest transaction, whichever
+    // flush they arrive in
+    private static final String UPSERT_CONFLICT = " on conflict (product_id, date) do update set " +
+        "sales_count = coalesce(inventory_analytics.sales_count, 0) + excluded.sales_count, " +
+        "restock_count = coalesce(inventory_analytics.restock_count, 0) + excluded.restock_count, " +
+        "returns_count = coalesce(inventory_analytics.returns_count, 0) + excluded.returns_count, " +
+        "low_stock_incidents = coalesce(inventory_analytics.low_stock_incidents, 0) + excluded.low_stock_incidents, " +
+        "starting_stock = case when inventory_analytics.first_transaction_id is null " +
+        "or excluded.first_transaction_id < inventory_analytics.first_transaction_id " +
+        "then excluded.starting_stock else inventory_analytics.starting_stock end, " +
+        "first_transaction_id = least(inventory_analytics.first_transaction_id, excluded.first_transaction_id), " +
+        "ending_stock = case when inventory_analytics.last_transaction_id is null " +
+        "or excluded.last_transaction_id > inventory_analytics.last_transaction_id " +
+        "then excluded.ending_stock else inventory_analytics.ending_stock end, " +
+        "last_transaction_id = greatest(inventory_analytics.last_transaction_id, excluded.last_transaction_id)";
+    
+    // ?1-?2 product id range (exclusive, inclusive), ?3-?4 dates. Days without transactions get a row
+    // carrying the previous day's closing stock, so stock-outs with no activity still count; products
+    // that never had a transaction have nothing to carry and are skipped.
+    private static final String FILL_DAYS = "insert into inventory_analytics (product_id, date, starting_stock, " +
+        "ending_stock, sales_count, restock_count, returns_count, low_stock_incidents, turnover_rate, " +
+        "days_out_of_stock) " +
+        "select p.id, cast(d.day as date), prev.ending_stock, prev.ending_stock, 0, 0, 0, 0, 0, 0 " +
+        "from products p cross join generate_series(cast(?3 as date), cast(?4 as date), interval '1 day') as d(day) " +
+        "cross join lateral (select a.ending_stock from inventory_analytics a " +
+        "where a.product_id = p.id and a.date < cast(d.day as date) order by a.date desc limit 1) prev " +
+        "where p.id > ?1 and p.id <= ?2 " +
+        "on conflict (product_id, date) do nothing";
+    
+    // Turnover is units sold over the day's average stock (opening and closing)
+    private static final String COMPUTE_TURNOVER = "update inventory_analytics set " +
+        "turnover_rate = case when coalesce(starting_stock, ending_stock, 0) + coalesce(ending_stock, 0) > 0 " +
+        "then coalesce(sales_count, 0) * 2.0 / (coalesce(starting_stock, ending_stock, 0) + coalesce(ending_stock, 0)) " +
+        "else 0 end, " +
+        "days_out_of_stock = case when ending_stock = 0 then 1 else 0 end " +
+        "where product_id > ?1 and product_id <= ?2 and date between ?3 and ?4";
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
     public Uni<List<InventoryAnalytics>> findByProductAndDateRange(
             Long productId, LocalDate startDate, LocalDate endDate) {
         return list(
@@ -18,15 +74,32 @@ public class InventoryAnalyticsRepository implements PanacheRepository<Inventory
         );
     }
     
-    public Uni<List<InventoryAnalytics>> findTopSellingProducts(
-            LocalDate startDate, LocalDate endDate, int limit) {
-        return find(
-            "select a from InventoryAnalytics a " +
-            "where a.date between ?1 and ?2 " +
-            "group by a.product.id " +
-            "order by sum(a.salesCount) desc",
-            startDate, endDate
-        ).page(0, limit).list();
+    // Per product over the range: product id, name, units sold, average turnover and average stock
+    public Uni<List<Object[]>> findTopSellingProducts(LocalDate startDate, LocalDate endDate, int limit) {
+        return sessionFactory.withSession(session -> session
+            .createQuery("select a.product.id, a.product.name, sum(a.salesCount), avg(a.turnoverRate), " +
+                "avg((coalesce(a.startingStock, a.endingStock, 0) + coalesce(a.endingStock, 0)) / 2.0) " +
+                "from InventoryAnalytics a where a.date between ?1 and ?2 " +
+                "group by a.product.id, a.product.name " +
+                "having sum(a.salesCount) > 0 " +
+                "order by sum(a.salesCount) desc, a.product.id", Object[].class)
+            .setParameter(1, startDate)
+            .setParameter(2, endDate)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // The day's best sellers from each of the days since the given date: date, product id, units sold
+    public Uni<List<Object[]>> findDailyTopSales(LocalDate since, int perDay) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select date, product_id, sales_count from (select date, product_id, sales_count, " +
+                "row_number() over (partition by date order by sales_count desc, product_id) as rn " +
+                "from inventory_analytics where date >= ?1 and sales_count > 0) ranked where rn <= ?2",
+                Object[].class)
+            .setParameter(1, since)
+            .setParameter(2, perDay)
+            .getResultList()
+            .invoke(rows -> rows.forEach(row -> row[0] = toDate(row[0]))));
     }
     
     public Uni<Double> calculateAverageTurnoverRate(
@@ -37,4 +110,297 @@ public class InventoryAnalyticsRepository implements PanacheRepository<Inventory
             productId, startDate, endDate
         ).firstResult();
     }
+    
+    // Folds the given inventory transactions into their product-day rows with one upsert per product-day.
+    // Each transaction is claimed in the same database transaction, so one that was already folded in,
+    // by an earlier flush or by another node, is skipped and a flush can be retried or replayed safely.
+    // Returns the number of transactions applied.
+    public Uni<Integer> applyTransactions(Collection<Long> transactionIds) {
+        LocalDateTime now = LocalDateTime.now();
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery(CLAIM, Object[].class)
+            .setParameter(1, transactionIds)
+            .setParameter(2, now)
+            .getResultList()
+            .chain(rows -> {
+                if (rows.isEmpty()) {
+                    return Uni.createFrom().item(0);
+                }
+                return upsert(session, merge(rows)).replaceWith(rows.size());
+            }));
+    }
+    
+    // Transactions recorded before the given time that no flush has folded in yet, oldest first
+    public Uni<List<Long>> findUnaggregated(LocalDateTime before, int limit) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select id from inventory_transactions where aggregated_at is null " +
+                "and timestamp < ?1 order by id limit ?2", Long.class)
+            .setParameter(1, before)
+            .setParameter(2, limit)
+            .getResultList());
+    }
+    
+    // Catalog-wide stock figures in one pass: product count, low stock, out of stock and inventory value
+    public Uni<Object[]> findInventoryHealth() {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select count(*), count(*) filter (where stock_quantity <= low_stock_threshold), " +
+                "count(*) filter (where stock_quantity = 0), coalesce(sum(price * stock_quantity), 0) " +
+                "from products", Object[].class)
+            .getSingleResult());
+    }
+    
+    // Active products at or below their low stock threshold, most at risk first: id, name, stock, threshold.
+    // Read off idx_products_stockout_risk, whose expression and predicate this query repeats.
+    public Uni<List<Object[]>> findStockoutRisk(int limit) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select id, name, stock_quantity, low_stock_threshold from products " +
+                "where active = true and stock_quantity <= low_stock_threshold " +
+                "order by stock_quantity * 1.0 / nullif(low_stock_threshold, 0) nulls first, id limit ?1",
+                Object[].class)
+            .setParameter(1, limit)
+            .getResultList());
+    }
+    
+    // Shared snapshot payload and when it was computed, or null when none was stored yet
+    public Uni<Object[]> findSnapshot(String name) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select payload, computed_at from analytics_snapshots where name = ?1", Object[].class)
+            .setParameter(1, name)
+            .getResultList()
+            .map(rows -> rows.isEmpty() ? null : new Object[] { rows.get(0)[0],
+                rows.get(0)[1] instanceof java.sql.Timestamp time ? time.toLocalDateTime() : rows.get(0)[1] }));
+    }
+    
+    // Takes the right to recompute a snapshot until the given time; false while another node holds it
+    public Uni<Boolean> claimSnapshot(String name, LocalDateTime until) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("insert into analytics_snapshots (name, computing_until) values (?1, ?2) " +
+                "on conflict (name) do update set computing_until = excluded.computing_until " +
+                "where analytics_snapshots.computing_until is null or analytics_snapshots.computing_until < ?3")
+            .setParameter(1, name)
+            .setParameter(2, until)
+            .setParameter(3, LocalDateTime.now())
+            .executeUpdate()
+            .map(updated -> updated > 0));
+    }
+    
+    public Uni<Void> saveSnapshot(String name, String payload, LocalDateTime computedAt) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("update analytics_snapshots set payload = ?2, computed_at = ?3, computing_until = null " +
+                "where name = ?1")
+            .setParameter(1, name)
+            .setParameter(2, payload)
+            .setParameter(3, computedAt)
+            .executeUpdate()
+            .replaceWithVoid());
+    }
+    
+    // Open (uncompleted) run of a batch job: id, from date, to date
+    public Uni<Object[]> findOpenRun(String job) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select id, from_date, to_date from analytics_job_runs " +
+                "where job = ?1 and completed_at is null", Object[].class)
+            .setParameter(1, job)
+            .getResultList()
+            .map(rows -> rows.isEmpty() ? null
+                : new Object[] { ((Number) rows.get(0)[0]).longValue(), toDate(rows.get(0)[1]), toDate(rows.get(0)[2]) }));
+    }
+    
+    public Uni<LocalDate> findLastCompletedDate(String job) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select max(to_date) from analytics_job_runs where job = ?1 and completed_at is not null",
+                LocalDate.class)
+            .setParameter(1, job)
+            .getSingleResultOrNull());
+    }
+    
+    // Splits the current product id range into partitions of a new run. Only one run per job can be open;
+    // when another node opened one first, nothing is created.
+    public Uni<Void> createRun(String job, LocalDate from, LocalDate to, int partitions) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("insert into analytics_job_runs (job, from_date, to_date) values (?1, ?2, ?3) " +
+                "on conflict do nothing returning id", Long.class)
+            .setParameter(1, job)
+            .setParameter(2, from)
+            .setParameter(3, to)
+            .getResultList()
+            .chain(ids -> {
+                if (ids.isEmpty()) {
+                    return Uni.createFrom().voidItem();
+                }
+                return session.createNativeQuery("insert into analytics_job_partitions " +
+                        "(run_id, partition_no, from_product_id, to_product_id, last_product_id) " +
+                        "select ?1, s.n, b.lo + (b.hi - b.lo) * s.n / ?2, b.lo + (b.hi - b.lo) * (s.n + 1) / ?2, " +
+                        "b.lo + (b.hi - b.lo) * s.n / ?2 " +
+                        "from (select coalesce(min(id), 1) - 1 as lo, coalesce(max(id), 0) as hi from products) b " +
+                        "cross join generate_series(0, ?2 - 1) as s(n)")
+                    .setParameter(1, ids.get(0))
+                    .setParameter(2, partitions)
+                    .executeUpdate()
+                    .replaceWithVoid();
+            }));
+    }
+    
+    // Partitions of the run not completed yet: partition number, last product id done, upper product id
+    public Uni<List<Object[]>> findPendingPartitions(long runId) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select partition_no, last_product_id, to_product_id from analytics_job_partitions " +
+                "where run_id = ?1 and completed_at is null order by partition_no", Object[].class)
+            .setParameter(1, runId)
+            .getResultList());
+    }
+    
+    // Takes or extends the partition's lease; false when another node holds it or it is complete
+    public Uni<Boolean> leasePartition(long runId, int partition, String owner, LocalDateTime until) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("update analytics_job_partitions set leased_by = ?3, leased_until = ?4 " +
+                "where run_id = ?1 and partition_no = ?2 and completed_at is null " +
+                "and (leased_by = ?3 or leased_until is null or leased_until < ?5)")
+            .setParameter(1, runId)
+            .setParameter(2, partition)
+            .setParameter(3, owner)
+            .setParameter(4, until)
+            .setParameter(5, LocalDateTime.now())
+            .executeUpdate()
+            .map(updated -> updated > 0));
+    }
+    
+    // Upper id of the next chunk of at most size products after lastId, or null when the partition is done
+    public Uni<Long> findChunkEnd(long lastId, long toId, int size) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select max(id) from (select id from products where id > ?1 and id <= ?2 " +
+                "order by id limit ?3) chunk", Long.class)
+            .setParameter(1, lastId)
+            .setParameter(2, toId)
+            .setParameter(3, size)
+            .getSingleResultOrNull());
+    }
+    
+    // Computes turnover and stock-outs for products in (fromId, toId] and records the chunk as done in the
+    // same transaction, so a resumed run continues exactly after the last committed chunk
+    public Uni<Void> computeTurnover(long runId, int partition, long fromId, long toId, LocalDate from,
+            LocalDate to) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery(FILL_DAYS)
+            .setParameter(1, fromId)
+            .setParameter(2, toId)
+            .setParameter(3, from)
+            .setParameter(4, to)
+            .executeUpdate()
+            .chain(() -> session.createNativeQuery(COMPUTE_TURNOVER)
+                .setParameter(1, fromId)
+                .setParameter(2, toId)
+                .setParameter(3, from)
+                .setParameter(4, to)
+                .executeUpdate())
+            .chain(() -> session.createNativeQuery("update analytics_job_partitions set last_product_id = ?3 " +
+                    "where run_id = ?1 and partition_no = ?2")
+                .setParameter(1, runId)
+                .setParameter(2, partition)
+                .setParameter(3, toId)
+                .executeUpdate())
+            .replaceWithVoid());
+    }
+    
+    public Uni<Void> completePartition(long runId, int partition) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("update analytics_job_partitions set completed_at = ?3 " +
+                "where run_id = ?1 and partition_no = ?2")
+            .setParameter(1, runId)
+            .setParameter(2, partition)
+            .setParameter(3, LocalDateTime.now())
+            .executeUpdate()
+            .replaceWithVoid());
+    }
+    
+    // True once every partition is done and the run is closed
+    public Uni<Boolean> completeRun(long runId) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("update analytics_job_runs set completed_at = ?2 where id = ?1 " +
+                "and completed_at is null and not exists (select 1 from analytics_job_partitions " +
+                "where run_id = ?1 and completed_at is null)")
+            .setParameter(1, runId)
+            .setParameter(2, LocalDateTime.now())
+            .executeUpdate()
+            .map(updated -> updated > 0));
+    }
+    
+    private static Collection<DayTotals> merge(List<Object[]> rows) {
+        Map<List<Object>, DayTotals> days = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            long id = ((Number) row[0]).longValue();
+            Long productId = ((Number) row[1]).longValue();
+            int quantity = ((Number) row[2]).intValue();
+            TransactionType type = TransactionType.valueOf((String) row[3]);
+            Integer before = row[4] != null ? ((Number) row[4]).intValue() : null;
+            Integer after = row[5] != null ? ((Number) row[5]).intValue() : null;
+            LocalDate date = toDate(row[6]);
+            int threshold = ((Number) row[7]).intValue();
+            
+            DayTotals day = days.computeIfAbsent(List.of(productId, date), key -> new DayTotals(productId, date));
+            switch (type) {
+                case SALE -> day.sales += quantity;
+                case RESTOCK -> day.restocks += quantity;
+                case RETURN -> day.returns += quantity;
+                default -> { }
+            }
+            if (after != null && after <= threshold) {
+                day.lowStockIncidents++;
+            }
+            if (day.firstId == 0 || id < day.firstId) {
+                day.firstId = id;
+                day.startingStock = before;
+            }
+            if (id > day.lastId) {
+                day.lastId = id;
+                day.endingStock = after;
+            }
+        }
+        return days.values();
+    }
+    
+    private static LocalDate toDate(Object value) {
+        return value instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) value;
+    }
+    
+    private static Uni<Void> upsert(Mutiny.Session session, Collection<DayTotals> days) {
+        StringBuilder sql = new StringBuilder("insert into inventory_analytics (product_id, date, sales_count, " +
+            "restock_count, returns_count, low_stock_incidents, starting_stock, ending_stock, " +
+            "first_transaction_id, last_transaction_id, turnover_rate, days_out_of_stock) values ");
+        List<Object> parameters = new ArrayList<>();
+        for (DayTotals day : days) {
+            int first = parameters.size() + 1;
+            sql.append(first == 1 ? "(" : ", (");
+            for (int i = 0; i < 10; i++) {
+                sql.append(i == 0 ? "" : ", ").append(i == 6 || i == 7 ? "cast(?" + (first + i) + " as integer)"
+                    : "?" + (first + i));
+            }
+            sql.append(", 0, 0)");
+            parameters.addAll(Arrays.asList(day.productId, day.date, day.sales, day.restocks,
+                day.returns, day.lowStockIncidents, day.startingStock, day.endingStock, day.firstId, day.lastId));
+        }
+        Mutiny.MutationQuery upsert = session.createNativeQuery(sql.append(UPSERT_CONFLICT).toString());
+        for (int i = 0; i < parameters.size(); i++) {
+            upsert.setParameter(i + 1, parameters.get(i));
+        }
+        return upsert.executeUpdate().replaceWithVoid();
+    }
+    
+    private static final class DayTotals {
+        private final Long productId;
+        private final LocalDate date;
+        private int sales;
+        private int restocks;
+        private int returns;
+        private int lowStockIncidents;
+        private long firstId;
+        private long lastId;
+        private Integer startingStock;
+        private Integer endingStock;
+        
+        DayTotals(Long productId, LocalDate date) {
+            this.productId = productId;
+            this.date = date;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.exception.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position after the last product of a low stock page: its stock minus its threshold, then its id
+public class LowStockCursor {
+    
+    private final int headroom;
+    private final Long id;
+    
+    private LowStockCursor(int headroom, Long id) {
+        this.headroom = headroom;
+        this.id = id;
+    }
+    
+    public static LowStockCursor after(Product product) {
+        return new LowStockCursor(product.getStockQuantity() - product.getLowStockThreshold(), product.getId());
+    }
+    
+    // An empty token starts from the product furthest below its threshold
+    public static LowStockCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split("\\|", 2);
+            if (parts.length != 2) {
+                throw new ValidationException("Invalid cursor");
+            }
+            return new LowStockCursor(Integer.parseInt(parts[0]), Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+    
+    public String encode() {
+        String raw = headroom + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public int getHeadroom() {
+        return headroom;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+}
\ No newline at end of file
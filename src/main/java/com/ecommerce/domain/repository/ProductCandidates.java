@@ -0,0 +1,60 @@
+package com.ecommerce.domain.repository;
+
+import java.util.List;
+
+// Product id constraints resolved in memory before the page query; whichever side is small enough
+// to bind is sent to the database, otherwise the tag expression itself is evaluated there.
+public class ProductCandidates {
+    
+    private final List<Long> includedIds;
+    private final List<Long> excludedIds;
+    private final Long maxKnownId;
+    private final TagExpression tagExpression;
+    private final boolean coversSearchTerm;
+    
+    private ProductCandidates(List<Long> includedIds, List<Long> excludedIds, Long maxKnownId,
+            TagExpression tagExpression, boolean coversSearchTerm) {
+        this.includedIds = includedIds;
+        this.excludedIds = excludedIds;
+        this.maxKnownId = maxKnownId;
+        this.tagExpression = tagExpression;
+        this.coversSearchTerm = coversSearchTerm;
+    }
+    
+    public static ProductCandidates including(List<Long> ids, boolean coversSearchTerm) {
+        return new ProductCandidates(ids, null, null, null, coversSearchTerm);
+    }
+    
+    // Ids above maxKnownId were created after the in-memory snapshot, so they are never assumed to match
+    public static ProductCandidates excluding(List<Long> ids, long maxKnownId, boolean coversSearchTerm) {
+        return new ProductCandidates(null, ids, maxKnownId, null, coversSearchTerm);
+    }
+    
+    public static ProductCandidates matching(TagExpression tagExpression) {
+        return new ProductCandidates(null, null, null, tagExpression, false);
+    }
+    
+    public boolean isEmpty() {
+        return includedIds != null && includedIds.isEmpty();
+    }
+    
+    public List<Long> getIncludedIds() {
+        return includedIds;
+    }
+    
+    public List<Long> getExcludedIds() {
+        return excludedIds;
+    }
+    
+    public Long getMaxKnownId() {
+        return maxKnownId;
+    }
+    
+    public TagExpression getTagExpression() {
+        return tagExpression;
+    }
+    
+    public boolean coversSearchTerm() {
+        return coversSearchTerm;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.exception.ValidationException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+public class ProductCursor {
+    
+    private final String sortKey;
+    private final boolean descending;
+    private final Long id;
+    private final Object value;
+    
+    private ProductCursor(String sortKey, boolean descending, Long id, Object value) {
+        this.sortKey = sortKey;
+        this.descending = descending;
+        this.id = id;
+        this.value = value;
+    }
+    
+    public static String sortKey(String sortBy) {
+        if (sortBy == null) {
+            return "id";
+        }
+        String key = sortBy.toLowerCase();
+        switch (key) {
+            case "price":
+            case "name":
+            case "rating":
+            case "created":
+                return key;
+            default:
+                return "id";
+        }
+    }
+    
+    public static boolean isDescending(String sortDirection) {
+        return "desc".equalsIgnoreCase(sortDirection);
+    }
+    
+    public static ProductCursor after(Product product, String sortKey, boolean descending) {
+        Object value;
+        switch (sortKey) {
+            case "price":
+                value = product.getPrice();
+                break;
+            case "name":
+                value = product.getName();
+                break;
+            case "rating":
+                value = product.getAverageRating() != null ? product.getAverageRating() : 0.0;
+                break;
+            case "created":
+                value = product.getCreatedAt();
+                break;
+            default:
+                value = null;
+        }
+        return new ProductCursor(sortKey, descending, product.getId(), value);
+    }
+    
+    // An empty token starts a keyset traversal from the first row
+    public static ProductCursor decode(String token, String sortKey, boolean descending) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+        if (parts.length != 4) {
+            throw new ValidationException("Invalid cursor");
+        }
+        if (!parts[0].equals(sortKey) || !parts[1].equals(descending ? "desc" : "asc")) {
+            throw new ValidationException("Cursor does not match the requested sort");
+        }
+        
+        try {
+            Long id = Long.valueOf(parts[2]);
+            Object value;
+            switch (sortKey) {
+                case "price":
+                    value = new BigDecimal(parts[3]);
+                    break;
+                case "name":
+                    value = parts[3];
+                    break;
+                case "rating":
+                    value = Double.valueOf(parts[3]);
+                    break;
+                case "created":
+                    value = LocalDateTime.parse(parts[3]);
+                    break;
+                default:
+                    value = null;
+            }
+            return new ProductCursor(sortKey, descending, id, value);
+        } catch (RuntimeException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+    
+    public String encode() {
+        String raw = sortKey + "|" + (descending ? "desc" : "asc") + "|" + id + "|" +
+            (value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() :
+             value != null ? value.toString() : "");
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public String getSortKey() {
+        return sortKey;
+    }
+    
+    public boolean isDescending() {
+        return descending;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public Object getValue() {
+        return value;
+    }
+}
\ No newline at end of file
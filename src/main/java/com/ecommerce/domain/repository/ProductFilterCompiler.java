@@ -0,0 +1,257 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.dto.ProductFilterDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ProductFilterCompiler {
+    
+    static final int CANDIDATE_IDS = 1;
+    static final int SEARCH_TERM = 1 << 1;
+    static final int CATEGORY = 1 << 2;
+    static final int MIN_PRICE = 1 << 3;
+    static final int MAX_PRICE = 1 << 4;
+    static final int MIN_RATING = 1 << 5;
+    static final int IN_STOCK = 1 << 6;
+    static final int EXCLUDED_IDS = 1 << 7;
+    static final int TAG_EXPRESSION = 1 << 8;
+    static final int CATEGORY_TREE = 1 << 9;
+    
+    private static final int MAX_EXPRESSION_SHAPES = 256;
+    
+    private static final String[] SORT_KEYS = { "id", "price", "name", "rating", "created" };
+    
+    public enum Mode {
+        OFFSET,
+        KEYSET_FIRST,
+        KEYSET_AFTER
+    }
+    
+    // Shape key -> compiled query; the number of shapes is bounded by the predicate/sort combinations
+    private final ConcurrentHashMap<Integer, CompiledQuery> cache = new ConcurrentHashMap<>();
+    
+    // Tag expressions evaluated in the database also key on the expression's structure
+    private final ConcurrentHashMap<String, CompiledQuery> expressionCache = new ConcurrentHashMap<>();
+    
+    public CompiledQuery compile(ProductFilterDTO filter, ProductCandidates candidates, Mode mode) {
+        int mask = predicateMask(filter, candidates);
+        int sort = sortOrdinal(ProductCursor.sortKey(filter.getSortBy()));
+        boolean descending = ProductCursor.isDescending(filter.getSortDirection());
+        int key = mask | sort << 10 | (descending ? 1 : 0) << 13 | mode.ordinal() << 14;
+        
+        if ((mask & TAG_EXPRESSION) == 0) {
+            return cache.computeIfAbsent(key, k -> build(mask, SORT_KEYS[sort], descending, mode, null));
+        }
+        TagExpression expression = candidates.getTagExpression();
+        String expressionKey = key + ":" + expression.shape();
+        CompiledQuery cached = expressionCache.get(expressionKey);
+        if (cached != null) {
+            return cached;
+        }
+        CompiledQuery compiled = build(mask, SORT_KEYS[sort], descending, mode, expression);
+        if (expressionCache.size() < MAX_EXPRESSION_SHAPES) {
+            expressionCache.putIfAbsent(expressionKey, compiled);
+        }
+        return compiled;
+    }
+    
+    public int cachedShapes() {
+        return cache.size() + expressionCache.size();
+    }
+    
+    static int predicateMask(ProductFilterDTO filter, ProductCandidates candidates) {
+        int mask = 0;
+        if (candidates != null) {
+            if (candidates.getIncludedIds() != null) {
+                mask |= CANDIDATE_IDS;
+            } else if (candidates.getExcludedIds() != null) {
+                mask |= EXCLUDED_IDS;
+            } else if (candidates.getTagExpression() != null) {
+                mask |= TAG_EXPRESSION;
+            }
+        }
+        if ((candidates == null || !candidates.coversSearchTerm())
+                && filter.getSearchTerm() != null && !filter.getSearchTerm().isEmpty()) {
+            mask |= SEARCH_TERM;
+        }
+        if (filter.getCategoryIds() != null) {
+            mask |= CATEGORY_TREE;
+        } else if (filter.getCategoryId() != null) {
+            mask |= CATEGORY;
+        }
+        if (filter.getMinPrice() != null) {
+            mask |= MIN_PRICE;
+        }
+        if (filter.getMaxPrice() != null) {
+            mask |= MAX_PRICE;
+        }
+        if (filter.getMinRating() != null) {
+            mask |= MIN_RATING;
+        }
+        if (filter.getInStock() != null && filter.getInStock()) {
+            mask |= IN_STOCK;
+        }
+        return mask;
+    }
+    
+    private static int sortOrdinal(String sortKey) {
+        for (int i = 0; i < SORT_KEYS.length; i++) {
+            if (SORT_KEYS[i].equals(sortKey)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
+    private static CompiledQuery build(
+            int mask, String sortKey, boolean descending, Mode mode, TagExpression expression) {
+        StringBuilder where = new StringBuilder("1=1");
+        int paramIndex = 1;
+        
+        if ((mask & CANDIDATE_IDS) != 0) {
+            where.append(" and id in ?").append(paramIndex++);
+        } else if ((mask & EXCLUDED_IDS) != 0) {
+            where.append(" and id not in ?").append(paramIndex++);
+            where.append(" and id <= ?").append(paramIndex++);
+        }
+        if ((mask & SEARCH_TERM) != 0) {
+            where.append(" and (lower(name) like ?").append(paramIndex)
+                .append(" or lower(description) like ?").append(paramIndex).append(")");
+            paramIndex++;
+        }
+        if ((mask & CATEGORY) != 0) {
+            where.append(" and category.id = ?").append(paramIndex++);
+        } else if ((mask & CATEGORY_TREE) != 0) {
+            where.append(" and category.id in ?").append(paramIndex++);
+        }
+        if ((mask & MIN_PRICE) != 0) {
+            where.append(" and price >= ?").append(paramIndex++);
+        }
+        if ((mask & MAX_PRICE) != 0) {
+            where.append(" and price <= ?").append(paramIndex++);
+        }
+        if ((mask & MIN_RATING) != 0) {
+            where.append(" and averageRating >= ?").append(paramIndex++);
+        }
+        if ((mask & IN_STOCK) != 0) {
+            where.append(" and stockQuantity > 0");
+        }
+        if ((mask & TAG_EXPRESSION) != 0) {
+            int[] next = { paramIndex };
+            where.append(" and ");
+            expression.appendHql(where, next);
+            paramIndex = next[0];
+        }
+        
+        String count = "select count(*) from Product where " + where;
+        
+        String column = sortColumn(sortKey, mode);
+        String comparator = descending ? " < " : " > ";
+        String direction = descending ? " desc" : " asc";
+        
+        if (mode == Mode.KEYSET_AFTER) {
+            if ("id".equals(sortKey)) {
+                where.append(" and id").append(comparator).append("?").append(paramIndex);
+            } else {
+                int valueIndex = paramIndex;
+                int idIndex = paramIndex + 1;
+                where.append(" and (").append(column).append(comparator).append("?").append(valueIndex)
+                    .append(" or (").append(column).append(" = ?").append(valueIndex)
+                    .append(" and id").append(comparator).append("?").append(idIndex).append("))");
+            }
+        }
+        
+        StringBuilder select = new StringBuilder("from Product where ").append(where).append(" order by ");
+        if (!"id".equals(sortKey)) {
+            select.append(column).append(direction).append(", ");
+        }
+        select.append("id").append(direction);
+        
+        return new CompiledQuery(mask, sortKey, select.toString(), count);
+    }
+    
+    private static String sortColumn(String sortKey, Mode mode) {
+        switch (sortKey) {
+            case "price":
+                return "price";
+            case "name":
+                return "name";
+            case "rating":
+                // Unrated products would otherwise fall outside every keyset comparison
+                return mode == Mode.OFFSET ? "averageRating" : "coalesce(averageRating, 0.0)";
+            case "created":
+                return "createdAt";
+            default:
+                return "id";
+        }
+    }
+    
+    public static class CompiledQuery {
+        private final int mask;
+        private final String sortKey;
+        private final String select;
+        private final String count;
+        
+        CompiledQuery(int mask, String sortKey, String select, String count) {
+            this.mask = mask;
+            this.sortKey = sortKey;
+            this.select = select;
+            this.count = count;
+        }
+        
+        public String getSelect() {
+            return select;
+        }
+        
+        public String getCount() {
+            return count;
+        }
+        
+        // Parameters for the filter predicates, in the order the shape was compiled
+        public Object[] bindFilter(ProductFilterDTO filter, ProductCandidates candidates) {
+            return bind(filter, candidates, null).toArray();
+        }
+        
+        public Object[] bindSelect(ProductFilterDTO filter, ProductCandidates candidates, ProductCursor after) {
+            return bind(filter, candidates, after).toArray();
+        }
+        
+        private List<Object> bind(ProductFilterDTO filter, ProductCandidates candidates, ProductCursor after) {
+            List<Object> params = new ArrayList<>(8);
+            if ((mask & CANDIDATE_IDS) != 0) {
+                params.add(candidates.getIncludedIds());
+            } else if ((mask & EXCLUDED_IDS) != 0) {
+                params.add(candidates.getExcludedIds());
+                params.add(candidates.getMaxKnownId());
+            }
+            if ((mask & SEARCH_TERM) != 0) {
+                params.add("%" + filter.getSearchTerm().toLowerCase() + "%");
+            }
+            if ((mask & CATEGORY) != 0) {
+                params.add(filter.getCategoryId());
+            } else if ((mask & CATEGORY_TREE) != 0) {
+                params.add(filter.getCategoryIds());
+            }
+            if ((mask & MIN_PRICE) != 0) {
+                params.add(filter.getMinPrice());
+            }
+            if ((mask & MAX_PRICE) != 0) {
+                params.add(filter.getMaxPrice());
+            }
+            if ((mask & MIN_RATING) != 0) {
+                params.add(filter.getMinRating());
+            }
+            if ((mask & TAG_EXPRESSION) != 0) {
+                candidates.getTagExpression().collectParams(params);
+            }
+            if (after != null) {
+                if (!"id".equals(sortKey)) {
+                    params.add(after.getValue());
+                }
+                params.add(after.getId());
+            }
+            return params;
+        }
+    }
+}
\ No newline at end of file
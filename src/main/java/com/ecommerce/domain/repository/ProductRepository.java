@@ -1,19 +1,69 @@
 package com.ecommerce.domain.repository;
 
+import com.ecommerce.domain.dto.ProductExportDTO;
 import com.ecommerce.domain.dto.ProductFilterDTO;
 import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.repository.ProductFilterCompiler.CompiledQuery;
+import com.ecommerce.domain.repository.ProductFilterCompiler.Mode;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
-import io.quarkus.panache.common.Page;
-import io.quarkus.panache.common.Sort;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
-import java.util.ArrayList;
+import jakarta.inject.Inject;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
+import org.hibernate.reactive.mutiny.Mutiny;
 
 @ApplicationScoped
 public class ProductRepository implements PanacheRepository<Product> {
     
+    private static final String[] STAR_FIELDS = { "oneStar", "twoStars", "threeStars", "fourStars", "fiveStars" };
+    
+    // ?1 count delta, ?2 sum delta, ?3-?7 per-star deltas, ?8 update time, ?9 product id. The right-hand
+    // sides see the row before the update, so the average is computed from the new totals explicitly.
+    private static final String RATING_DELTA = buildRatingDelta();
+    
+    // Recomputes the aggregates of the products in ?1 straight from their reviews
+    private static final String RATING_RECOMPUTE = buildRatingRecompute();
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
+    private final ProductFilterCompiler filterCompiler = new ProductFilterCompiler();
+    
+    // Everything the detail view renders, in one round trip
+    public Uni<Product> findDetailById(Long id) {
+        return find("select distinct p from Product p left join fetch p.category " +
+            "left join fetch p.images left join fetch p.tags where p.id = ?1", id).firstResult();
+    }
+    
+    // Detail rows outside any request, e.g. when applying another node's invalidations
+    public Uni<List<Product>> findDetailsByIds(Collection<Long> ids) {
+        return withReadSession(session -> session
+            .createQuery("select distinct p from Product p left join fetch p.category " +
+                "left join fetch p.images left join fetch p.tags where p.id in ?1", Product.class)
+            .setParameter(1, ids)
+            .getResultList());
+    }
+    
+    // A page of the low stock set, furthest below the threshold first. Predicate and ordering match
+    // idx_products_low_stock, so the page is read straight off that partial index.
+    public Uni<List<Product>> findLowStock(LowStockCursor after, int limit) {
+        String sql = "select * from products where active = true and stock_quantity <= low_stock_threshold " +
+            (after != null ? "and (stock_quantity - low_stock_threshold, id) > (?2, ?3) " : "") +
+            "order by stock_quantity - low_stock_threshold, id limit ?1";
+        return withReadSession(session -> {
+            Mutiny.SelectionQuery<Product> query = session.createNativeQuery(sql, Product.class)
+                .setParameter(1, limit);
+            if (after != null) {
+                query.setParameter(2, after.getHeadroom()).setParameter(3, after.getId());
+            }
+            return query.getResultList();
+        });
+    }
+    
     public Uni<List<Product>> findByCategory(Long categoryId) {
         return find("category.id", categoryId).list();
     }
@@ -30,115 +80,224 @@ public class ProductRepository implements PanacheRepository<Product> {
         return find("price >= ?1 and price <= ?2", minPrice, maxPrice).list();
     }
     
+    public Uni<List<Object[]>> findSearchDocuments(Long afterId, int limit) {
+        return getSession().chain(session -> session
+            .createQuery("select p.id, p.name, p.description from Product p " +
+                "where p.id > ?1 order by p.id", Object[].class)
+            .setParameter(1, afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    public Uni<List<Object[]>> findFacetDocuments(Long afterId, int limit) {
+        return getSession().chain(session -> session
+            .createQuery("select p.id, p.price, p.stockQuantity, p.averageRating, p.category.id " +
+                "from Product p where p.id > ?1 order by p.id", Object[].class)
+            .setParameter(1, afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // One page of active products for feed export; each page gets its own short-lived session
+    public Uni<List<ProductExportDTO>> findExportBatch(Long afterId, int limit) {
+        return withReadSession(session -> session
+            .createQuery("select new com.ecommerce.domain.dto.ProductExportDTO(" +
+                "p.id, p.name, p.description, p.price, p.stockQuantity, c.id, c.name, p.averageRating, " +
+                "(select min(i.imageUrl) from ProductImage i where i.product = p and i.isCover = true), " +
+                "p.updatedAt) " +
+                "from Product p left join p.category c " +
+                "where p.active = true and p.id > ?1 order by p.id", ProductExportDTO.class)
+            .setParameter(1, afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // Ids of the products whose name or description contains the term, matched as the filtered listing does
+    public Uni<List<Long>> findIdsContaining(String term) {
+        return withReadSession(session -> session
+            .createQuery("select p.id from Product p where lower(p.name) like ?1 or lower(p.description) like ?1 " +
+                "order by p.id", Long.class)
+            .setParameter(1, "%" + term.toLowerCase() + "%")
+            .getResultList());
+    }
+    
+    public Uni<List<Long>> findIds(Long afterId, int limit) {
+        return getSession().chain(session -> session
+            .createQuery("select p.id from Product p where p.id > ?1 order by p.id", Long.class)
+            .setParameter(1, afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    public Uni<List<Object[]>> findTagNames(Long fromProductId, Long toProductId) {
+        return getSession().chain(session -> session
+            .createNativeQuery("select pt.product_id, t.name from product_tags pt " +
+                "join tags t on t.id = pt.tag_id where pt.product_id between ?1 and ?2", Object[].class)
+            .setParameter(1, fromProductId)
+            .setParameter(2, toProductId)
+            .getResultList());
+    }
+    
     public Uni<List<Product>> findFiltered(ProductFilterDTO filter) {
-        StringBuilder query = new StringBuilder("1=1");
-        List<Object> params = new ArrayList<>();
-        int paramIndex = 1;
-        
-        if (filter.getSearchTerm() != null && !filter.getSearchTerm().isEmpty()) {
-            query.append(" and (lower(name) like ?").append(paramIndex)
-                .append(" or lower(description) like ?").append(paramIndex).append(")");
-            params.add("%" + filter.getSearchTerm().toLowerCase() + "%");
-            paramIndex++;
-        }
-        
-        if (filter.getCategoryId() != null) {
-            query.append(" and category.id = ?").append(paramIndex);
-            params.add(filter.getCategoryId());
-            paramIndex++;
-        }
-        
-        if (filter.getMinPrice() != null) {
-            query.append(" and price >= ?").append(paramIndex);
-            params.add(filter.getMinPrice());
-            paramIndex++;
-        }
-        
-        if (filter.getMaxPrice() != null) {
-            query.append(" and price <= ?").append(paramIndex);
-            params.add(filter.getMaxPrice());
-            paramIndex++;
-        }
-        
-        if (filter.getMinRating() != null) {
-            query.append(" and averageRating >= ?").append(paramIndex);
-            params.add(filter.getMinRating());
-            paramIndex++;
-        }
-        
-        if (filter.getInStock() != null && filter.getInStock()) {
-            query.append(" and stockQuantity > 0");
-        }
+        return findFiltered(filter, null);
+    }
+    
+    public Uni<List<Product>> findFiltered(ProductFilterDTO filter, ProductCandidates candidates) {
+        CompiledQuery query = filterCompiler.compile(filter, candidates, Mode.OFFSET);
+        Object[] params = query.bindFilter(filter, candidates);
+        int firstResult = filter.getPage() * filter.getSize();
         
-        Sort sort = createSort(filter.getSortBy(), filter.getSortDirection());
-        Page page = Page.of(filter.getPage(), filter.getSize());
+        return withReadSession(session -> bind(session.createQuery(query.getSelect(), Product.class), params)
+            .setFirstResult(firstResult)
+            .setMaxResults(filter.getSize())
+            .getResultList());
+    }
+    
+    public Uni<List<Product>> findFilteredAfter(
+            ProductFilterDTO filter, ProductCandidates candidates, ProductCursor after, int limit) {
+        CompiledQuery query = filterCompiler.compile(
+            filter, candidates, after != null ? Mode.KEYSET_AFTER : Mode.KEYSET_FIRST);
+        Object[] params = query.bindSelect(filter, candidates, after);
         
-        return find(query.toString(), sort, params.toArray()).page(page).list();
+        return withReadSession(session -> bind(session.createQuery(query.getSelect(), Product.class), params)
+            .setMaxResults(limit)
+            .getResultList());
     }
     
     public Uni<Long> countFiltered(ProductFilterDTO filter) {
-        StringBuilder query = new StringBuilder("1=1");
-        List<Object> params = new ArrayList<>();
-        int paramIndex = 1;
-        
-        if (filter.getSearchTerm() != null && !filter.getSearchTerm().isEmpty()) {
-            query.append(" and (lower(name) like ?").append(paramIndex)
-                .append(" or lower(description) like ?").append(paramIndex).append(")");
-            params.add("%" + filter.getSearchTerm().toLowerCase() + "%");
-            paramIndex++;
-        }
-        
-        if (filter.getCategoryId() != null) {
-            query.append(" and category.id = ?").append(paramIndex);
-            params.add(filter.getCategoryId());
-            paramIndex++;
-        }
-        
-        if (filter.getMinPrice() != null) {
-            query.append(" and price >= ?").append(paramIndex);
-            params.add(filter.getMinPrice());
-            paramIndex++;
-        }
-        
-        if (filter.getMaxPrice() != null) {
-            query.append(" and price <= ?").append(paramIndex);
-            params.add(filter.getMaxPrice());
-            paramIndex++;
-        }
+        return countFiltered(filter, null);
+    }
+    
+    public Uni<Long> countFiltered(ProductFilterDTO filter, ProductCandidates candidates) {
+        CompiledQuery query = filterCompiler.compile(filter, candidates, Mode.OFFSET);
+        Object[] params = query.bindFilter(filter, candidates);
         
-        if (filter.getMinRating() != null) {
-            query.append(" and averageRating >= ?").append(paramIndex);
-            params.add(filter.getMinRating());
-            paramIndex++;
+        return withReadSession(session -> bind(session.createQuery(query.getCount(), Long.class), params)
+            .getSingleResult());
+    }
+    
+    public Uni<Long> estimateCount() {
+        return getSession().chain(session -> session
+            .createNativeQuery(
+                "select cast(reltuples as bigint) from pg_class where relname = 'products'",
+                Long.class)
+            .getSingleResult());
+    }
+    
+    // Adds one review's effect to the running aggregates in a single statement, so concurrent reviews
+    // cannot overwrite each other. A star of 0 means nothing was removed (or added).
+    public Uni<Integer> applyRatingDelta(Long productId, int removedStar, int addedStar, LocalDateTime now) {
+        Object[] params = new Object[9];
+        params[0] = (addedStar > 0 ? 1 : 0) - (removedStar > 0 ? 1 : 0);
+        params[1] = (long) (addedStar - removedStar);
+        for (int star = 1; star <= 5; star++) {
+            params[1 + star] = (star == addedStar ? 1 : 0) - (star == removedStar ? 1 : 0);
         }
-        
-        if (filter.getInStock() != null && filter.getInStock()) {
-            query.append(" and stockQuantity > 0");
+        params[7] = now;
+        params[8] = productId;
+        return update(RATING_DELTA, params);
+    }
+    
+    // Re-reads a product after a bulk update so the managed instance carries the new values and version
+    public Uni<Product> refresh(Long id) {
+        return getSession().chain(session -> session.find(Product.class, id)
+            .call(product -> product != null ? session.refresh(product) : Uni.createFrom().voidItem()));
+    }
+    
+    // Product id and rating aggregates of each product that exists
+    public Uni<List<Object[]>> findRatings(Collection<Long> ids) {
+        return getSession().chain(session -> session
+            .createQuery("select p.id, p.ratings from Product p where p.id in ?1", Object[].class)
+            .setParameter(1, ids)
+            .getResultList());
+    }
+    
+    // What carts need of the products they hold, in one round trip: id, name, price, stock, active, version
+    // and sellable stock, i.e. stock not held by checkouts (the stock itself for a product never spread
+    // over inventory shards)
+    public Uni<List<Object[]>> findCartProducts(Collection<Long> ids) {
+        return withReadSession(session -> session
+            .createNativeQuery("select p.id, p.name, p.price, p.stock_quantity, p.active, p.version, " +
+                "coalesce(s.available, p.stock_quantity) from products p left join (" +
+                "select product_id, sum(available) as available from inventory_shards " +
+                "where product_id in ?1 group by product_id) s on s.product_id = p.id " +
+                "where p.id in ?1", Object[].class)
+            .setParameter(1, ids)
+            .getResultList());
+    }
+    
+    // Product id and name of each product that exists
+    public Uni<List<Object[]>> findNames(Collection<Long> ids) {
+        return withReadSession(session -> session
+            .createQuery("select p.id, p.name from Product p where p.id in ?1", Object[].class)
+            .setParameter(1, ids)
+            .getResultList());
+    }
+    
+    // Stored aggregates for a page of products: id, review count, rating sum, then counts for 1-5 stars
+    public Uni<List<Object[]>> findRatingAggregates(Long afterId, int limit) {
+        return withReadSession(session -> session
+            .createQuery("select p.id, p.ratings.reviewCount, p.ratings.ratingSum, p.ratings.oneStar, " +
+                "p.ratings.twoStars, p.ratings.threeStars, p.ratings.fourStars, p.ratings.fiveStars " +
+                "from Product p where p.id > ?1 order by p.id", Object[].class)
+            .setParameter(1, afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    public Uni<Integer> recomputeRatings(Collection<Long> ids) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createMutationQuery(RATING_RECOMPUTE)
+            .setParameter(1, ids)
+            .executeUpdate());
+    }
+    
+    // A fresh session and transaction per bulk write, with JDBC batching for its statements
+    public <T> Uni<T> withBatchTransaction(int batchSize, Function<Mutiny.Session, Uni<T>> work) {
+        return sessionFactory.withTransaction((session, tx) -> {
+            session.setBatchSize(batchSize);
+            return work.apply(session);
+        });
+    }
+    
+    private static String buildRatingDelta() {
+        StringBuilder hql = new StringBuilder("update versioned Product p set ")
+            .append("p.ratings.reviewCount = p.ratings.reviewCount + ?1, ")
+            .append("p.ratings.ratingSum = p.ratings.ratingSum + ?2, ");
+        for (int i = 0; i < STAR_FIELDS.length; i++) {
+            String field = "p.ratings." + STAR_FIELDS[i];
+            hql.append(field).append(" = ").append(field).append(" + ?").append(i + 3).append(", ");
         }
-        
-        return count(query.toString(), params.toArray());
+        return hql.append("p.averageRating = case when p.ratings.reviewCount + ?1 > 0 ")
+            .append("then (p.ratings.ratingSum + ?2) * 1.0 / (p.ratings.reviewCount + ?1) else 0.0 end, ")
+            .append("p.updatedAt = ?8 where p.id = ?9")
+            .toString();
     }
     
-    private Sort createSort(String sortBy, String sortDirection) {
-        if (sortBy == null) {
-            return Sort.by("id");
+    private static String buildRatingRecompute() {
+        String reviews = " from Review r where r.product.id = p.id";
+        StringBuilder hql = new StringBuilder("update versioned Product p set ")
+            .append("p.ratings.reviewCount = (select cast(count(r) as Integer)").append(reviews).append("), ")
+            .append("p.ratings.ratingSum = (select coalesce(sum(r.rating), 0)").append(reviews).append("), ");
+        for (int i = 0; i < STAR_FIELDS.length; i++) {
+            hql.append("p.ratings.").append(STAR_FIELDS[i]).append(" = (select cast(count(r) as Integer)")
+                .append(reviews).append(" and r.rating = ").append(i + 1).append("), ");
         }
-        
-        Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection) 
-            ? Sort.Direction.Descending 
-            : Sort.Direction.Ascending;
-        
-        switch (sortBy.toLowerCase()) {
-            case "price":
-                return Sort.by("price", direction);
-            case "name":
-                return Sort.by("name", direction);
-            case "rating":
-                return Sort.by("averageRating", direction);
-            case "created":
-                return Sort.by("createdAt", direction);
-            default:
-                return Sort.by("id", direction);
+        return hql.append("p.averageRating = (select coalesce(avg(r.rating), 0.0)").append(reviews).append(") ")
+            .append("where p.id in ?1")
+            .toString();
+    }
+    
+    // Filtered reads get their own session so the page and count queries can run concurrently
+    private <T> Uni<T> withReadSession(Function<Mutiny.Session, Uni<T>> work) {
+        return sessionFactory.openSession()
+            .chain(session -> work.apply(session).eventually(session::close));
+    }
+    
+    private static <R> Mutiny.SelectionQuery<R> bind(Mutiny.SelectionQuery<R> query, Object[] params) {
+        for (int i = 0; i < params.length; i++) {
+            query.setParameter(i + 1, params[i]);
         }
+        return query;
     }
 }
\ No newline at end of file
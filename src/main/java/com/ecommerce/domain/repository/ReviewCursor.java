@@ -0,0 +1,102 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.Review;
+import com.ecommerce.exception.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position after the last review of a page. Every sort ends on the review id (newest first), and the
+// primary sort value is an integer: helpful votes, rating, or 1/0 for a verified purchase.
+public class ReviewCursor {
+    
+    private final String sortKey;
+    private final Long id;
+    private final int value;
+    
+    private ReviewCursor(String sortKey, Long id, int value) {
+        this.sortKey = sortKey;
+        this.id = id;
+        this.value = value;
+    }
+    
+    public static String sortKey(String sort) {
+        if (sort == null) {
+            return "newest";
+        }
+        String key = sort.toLowerCase();
+        switch (key) {
+            case "newest":
+            case "helpful":
+            case "highest":
+            case "lowest":
+            case "verified":
+                return key;
+            default:
+                throw new ValidationException("Unsupported review sort: " + sort);
+        }
+    }
+    
+    public static ReviewCursor after(Review review, String sortKey) {
+        int value;
+        switch (sortKey) {
+            case "helpful":
+                value = review.getHelpfulVotes() != null ? review.getHelpfulVotes() : 0;
+                break;
+            case "highest":
+            case "lowest":
+                value = review.getRating();
+                break;
+            case "verified":
+                value = Boolean.TRUE.equals(review.getVerifiedPurchase()) ? 1 : 0;
+                break;
+            default:
+                value = 0;
+        }
+        return new ReviewCursor(sortKey, review.getId(), value);
+    }
+    
+    // An empty token starts from the first review
+    public static ReviewCursor decode(String token, String sortKey) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split("\\|", 3);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+        if (parts.length != 3) {
+            throw new ValidationException("Invalid cursor");
+        }
+        if (!parts[0].equals(sortKey)) {
+            throw new ValidationException("Cursor does not match the requested sort");
+        }
+        
+        try {
+            return new ReviewCursor(sortKey, Long.valueOf(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+    
+    public String encode() {
+        String raw = sortKey + "|" + id + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public String getSortKey() {
+        return sortKey;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public int getValue() {
+        return value;
+    }
+}
\ No newline at end of file
@@ -4,26 +4,150 @@ import com.ecommerce.domain.model.Review;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.hibernate.reactive.mutiny.Mutiny;
 
 @ApplicationScoped
 public class ReviewRepository implements PanacheRepository<Review> {
     
-    public Uni<List<Review>> findByProduct(Long productId) {
-        return list("product.id", productId);
-    }
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
     
     public Uni<List<Review>> findByUser(String userId) {
         return list("userId", userId);
     }
     
-    public Uni<Double> getAverageRating(Long productId) {
-        return find("product.id", productId)
-            .stream()
-            .collect().asList()
-            .map(reviews -> reviews.stream()
-                .mapToInt(Review::getRating)
-                .average()
-                .orElse(0.0));
+    // One page of a product's reviews in the given sort, starting after the cursor when there is one
+    public Uni<List<Review>> findPage(Long productId, String sortKey, ReviewCursor after, int limit) {
+        StringBuilder hql = new StringBuilder("from Review r where r.product.id = ?1");
+        List<Object> params = new ArrayList<>();
+        params.add(productId);
+        String order;
+        switch (sortKey) {
+            case "helpful":
+                keyset(hql, params, after, "r.helpfulVotes", "<");
+                order = "r.helpfulVotes desc, r.id desc";
+                break;
+            case "highest":
+                keyset(hql, params, after, "r.rating", "<");
+                order = "r.rating desc, r.id desc";
+                break;
+            case "lowest":
+                keyset(hql, params, after, "r.rating", ">");
+                order = "r.rating asc, r.id desc";
+                break;
+            case "verified":
+                if (after != null) {
+                    // Verified reviews come first, so only unverified ones follow the last verified review
+                    hql.append(after.getValue() == 1
+                        ? " and ((r.verifiedPurchase = true and r.id < ?2) or r.verifiedPurchase = false)"
+                        : " and r.verifiedPurchase = false and r.id < ?2");
+                    params.add(after.getId());
+                }
+                order = "r.verifiedPurchase desc, r.id desc";
+                break;
+            default:
+                if (after != null) {
+                    hql.append(" and r.id < ?2");
+                    params.add(after.getId());
+                }
+                order = "r.id desc";
+        }
+        return find(hql.append(" order by ").append(order).toString(), params.toArray())
+            .range(0, limit - 1)
+            .list();
+    }
+    
+    public Uni<List<Review>> findByIds(Collection<Long> ids) {
+        return list("id in ?1", ids);
+    }
+    
+    // Review id and image URL for every image of the given reviews, in upload order
+    public Uni<List<Object[]>> findImageUrls(Collection<Long> reviewIds) {
+        return getSession().chain(session -> session
+            .createQuery("select i.review.id, i.imageUrl from ReviewImage i " +
+                "where i.review.id in ?1 order by i.id", Object[].class)
+            .setParameter(1, reviewIds)
+            .getResultList());
+    }
+    
+    // Ids and helpful votes of a product's most helpful reviews
+    public Uni<List<Object[]>> findMostHelpful(Long productId, int limit) {
+        return sessionFactory.withSession(session -> session
+            .createQuery("select r.id, r.helpfulVotes from Review r where r.product.id = ?1 " +
+                "order by r.helpfulVotes desc, r.id desc", Object[].class)
+            .setParameter(1, productId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // Adds one log segment's coalesced votes in a single transaction, one UPDATE per distinct delta.
+    // False when the segment was already applied; the (log id, segment) row makes replays no-ops. Rows
+    // of segments below retainFrom, the oldest the log still has on disk, are dropped.
+    public Uni<Boolean> applyHelpfulVotes(String logId, long segment, Map<Long, Integer> votes, long retainFrom) {
+        Map<Integer, List<Long>> byDelta = new TreeMap<>();
+        votes.forEach((reviewId, delta) -> byDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(reviewId));
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("insert into helpful_vote_flushes (log_id, segment) values (?1, ?2) " +
+                "on conflict do nothing")
+            .setParameter(1, logId)
+            .setParameter(2, segment)
+            .executeUpdate()
+            .chain(inserted -> {
+                if (inserted == 0) {
+                    return Uni.createFrom().item(false);
+                }
+                Uni<Integer> updates = Uni.createFrom().item(0);
+                for (Map.Entry<Integer, List<Long>> entry : byDelta.entrySet()) {
+                    updates = updates.chain(() -> session
+                        .createMutationQuery("update Review r set r.helpfulVotes = r.helpfulVotes + ?1 " +
+                            "where r.id in ?2")
+                        .setParameter(1, entry.getKey())
+                        .setParameter(2, entry.getValue())
+                        .executeUpdate());
+                }
+                // Segments below retainFrom are gone from disk and can no longer be replayed
+                return updates.chain(() -> session
+                        .createNativeQuery("delete from helpful_vote_flushes where log_id = ?1 and segment < ?2")
+                        .setParameter(1, logId)
+                        .setParameter(2, retainFrom)
+                        .executeUpdate())
+                    .replaceWith(true);
+            }));
+    }
+    
+    // Review id, product id and helpful votes
+    public Uni<List<Object[]>> findHelpfulVotes(Collection<Long> ids) {
+        return sessionFactory.withSession(session -> session
+            .createQuery("select r.id, r.product.id, r.helpfulVotes from Review r where r.id in ?1", Object[].class)
+            .setParameter(1, ids)
+            .getResultList());
+    }
+    
+    // Review totals for products with ids in [fromId, toId]: product id, count, sum, then counts for 1-5 stars
+    public Uni<List<Object[]>> aggregateRatings(Long fromId, Long toId) {
+        return sessionFactory.withSession(session -> session
+            .createQuery("select r.product.id, count(r), sum(r.rating), " +
+                "sum(case when r.rating = 1 then 1 else 0 end), sum(case when r.rating = 2 then 1 else 0 end), " +
+                "sum(case when r.rating = 3 then 1 else 0 end), sum(case when r.rating = 4 then 1 else 0 end), " +
+                "sum(case when r.rating = 5 then 1 else 0 end) " +
+                "from Review r where r.product.id between ?1 and ?2 group by r.product.id", Object[].class)
+            .setParameter(1, fromId)
+            .setParameter(2, toId)
+            .getResultList());
+    }
+    
+    private static void keyset(StringBuilder hql, List<Object> params, ReviewCursor after, String column, String op) {
+        if (after != null) {
+            hql.append(" and (").append(column).append(' ').append(op).append(" ?2 or (")
+                .append(column).append(" = ?2 and r.id < ?3))");
+            params.add(after.getValue());
+            params.add(after.getId());
+        }
     }
 }
\ No newline at end of file
@@ -4,11 +4,19 @@ import com.ecommerce.domain.model.StockAlert;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.reactive.mutiny.Mutiny;
 import java.util.List;
 
 @ApplicationScoped
 public class StockAlertRepository implements PanacheRepository<StockAlert> {
     
+    private static final String ACTIVE_THRESHOLDS = "select p.id, max(a.threshold), p.stockQuantity " +
+        "from StockAlert a join a.product p where a.active = true ";
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
     public Uni<List<StockAlert>> findActiveAlerts() {
         return list("active", true);
     }
@@ -16,4 +24,19 @@ public class StockAlertRepository implements PanacheRepository<StockAlert> {
     public Uni<StockAlert> findByProduct(Long productId) {
         return find("product.id", productId).firstResult();
     }
+    
+    // Product id, highest active threshold and current stock for every product with an active alert
+    public Uni<List<Object[]>> findActiveThresholds() {
+        return sessionFactory.withSession(session -> session
+            .createQuery(ACTIVE_THRESHOLDS + "group by p.id, p.stockQuantity", Object[].class)
+            .getResultList());
+    }
+    
+    // Same for one product, in the caller's session so alerts it just flushed are seen
+    public Uni<Object[]> findActiveThreshold(Long productId) {
+        return getSession().chain(session -> session
+            .createQuery(ACTIVE_THRESHOLDS + "and p.id = ?1 group by p.id, p.stockQuantity", Object[].class)
+            .setParameter(1, productId)
+            .getSingleResultOrNull());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,608 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.ReservationStatus;
+import com.ecommerce.domain.model.StockReservation;
+import com.ecommerce.domain.model.TransactionType;
+import io.quarkus.hibernate.reactive.panache.PanacheRepository;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.pgclient.PgException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.hibernate.JDBCException;
+import org.hibernate.reactive.mutiny.Mutiny;
+
+// Stock holds against inventory_shards. A product's sellable stock (on hand minus held) is split over
+// a few shard rows; a hold decrements one shard with a conditional UPDATE, so checkouts of the same
+// product rarely queue on one row and no read-modify-write can oversell. Locks are taken as
+// reservation rows, then product rows, then shard rows, each in product id order; a shard-level cycle
+// that still slips through (Postgres aborts one side with 40P01) is retried as a whole transaction.
+@ApplicationScoped
+public class StockReservationRepository implements PanacheRepository<StockReservation> {
+    
+    private static final String HOLD = "insert into stock_reservations " +
+        "(hold_id, product_id, shard, quantity, status, expires_at, created_at, updated_at) " +
+        "values (?1, ?2, ?3, ?4, 'HELD', ?5, ?6, ?6)";
+    
+    private static final String GIVE_BACK = "insert into inventory_shards (product_id, shard, available) " +
+        "values (?1, ?2, ?3) on conflict (product_id, shard) " +
+        "do update set available = inventory_shards.available + excluded.available";
+    
+    // ?1 product ids, ?2 shard count. Sellable stock is recomputed in one statement so on-hand and held
+    // quantities come from the same snapshot.
+    private static final String SPREAD = "insert into inventory_shards (product_id, shard, available) " +
+        "select a.id, s.shard, a.available / ?2 + case when s.shard < a.available % ?2 then 1 else 0 end " +
+        "from (select p.id, greatest(p.stock_quantity - coalesce((select sum(r.quantity) " +
+        "from stock_reservations r where r.product_id = p.id and r.status = 'HELD'), 0), 0) as available " +
+        "from products p where p.id in ?1) a " +
+        "cross join generate_series(0, ?2 - 1) as s(shard)";
+    
+    // Six bind parameters per transaction row, well under the 65535 a statement may carry
+    private static final int ROWS_PER_STATEMENT = 1000;
+    
+    private static final String DEADLOCK = "40P01";
+    private static final int DEADLOCK_RETRIES = 3;
+    
+    // Rows of a batch whose locks are not taken in product id order by the query itself
+    private static final Comparator<Object[]> BY_PRODUCT_AND_SHARD = Comparator
+        .<Object[]>comparingLong(row -> ((Number) row[1]).longValue())
+        .thenComparingInt(row -> ((Number) row[2]).intValue());
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
+    // Holds every line or none. Null on success, otherwise the first product that could not be held.
+    public Uni<Long> reserve(String holdId, Map<Long, Integer> quantities, int shards, LocalDateTime expiresAt) {
+        // Products in id order, so two checkouts never wait on each other's shards in a cycle
+        List<Long> productIds = new ArrayList<>(new TreeSet<>(quantities.keySet()));
+        LocalDateTime now = LocalDateTime.now();
+        return retryingDeadlocks(() -> sessionFactory.withTransaction((session, tx) ->
+            holdFrom(session, holdId, productIds, 0, quantities, shards, expiresAt, now)
+                .invoke(failed -> {
+                    if (failed != null) {
+                        tx.markForRollback();
+                    }
+                })));
+    }
+    
+    private Uni<Long> holdFrom(Mutiny.Session session, String holdId, List<Long> productIds, int index,
+            Map<Long, Integer> quantities, int shards, LocalDateTime expiresAt, LocalDateTime now) {
+        if (index == productIds.size()) {
+            return Uni.createFrom().nullItem();
+        }
+        Long productId = productIds.get(index);
+        int quantity = quantities.get(productId);
+        return take(session, productId, quantity, shards)
+            .chain(shard -> shard == null
+                ? Uni.createFrom().item(productId)
+                : session.createNativeQuery(HOLD)
+                    .setParameter(1, holdId)
+                    .setParameter(2, productId)
+                    .setParameter(3, shard)
+                    .setParameter(4, quantity)
+                    .setParameter(5, expiresAt)
+                    .setParameter(6, now)
+                    .executeUpdate()
+                    .chain(() -> holdFrom(session, holdId, productIds, index + 1, quantities, shards, expiresAt, now)));
+    }
+    
+    public Uni<Integer> attach(String holdId, Long orderId) {
+        return sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("update stock_reservations set order_id = ?1 where hold_id = ?2")
+            .setParameter(1, orderId)
+            .setParameter(2, holdId)
+            .executeUpdate());
+    }
+    
+    // Shard rows and their total for a product, to tell a sold-out product from one never spread
+    public Uni<Object[]> findSellable(Long productId) {
+        return sessionFactory.withSession(session -> session
+            .createNativeQuery("select count(*), coalesce(sum(available), 0) from inventory_shards " +
+                "where product_id = ?1", Object[].class)
+            .setParameter(1, productId)
+            .getSingleResult());
+    }
+    
+    // Turns the order's holds into sales: on-hand stock drops and a SALE transaction is recorded per
+    // product. Holds that expired before payment are taken again if stock allows. Returns the products
+    // sold and, separately, those whose expired hold could no longer be covered. Only HELD and EXPIRED
+    // holds are picked up, so committing an order again is a no-op.
+    public Uni<CommitResult> commit(Long orderId, int shards) {
+        LocalDateTime now = LocalDateTime.now();
+        return retryingDeadlocks(() -> {
+            CommitResult result = new CommitResult();
+            return sessionFactory.withTransaction((session, tx) -> session
+                .createNativeQuery("select id, product_id, quantity, status from stock_reservations " +
+                    "where order_id = ?1 and status in ('HELD', 'EXPIRED') order by product_id, id for update",
+                    Object[].class)
+                .setParameter(1, orderId)
+                .getResultList()
+                // Products before the shards an expired hold is taken again from, as stock edits lock them
+                .call(rows -> rows.isEmpty()
+                    ? Uni.createFrom().voidItem()
+                    : session.createNativeQuery("select id from products where id in ?1 order by id for update")
+                        .setParameter(1, rows.stream().map(row -> ((Number) row[1]).longValue())
+                            .collect(Collectors.toSet()))
+                        .getResultList())
+                .chain(rows -> commitFrom(session, orderId, rows, 0, shards, now, result))
+                .replaceWith(result));
+        });
+    }
+    
+    private Uni<Void> commitFrom(Mutiny.Session session, Long orderId, List<Object[]> rows, int index,
+            int shards, LocalDateTime now, CommitResult result) {
+        if (index == rows.size()) {
+            return Uni.createFrom().voidItem();
+        }
+        Object[] row = rows.get(index);
+        Long id = ((Number) row[0]).longValue();
+        Long productId = ((Number) row[1]).longValue();
+        int quantity = ((Number) row[2]).intValue();
+        boolean expired = ReservationStatus.EXPIRED.name().equals(row[3]);
+        
+        Uni<Integer> covered = expired
+            ? take(session, productId, quantity, shards)
+            : Uni.createFrom().item(-1);
+        return covered
+            .chain(shard -> {
+                if (shard == null) {
+                    result.shortfall.add(productId);
+                    return Uni.createFrom().voidItem();
+                }
+                result.sold.add(productId);
+                result.soldQuantities.add(quantity);
+                return session.createNativeQuery("update stock_reservations set status = 'COMMITTED', " +
+                        "shard = case when ?1 >= 0 then ?1 else shard end, updated_at = ?2 where id = ?3")
+                    .setParameter(1, shard)
+                    .setParameter(2, now)
+                    .setParameter(3, id)
+                    .executeUpdate()
+                    .chain(() -> session.createNativeQuery("update products set stock_quantity = stock_quantity - ?1, " +
+                            "version = coalesce(version, 0) + 1, updated_at = ?2 where id = ?3 returning stock_quantity",
+                            Integer.class)
+                        .setParameter(1, quantity)
+                        .setParameter(2, now)
+                        .setParameter(3, productId)
+                        .getSingleResult())
+                    .chain(stock -> session.createNativeQuery("insert into inventory_transactions " +
+                            "(product_id, quantity, type, reference, stock_before, stock_after, timestamp) " +
+                            "values (?1, ?2, 'SALE', ?3, ?4, ?5, ?6) returning id", Long.class)
+                        .setParameter(1, productId)
+                        .setParameter(2, quantity)
+                        .setParameter(3, "order:" + orderId)
+                        .setParameter(4, stock + quantity)
+                        .setParameter(5, stock)
+                        .setParameter(6, now)
+                        .getSingleResult())
+                    .invoke(result.transactionIds::add)
+                    .replaceWithVoid();
+            })
+            .chain(() -> commitFrom(session, orderId, rows, index + 1, shards, now, result));
+    }
+    
+    // Returns the order's held units to their shards
+    public Uni<Integer> release(Long orderId, int shards) {
+        return releaseWhere("order_id", orderId, shards);
+    }
+    
+    // Returns the units of a hold whose order was never saved, without waiting for its expiry
+    public Uni<Integer> releaseHold(String holdId, int shards) {
+        return releaseWhere("hold_id", holdId, shards);
+    }
+    
+    private Uni<Integer> releaseWhere(String column, Object value, int shards) {
+        LocalDateTime now = LocalDateTime.now();
+        return retryingDeadlocks(() -> sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("select id, product_id, shard, quantity from stock_reservations " +
+                "where " + column + " = ?1 and status = 'HELD' order by product_id, shard, id for update",
+                Object[].class)
+            .setParameter(1, value)
+            .getResultList()
+            .chain(rows -> giveBack(session, rows, 0, ReservationStatus.RELEASED, shards, now)
+                .replaceWith(rows.size()))));
+    }
+    
+    // Releases holds past their expiry, oldest first; rows another node is releasing are skipped
+    public Uni<Integer> expire(int limit, int shards) {
+        LocalDateTime now = LocalDateTime.now();
+        return retryingDeadlocks(() -> sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("select id, product_id, shard, quantity from stock_reservations " +
+                "where status = 'HELD' and expires_at < ?1 order by expires_at limit ?2 for update skip locked",
+                Object[].class)
+            .setParameter(1, now)
+            .setParameter(2, limit)
+            .getResultList()
+            .chain(rows -> {
+                List<Object[]> ordered = new ArrayList<>(rows);
+                ordered.sort(BY_PRODUCT_AND_SHARD);
+                return giveBack(session, ordered, 0, ReservationStatus.EXPIRED, shards, now)
+                    .replaceWith(rows.size());
+            })));
+    }
+    
+    private Uni<Void> giveBack(Mutiny.Session session, List<Object[]> rows, int index, ReservationStatus status,
+            int shards, LocalDateTime now) {
+        if (index == rows.size()) {
+            return Uni.createFrom().voidItem();
+        }
+        Object[] row = rows.get(index);
+        return session.createNativeQuery(GIVE_BACK)
+            .setParameter(1, ((Number) row[1]).longValue())
+            // A shard beyond the configured count would never be reserved from again
+            .setParameter(2, ((Number) row[2]).intValue() % shards)
+            .setParameter(3, ((Number) row[3]).intValue())
+            .executeUpdate()
+            .chain(() -> session.createNativeQuery("update stock_reservations set status = ?1, updated_at = ?2 " +
+                    "where id = ?3")
+                .setParameter(1, status.name())
+                .setParameter(2, now)
+                .setParameter(3, ((Number) row[0]).longValue())
+                .executeUpdate())
+            .chain(() -> giveBack(session, rows, index + 1, status, shards, now));
+    }
+    
+    // Rewrites the products' shards from on-hand minus held stock, e.g. for products created after
+    // sharding was introduced or whose stock was edited directly
+    public Uni<Void> rebalance(Collection<Long> productIds, int shards) {
+        return retryingDeadlocks(() -> sessionFactory.withTransaction((session, tx) ->
+            spread(session, productIds, shards)));
+    }
+    
+    private Uni<Void> spread(Mutiny.Session session, Collection<Long> productIds, int shards) {
+        return session.createNativeQuery("select id from products where id in ?1 order by id for update")
+            .setParameter(1, productIds)
+            .getResultList()
+            .chain(() -> session.createNativeQuery("select product_id from inventory_shards where product_id in ?1 " +
+                    "order by product_id, shard for update")
+                .setParameter(1, productIds)
+                .getResultList())
+            .chain(() -> session.createNativeQuery("delete from inventory_shards where product_id in ?1")
+                .setParameter(1, productIds)
+                .executeUpdate())
+            .chain(() -> session.createNativeQuery(SPREAD)
+                .setParameter(1, productIds)
+                .setParameter(2, shards)
+                .executeUpdate())
+            .replaceWithVoid();
+    }
+    
+    // Applies inventory transactions in one database transaction and keeps the shards in step: products
+    // that only gained units get them on one shard, the rest are re-spread. The products and their shards
+    // are locked once and each change is checked against the running stock level in the given order; a
+    // change that lowers stock may not take it below the units held for checkouts. Every product then
+    // gets a single UPDATE with its final level and the accepted rows go in as multi-row INSERTs.
+    // Rejected changes carry their error, accepted ones their transaction id and stock levels. Returns
+    // the products whose stock moved.
+    public Uni<List<Long>> recordStockChanges(List<StockChange> changes, int shards) {
+        List<Long> productIds = changes.stream()
+            .map(StockChange::getProductId)
+            .distinct()
+            .sorted()
+            .collect(Collectors.toList());
+        LocalDateTime now = LocalDateTime.now();
+        return retryingDeadlocks(() -> sessionFactory.withTransaction((session, tx) -> session
+            .createNativeQuery("select id, stock_quantity from products where id in ?1 order by id for update",
+                Object[].class)
+            .setParameter(1, productIds)
+            .getResultList()
+            // Shards next, so no checkout can hold more units until the changes are in
+            .call(() -> session.createNativeQuery("select product_id from inventory_shards where product_id in ?1 " +
+                    "order by product_id, shard for update")
+                .setParameter(1, productIds)
+                .getResultList())
+            .chain(rows -> session.createNativeQuery("select product_id, sum(quantity) from stock_reservations " +
+                    "where product_id in ?1 and status = 'HELD' group by product_id", Object[].class)
+                .setParameter(1, productIds)
+                .getResultList()
+                .map(heldRows -> {
+                    Map<Long, Integer> held = new HashMap<>();
+                    for (Object[] row : heldRows) {
+                        held.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+                    }
+                    return Map.entry(rows, held);
+                }))
+            .chain(locked -> {
+                Map<Long, Integer> held = locked.getValue();
+                Map<Long, Integer> stock = new HashMap<>();
+                for (Object[] row : locked.getKey()) {
+                    stock.put(((Number) row[0]).longValue(), row[1] != null ? ((Number) row[1]).intValue() : 0);
+                }
+                // Products whose changes only added units keep their shards and get the sum on one of them
+                Map<Long, Integer> added = new TreeMap<>();
+                Set<Long> respread = new TreeSet<>();
+                List<StockChange> accepted = new ArrayList<>();
+                for (StockChange change : changes) {
+                    // A retried transaction starts over from what it reads
+                    change.error = null;
+                    change.transactionId = null;
+                    Integer current = stock.get(change.productId);
+                    if (current == null) {
+                        change.error = "Product not found";
+                        continue;
+                    }
+                    int level = change.absolute ? change.delta : current + change.delta;
+                    // Units held for checkouts are already sold as far as stock changes are concerned
+                    if (level < 0 || (level < current && level < held.getOrDefault(change.productId, 0))) {
+                        change.error = "Insufficient stock";
+                        continue;
+                    }
+                    stock.put(change.productId, level);
+                    change.stockBefore = current;
+                    change.stockQuantity = level;
+                    change.recordedAt = now;
+                    accepted.add(change);
+                    if (change.absolute || change.delta < 0 || respread.contains(change.productId)) {
+                        respread.add(change.productId);
+                        added.remove(change.productId);
+                    } else {
+                        added.merge(change.productId, change.delta, Integer::sum);
+                    }
+                }
+                if (accepted.isEmpty()) {
+                    return Uni.createFrom().item(List.<Long>of());
+                }
+                Set<Long> touched = new TreeSet<>(added.keySet());
+                touched.addAll(respread);
+                Uni<Void> work = Uni.createFrom().voidItem();
+                for (Long productId : touched) {
+                    int level = stock.get(productId);
+                    work = work.chain(() -> session.createNativeQuery("update products set stock_quantity = ?1, " +
+                            "version = coalesce(version, 0) + 1, updated_at = ?2 where id = ?3")
+                        .setParameter(1, level)
+                        .setParameter(2, now)
+                        .setParameter(3, productId)
+                        .executeUpdate()
+                        .replaceWithVoid());
+                }
+                for (Map.Entry<Long, Integer> entry : added.entrySet()) {
+                    work = work.chain(() -> session.createNativeQuery(GIVE_BACK)
+                        .setParameter(1, entry.getKey())
+                        .setParameter(2, ThreadLocalRandom.current().nextInt(shards))
+                        .setParameter(3, entry.getValue())
+                        .executeUpdate()
+                        .replaceWithVoid());
+                }
+                if (!respread.isEmpty()) {
+                    work = work.chain(() -> spread(session, respread, shards));
+                }
+                return work
+                    .chain(() -> insertTransactions(session, accepted, now))
+                    .replaceWith(new ArrayList<>(touched));
+            })));
+    }
+    
+    private Uni<Void> insertTransactions(Mutiny.Session session, List<StockChange> accepted, LocalDateTime now) {
+        return Multi.createFrom().range(0, (accepted.size() + ROWS_PER_STATEMENT - 1) / ROWS_PER_STATEMENT)
+            .onItem().transformToUniAndConcatenate(chunk -> insertTransactionRows(session, accepted.subList(
+                chunk * ROWS_PER_STATEMENT, Math.min((chunk + 1) * ROWS_PER_STATEMENT, accepted.size())), now))
+            .collect().last()
+            .replaceWithVoid();
+    }
+    
+    private Uni<Void> insertTransactionRows(Mutiny.Session session, List<StockChange> accepted, LocalDateTime now) {
+        StringBuilder sql = new StringBuilder("insert into inventory_transactions " +
+            "(product_id, quantity, type, reference, stock_before, stock_after, timestamp) values ");
+        for (int i = 0; i < accepted.size(); i++) {
+            int first = i * 6 + 2;
+            sql.append(i == 0 ? "" : ", ")
+                .append("(?").append(first).append(", ?").append(first + 1)
+                .append(", ?").append(first + 2).append(", cast(?").append(first + 3).append(" as varchar)")
+                .append(", ?").append(first + 4).append(", ?").append(first + 5).append(", ?1)");
+        }
+        Mutiny.SelectionQuery<Long> insert = session.createNativeQuery(sql.append(" returning id").toString(),
+            Long.class);
+        insert.setParameter(1, now);
+        for (int i = 0; i < accepted.size(); i++) {
+            StockChange change = accepted.get(i);
+            int first = i * 6 + 2;
+            insert.setParameter(first, change.productId)
+                .setParameter(first + 1, change.quantity)
+                .setParameter(first + 2, change.type.name())
+                .setParameter(first + 3, change.reference)
+                .setParameter(first + 4, change.stockBefore)
+                .setParameter(first + 5, change.stockQuantity);
+        }
+        // Postgres returns the generated ids in VALUES order
+        return insert.getResultList()
+            .invoke(ids -> {
+                for (int i = 0; i < ids.size(); i++) {
+                    accepted.get(i).transactionId = ids.get(i);
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    // Takes the units from one shard, starting at a random one; when no single shard has enough,
+    // from several. Null (with nothing taken) when the product's shards cannot cover the quantity.
+    private Uni<Integer> take(Mutiny.Session session, Long productId, int quantity, int shards) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        return takeWhole(session, productId, quantity, shards, start, 0)
+            .chain(shard -> shard != null
+                ? Uni.createFrom().item(shard)
+                : takeSpread(session, productId, quantity));
+    }
+    
+    private Uni<Integer> takeWhole(Mutiny.Session session, Long productId, int quantity, int shards,
+            int start, int attempt) {
+        if (attempt == shards) {
+            return Uni.createFrom().nullItem();
+        }
+        int shard = (start + attempt) % shards;
+        return decrement(session, productId, shard, quantity)
+            .chain(taken -> taken
+                ? Uni.createFrom().item(shard)
+                : takeWhole(session, productId, quantity, shards, start, attempt + 1));
+    }
+    
+    private Uni<Integer> takeSpread(Mutiny.Session session, Long productId, int quantity) {
+        return session.createNativeQuery("select shard, available from inventory_shards " +
+                "where product_id = ?1 and available > 0 order by available desc, shard", Object[].class)
+            .setParameter(1, productId)
+            .getResultList()
+            .chain(rows -> {
+                List<int[]> plan = new ArrayList<>();
+                int remaining = quantity;
+                for (Object[] row : rows) {
+                    if (remaining == 0) {
+                        break;
+                    }
+                    int amount = Math.min(remaining, ((Number) row[1]).intValue());
+                    plan.add(new int[] { ((Number) row[0]).intValue(), amount });
+                    remaining -= amount;
+                }
+                if (remaining > 0) {
+                    return Uni.createFrom().nullItem();
+                }
+                plan.sort(Comparator.comparingInt(step -> step[0]));
+                return takePlan(session, productId, plan, 0);
+            });
+    }
+    
+    // Another checkout may drain a planned shard first; what was already taken then goes back
+    private Uni<Integer> takePlan(Mutiny.Session session, Long productId, List<int[]> plan, int index) {
+        if (index == plan.size()) {
+            return Uni.createFrom().item(plan.get(0)[0]);
+        }
+        int[] step = plan.get(index);
+        return decrement(session, productId, step[0], step[1])
+            .chain(taken -> taken
+                ? takePlan(session, productId, plan, index + 1)
+                : undo(session, productId, plan, index).replaceWith((Integer) null));
+    }
+    
+    private Uni<Void> undo(Mutiny.Session session, Long productId, List<int[]> plan, int count) {
+        Uni<Void> undo = Uni.createFrom().voidItem();
+        for (int i = 0; i < count; i++) {
+            int[] step = plan.get(i);
+            undo = undo.chain(() -> session.createNativeQuery(GIVE_BACK)
+                .setParameter(1, productId)
+                .setParameter(2, step[0])
+                .setParameter(3, step[1])
+                .executeUpdate()
+                .replaceWithVoid());
+        }
+        return undo;
+    }
+    
+    // The work must start over from scratch when resubscribed; it runs in a fresh transaction each time
+    private static <T> Uni<T> retryingDeadlocks(Supplier<Uni<T>> work) {
+        return Uni.createFrom().deferred(work)
+            .onFailure(StockReservationRepository::isDeadlock).retry().atMost(DEADLOCK_RETRIES);
+    }
+    
+    private static boolean isDeadlock(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PgException && DEADLOCK.equals(((PgException) cause).getSqlState())) {
+                return true;
+            }
+            if (cause instanceof JDBCException && DEADLOCK.equals(((JDBCException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private Uni<Boolean> decrement(Mutiny.Session session, Long productId, int shard, int quantity) {
+        return session.createNativeQuery("update inventory_shards set available = available - ?1 " +
+                "where product_id = ?2 and shard = ?3 and available >= ?1")
+            .setParameter(1, quantity)
+            .setParameter(2, productId)
+            .setParameter(3, shard)
+            .executeUpdate()
+            .map(updated -> updated > 0);
+    }
+    
+    // One inventory transaction of a batch: delta is the signed stock change, or the new stock level
+    // when absolute; quantity, type and reference are stored on the transaction row as given
+    public static class StockChange {
+        private final Long productId;
+        private final int quantity;
+        private final TransactionType type;
+        private final String reference;
+        private final int delta;
+        private final boolean absolute;
+        private Long transactionId;
+        private Integer stockBefore;
+        private Integer stockQuantity;
+        private LocalDateTime recordedAt;
+        private String error;
+        
+        public StockChange(Long productId, int quantity, TransactionType type, String reference, int delta,
+                boolean absolute) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.type = type;
+            this.reference = reference;
+            this.delta = delta;
+            this.absolute = absolute;
+        }
+        
+        public Long getProductId() {
+            return productId;
+        }
+        
+        public int getQuantity() {
+            return quantity;
+        }
+        
+        public TransactionType getType() {
+            return type;
+        }
+        
+        public Long getTransactionId() {
+            return transactionId;
+        }
+        
+        public Integer getStockBefore() {
+            return stockBefore;
+        }
+        
+        public Integer getStockQuantity() {
+            return stockQuantity;
+        }
+        
+        public LocalDateTime getRecordedAt() {
+            return recordedAt;
+        }
+        
+        public String getError() {
+            return error;
+        }
+    }
+    
+    public static class CommitResult {
+        private final List<Long> sold = new ArrayList<>();
+        private final List<Long> shortfall = new ArrayList<>();
+        private final List<Integer> soldQuantities = new ArrayList<>();
+        private final List<Long> transactionIds = new ArrayList<>();
+        
+        public List<Long> getSold() {
+            return sold;
+        }
+        
+        public List<Integer> getSoldQuantities() {
+            return soldQuantities;
+        }
+        
+        public List<Long> getShortfall() {
+            return shortfall;
+        }
+        
+        public List<Long> getTransactionIds() {
+            return transactionIds;
+        }
+    }
+}
\ No newline at end of file
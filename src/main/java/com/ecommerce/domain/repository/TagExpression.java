@@ -0,0 +1,308 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.exception.ValidationException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+// Boolean tag expression, e.g. "organic and (vegan or vegetarian) and not sale".
+// Adjacent terms without an operator are ANDed; "&", "|" and "!" are accepted as shorthands.
+public abstract class TagExpression {
+    
+    public static final int MAX_TAGS = 32;
+    public static final int MAX_QUERY_LENGTH = 1000;
+    public static final int MAX_DEPTH = 16;
+    
+    // Combines the plain tag list (all required) with an optional expression; null when neither is set
+    public static TagExpression of(Collection<String> requiredTags, String query) {
+        List<TagExpression> terms = new ArrayList<>();
+        if (requiredTags != null) {
+            for (String name : requiredTags) {
+                String tag = normalize(name);
+                if (!tag.isEmpty()) {
+                    terms.add(new Tag(tag));
+                }
+            }
+        }
+        if (query != null && !query.isBlank()) {
+            if (query.length() > MAX_QUERY_LENGTH) {
+                throw new ValidationException("Tag query is limited to " + MAX_QUERY_LENGTH + " characters");
+            }
+            terms.add(new Parser(query).parse());
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        TagExpression expression = terms.size() == 1 ? terms.get(0) : new And(terms);
+        if (expression.tagCount() > MAX_TAGS) {
+            throw new ValidationException("Tag filter may reference at most " + MAX_TAGS + " tags");
+        }
+        return expression;
+    }
+    
+    public static String normalize(String tag) {
+        return tag == null ? "" : tag.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    abstract int tagCount();
+    
+    // Structure with tag names replaced by placeholders; expressions with the same shape share a compiled query
+    abstract void appendShape(StringBuilder shape);
+    
+    // Renders a predicate on Product.id, numbering positional parameters from next[0]
+    abstract void appendHql(StringBuilder hql, int[] next);
+    
+    abstract void collectParams(List<Object> params);
+    
+    public String shape() {
+        StringBuilder shape = new StringBuilder();
+        appendShape(shape);
+        return shape.toString();
+    }
+    
+    public static final class Tag extends TagExpression {
+        private final String name;
+        
+        Tag(String name) {
+            this.name = name;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        @Override
+        int tagCount() {
+            return 1;
+        }
+        
+        @Override
+        void appendShape(StringBuilder shape) {
+            shape.append('?');
+        }
+        
+        @Override
+        void appendHql(StringBuilder hql, int[] next) {
+            hql.append("id in (select tp.id from Product tp join tp.tags tt where lower(tt.name) = ?")
+                .append(next[0]++).append(")");
+        }
+        
+        @Override
+        void collectParams(List<Object> params) {
+            params.add(name);
+        }
+    }
+    
+    public static final class Not extends TagExpression {
+        private final TagExpression operand;
+        
+        Not(TagExpression operand) {
+            this.operand = operand;
+        }
+        
+        public TagExpression getOperand() {
+            return operand;
+        }
+        
+        @Override
+        int tagCount() {
+            return operand.tagCount();
+        }
+        
+        @Override
+        void appendShape(StringBuilder shape) {
+            shape.append('!');
+            operand.appendShape(shape);
+        }
+        
+        @Override
+        void appendHql(StringBuilder hql, int[] next) {
+            hql.append("not (");
+            operand.appendHql(hql, next);
+            hql.append(")");
+        }
+        
+        @Override
+        void collectParams(List<Object> params) {
+            operand.collectParams(params);
+        }
+    }
+    
+    public static final class And extends Junction {
+        And(List<TagExpression> operands) {
+            super(operands, "and", '&');
+        }
+    }
+    
+    public static final class Or extends Junction {
+        Or(List<TagExpression> operands) {
+            super(operands, "or", '|');
+        }
+    }
+    
+    public abstract static class Junction extends TagExpression {
+        private final List<TagExpression> operands;
+        private final String keyword;
+        private final char symbol;
+        
+        Junction(List<TagExpression> operands, String keyword, char symbol) {
+            this.operands = operands;
+            this.keyword = keyword;
+            this.symbol = symbol;
+        }
+        
+        public List<TagExpression> getOperands() {
+            return operands;
+        }
+        
+        @Override
+        int tagCount() {
+            int count = 0;
+            for (TagExpression operand : operands) {
+                count += operand.tagCount();
+            }
+            return count;
+        }
+        
+        @Override
+        void appendShape(StringBuilder shape) {
+            shape.append('(');
+            for (int i = 0; i < operands.size(); i++) {
+                if (i > 0) {
+                    shape.append(symbol);
+                }
+                operands.get(i).appendShape(shape);
+            }
+            shape.append(')');
+        }
+        
+        @Override
+        void appendHql(StringBuilder hql, int[] next) {
+            hql.append("(");
+            for (int i = 0; i < operands.size(); i++) {
+                if (i > 0) {
+                    hql.append(' ').append(keyword).append(' ');
+                }
+                operands.get(i).appendHql(hql, next);
+            }
+            hql.append(")");
+        }
+        
+        @Override
+        void collectParams(List<Object> params) {
+            for (TagExpression operand : operands) {
+                operand.collectParams(params);
+            }
+        }
+    }
+    
+    // expr := term (OR term)* ; term := factor ([AND] factor)* ; factor := NOT factor | '(' expr ')' | tag
+    private static final class Parser {
+        private final List<String> tokens = new ArrayList<>();
+        private int pos;
+        // Open parentheses and negations around the current position
+        private int depth;
+        
+        Parser(String input) {
+            int i = 0;
+            while (i < input.length()) {
+                char c = input.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')' || c == '&' || c == '|' || c == '!') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < input.length() && isTagChar(input.charAt(i))) {
+                        i++;
+                    }
+                    if (start == i) {
+                        throw new ValidationException("Unexpected '" + c + "' in tag query");
+                    }
+                    tokens.add(input.substring(start, i));
+                }
+            }
+        }
+        
+        TagExpression parse() {
+            TagExpression expression = parseOr();
+            if (pos < tokens.size()) {
+                throw new ValidationException("Unexpected '" + tokens.get(pos) + "' in tag query");
+            }
+            return expression;
+        }
+        
+        private TagExpression parseOr() {
+            List<TagExpression> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (accept("|") || accept("or")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+        
+        private TagExpression parseAnd() {
+            List<TagExpression> operands = new ArrayList<>();
+            operands.add(parseFactor());
+            while (pos < tokens.size() && !peek(")") && !peek("|") && !peek("or")) {
+                if (!accept("&")) {
+                    accept("and");
+                }
+                operands.add(parseFactor());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+        
+        private TagExpression parseFactor() {
+            if (pos >= tokens.size()) {
+                throw new ValidationException("Incomplete tag query");
+            }
+            if (accept("!") || accept("not")) {
+                enter();
+                TagExpression operand = parseFactor();
+                depth--;
+                return new Not(operand);
+            }
+            if (accept("(")) {
+                enter();
+                TagExpression inner = parseOr();
+                if (!accept(")")) {
+                    throw new ValidationException("Missing ')' in tag query");
+                }
+                depth--;
+                return inner;
+            }
+            String token = tokens.get(pos);
+            if (token.length() == 1 && "()&|".indexOf(token.charAt(0)) >= 0) {
+                throw new ValidationException("Unexpected '" + token + "' in tag query");
+            }
+            pos++;
+            return new Tag(normalize(token));
+        }
+        
+        // Bounds the recursion of parsing, and of everything that later walks the tree
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw new ValidationException("Tag query may nest at most " + MAX_DEPTH + " levels");
+            }
+        }
+        
+        private boolean peek(String token) {
+            return pos < tokens.size() && tokens.get(pos).equalsIgnoreCase(token);
+        }
+        
+        private boolean accept(String token) {
+            if (peek(token)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+        
+        private static boolean isTagChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.';
+        }
+    }
+}
\ No newline at end of file
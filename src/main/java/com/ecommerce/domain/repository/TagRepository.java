@@ -0,0 +1,28 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.Tag;
+import io.quarkus.hibernate.reactive.panache.PanacheRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.Collection;
+import java.util.List;
+import org.hibernate.reactive.mutiny.Mutiny;
+
+@ApplicationScoped
+public class TagRepository implements PanacheRepository<Tag> {
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
+    public Uni<List<Tag>> findByNames(Collection<String> names) {
+        return list("lower(name) in ?1", names);
+    }
+    
+    // Rows of id and lowercased name for every tag
+    public Uni<List<Object[]>> findAllNames() {
+        return sessionFactory.withSession(session -> session
+            .createQuery("select t.id, lower(t.name) from Tag t", Object[].class)
+            .getResultList());
+    }
+}
\ No newline at end of file
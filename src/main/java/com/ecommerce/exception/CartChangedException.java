@@ -0,0 +1,17 @@
+package com.ecommerce.exception;
+
+import com.ecommerce.domain.dto.CartValidationDTO;
+
+// Checkout found the cart repriced or not fully available; carries what changed for the shopper to review
+public class CartChangedException extends RuntimeException {
+    private final CartValidationDTO validation;
+    
+    public CartChangedException(CartValidationDTO validation) {
+        super("Cart changed since it was reviewed");
+        this.validation = validation;
+    }
+    
+    public CartValidationDTO getValidation() {
+        return validation;
+    }
+}
\ No newline at end of file
@@ -15,6 +15,24 @@ public class GlobalExceptionHandler implements ExceptionMapper<Exception> {
                 .build();
         }
         
+        if (exception instanceof CartChangedException) {
+            return Response.status(Response.Status.CONFLICT)
+                .entity(((CartChangedException) exception).getValidation())
+                .build();
+        }
+        
+        if (exception instanceof InsufficientStockException) {
+            return Response.status(Response.Status.CONFLICT)
+                .entity(new ErrorResponse(exception.getMessage()))
+                .build();
+        }
+        
+        if (exception instanceof ValidationException) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(exception.getMessage()))
+                .build();
+        }
+        
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
             .entity(new ErrorResponse("An unexpected error occurred"))
             .build();
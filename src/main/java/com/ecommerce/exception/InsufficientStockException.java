@@ -0,0 +1,15 @@
+package com.ecommerce.exception;
+
+// A product cannot cover the requested units: sold out or held for other checkouts
+public class InsufficientStockException extends RuntimeException {
+    private final Long productId;
+    
+    public InsufficientStockException(Long productId) {
+        super("Insufficient stock for product " + productId);
+        this.productId = productId;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+}
\ No newline at end of file
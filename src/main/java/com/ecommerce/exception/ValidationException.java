@@ -0,0 +1,7 @@
+package com.ecommerce.exception;
+
+public class ValidationException extends RuntimeException {
+    public ValidationException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
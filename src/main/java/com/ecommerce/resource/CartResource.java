@@ -1,11 +1,14 @@
 package com.ecommerce.resource;
 
+import com.ecommerce.domain.dto.CartItemChangeDTO;
 import com.ecommerce.service.CartService;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
+import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.util.List;
 
 @Path("/api/cart")
 @Produces(MediaType.APPLICATION_JSON)
@@ -30,4 +33,48 @@ public class CartResource {
         return cartService.addToCart(userId, productId, quantity)
             .onItem().transform(cart -> Response.ok(cart).build());
     }
+    
+    // Sets the line's quantity; 0 removes it
+    @PUT
+    @Path("/items/{productId}")
+    public Uni<Response> setQuantity(
+            @HeaderParam("X-User-Id") String userId,
+            @PathParam("productId") Long productId,
+            @QueryParam("quantity") Integer quantity) {
+        return cartService.setQuantity(userId, productId, quantity)
+            .onItem().transform(cart -> Response.ok(cart).build());
+    }
+    
+    @DELETE
+    @Path("/items/{productId}")
+    public Uni<Response> removeItem(
+            @HeaderParam("X-User-Id") String userId,
+            @PathParam("productId") Long productId) {
+        return cartService.removeItem(userId, productId)
+            .onItem().transform(cart -> Response.ok(cart).build());
+    }
+    
+    // Many line changes applied together; none is applied when one of them is rejected
+    @PATCH
+    @Path("/items")
+    public Uni<Response> updateItems(
+            @HeaderParam("X-User-Id") String userId,
+            List<@Valid CartItemChangeDTO> changes) {
+        return cartService.updateItems(userId, changes)
+            .onItem().transform(cart -> Response.ok(cart).build());
+    }
+    
+    @DELETE
+    public Uni<Response> clearCart(@HeaderParam("X-User-Id") String userId) {
+        return cartService.clearCart(userId)
+            .onItem().transform(cart -> Response.ok(cart).build());
+    }
+    
+    // Reprices the cart and reports price changes, unavailable lines and stock shortfalls
+    @POST
+    @Path("/validate")
+    public Uni<Response> validate(@HeaderParam("X-User-Id") String userId) {
+        return cartService.validate(userId)
+            .onItem().transform(validation -> Response.ok(validation).build());
+    }
 }
\ No newline at end of file
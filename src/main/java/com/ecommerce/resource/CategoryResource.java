@@ -23,6 +23,13 @@ public class CategoryResource {
             .onItem().transform(categories -> Response.ok(categories).build());
     }
     
+    @GET
+    @Path("/tree")
+    public Uni<Response> getCategoryTree() {
+        return categoryService.getCategoryTree()
+            .onItem().transform(tree -> Response.ok(tree).build());
+    }
+    
     @GET
     @Path("/root")
     public Uni<Response> getRootCategories() {
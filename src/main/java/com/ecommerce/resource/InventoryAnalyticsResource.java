@@ -36,10 +36,20 @@ public class InventoryAnalyticsResource {
             .onItem().transform(products -> Response.ok(products).build());
     }
     
+    // Rolling 1, 7 or 30 day best sellers from memory
+    @GET
+    @Path("/top-selling/rolling")
+    public Uni<Response> getRollingTopSelling(
+            @QueryParam("days") @DefaultValue("7") int days,
+            @QueryParam("limit") @DefaultValue("10") int limit) {
+        return analyticsService.getRollingTopSelling(days, limit)
+            .onItem().transform(products -> Response.ok(products).build());
+    }
+    
     @GET
     @Path("/stockout-risk")
-    public Uni<Response> getStockoutRisk() {
-        return analyticsService.getStockoutRisk()
+    public Uni<Response> getStockoutRisk(@QueryParam("limit") @DefaultValue("100") int limit) {
+        return analyticsService.getStockoutRisk(limit)
             .onItem().transform(risks -> Response.ok(risks).build());
     }
     
@@ -2,6 +2,8 @@ package com.ecommerce.resource;
 
 import com.ecommerce.domain.dto.InventoryTransactionDTO;
 import com.ecommerce.domain.dto.StockAlertDTO;
+import com.ecommerce.exception.ValidationException;
+import com.ecommerce.service.InventoryBatchService;
 import com.ecommerce.service.InventoryService;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
@@ -9,15 +11,22 @@ import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.io.InputStream;
+import java.util.List;
 
 @Path("/api/inventory")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class InventoryResource {
     
+    private static final String NDJSON = "application/x-ndjson";
+    
     @Inject
     InventoryService inventoryService;
     
+    @Inject
+    InventoryBatchService inventoryBatchService;
+    
     @POST
     @Path("/transactions")
     public Uni<Response> recordTransaction(@Valid InventoryTransactionDTO transactionDTO) {
@@ -28,6 +37,25 @@ public class InventoryResource {
                     .build());
     }
     
+    // Many transactions in one call, as a JSON array or an NDJSON stream; each item gets its own result
+    @POST
+    @Path("/transactions/batch")
+    public Uni<Response> recordTransactions(List<InventoryTransactionDTO> transactions) {
+        if (transactions == null) {
+            throw new ValidationException("A list of transactions is required");
+        }
+        return inventoryBatchService.record(transactions)
+            .onItem().transform(result -> Response.ok(result).build());
+    }
+    
+    @POST
+    @Path("/transactions/batch")
+    @Consumes(NDJSON)
+    public Uni<Response> recordTransactionStream(InputStream transactions) {
+        return inventoryBatchService.record(transactions)
+            .onItem().transform(result -> Response.ok(result).build());
+    }
+    
     @GET
     @Path("/transactions/product/{productId}")
     public Uni<Response> getProductTransactions(@PathParam("productId") Long productId) {
@@ -38,10 +66,11 @@ public class InventoryResource {
     
     @GET
     @Path("/low-stock")
-    public Uni<Response> getLowStockProducts() {
-        return inventoryService.getLowStockProducts()
-            .onItem().transform(products -> 
-                Response.ok(products).build());
+    public Uni<Response> getLowStockProducts(
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") Integer size) {
+        return inventoryService.getLowStockProducts(cursor, size)
+            .onItem().transform(page -> Response.ok(page).build());
     }
     
     @POST
@@ -3,15 +3,27 @@ package com.ecommerce.resource;
 import com.ecommerce.domain.dto.PageDTO;
 import com.ecommerce.domain.dto.ProductDTO;
 import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.dto.ProductImportUploadDTO;
 import com.ecommerce.domain.model.Product;
+import com.ecommerce.exception.ValidationException;
+import com.ecommerce.service.ProductExportService;
+import com.ecommerce.service.ProductImportService;
 import com.ecommerce.service.ProductService;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
+import org.jboss.resteasy.reactive.MultipartForm;
+import org.jboss.resteasy.reactive.RestMulti;
+import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Path("/api/products")
 @Produces(MediaType.APPLICATION_JSON)
@@ -21,40 +33,116 @@ public class ProductResource {
     @Inject
     ProductService productService;
     
+    @Inject
+    ProductExportService exportService;
+    
+    @Inject
+    ProductImportService importService;
+    
     @GET
     public Uni<Response> getProducts(
             @QueryParam("searchTerm") String searchTerm,
             @QueryParam("categoryId") Long categoryId,
+            @QueryParam("includeSubcategories") Boolean includeSubcategories,
             @QueryParam("minPrice") Double minPrice,
             @QueryParam("maxPrice") Double maxPrice,
             @QueryParam("minRating") Double minRating,
             @QueryParam("inStock") Boolean inStock,
+            @QueryParam("tags") Set<String> tags,
+            @QueryParam("tagQuery") String tagQuery,
             @QueryParam("sortBy") String sortBy,
             @QueryParam("sortDirection") String sortDirection,
             @QueryParam("page") Integer page,
-            @QueryParam("size") Integer size) {
+            @QueryParam("size") Integer size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("estimateTotal") Boolean estimateTotal) {
         
-        ProductFilterDTO filter = new ProductFilterDTO();
-        filter.setSearchTerm(searchTerm);
-        filter.setCategoryId(categoryId);
-        filter.setMinPrice(minPrice != null ? BigDecimal.valueOf(minPrice) : null);
-        filter.setMaxPrice(maxPrice != null ? BigDecimal.valueOf(maxPrice) : null);
-        filter.setMinRating(minRating);
-        filter.setInStock(inStock);
+        ProductFilterDTO filter = buildFilter(
+            searchTerm, categoryId, minPrice, maxPrice, minRating, inStock, tags, tagQuery);
+        filter.setIncludeSubcategories(includeSubcategories);
         filter.setSortBy(sortBy);
         filter.setSortDirection(sortDirection);
         filter.setPage(page);
         filter.setSize(size);
+        filter.setCursor(cursor);
+        filter.setEstimateTotal(estimateTotal);
         
         return productService.getFilteredProducts(filter)
             .onItem().transform(products -> Response.ok(products).build());
     }
     
+    @GET
+    @Path("/facets")
+    public Uni<Response> getFacets(
+            @QueryParam("searchTerm") String searchTerm,
+            @QueryParam("categoryId") Long categoryId,
+            @QueryParam("includeSubcategories") Boolean includeSubcategories,
+            @QueryParam("minPrice") Double minPrice,
+            @QueryParam("maxPrice") Double maxPrice,
+            @QueryParam("minRating") Double minRating,
+            @QueryParam("inStock") Boolean inStock,
+            @QueryParam("tags") Set<String> tags,
+            @QueryParam("tagQuery") String tagQuery,
+            @QueryParam("priceBuckets") String priceBuckets) {
+        
+        ProductFilterDTO filter = buildFilter(
+            searchTerm, categoryId, minPrice, maxPrice, minRating, inStock, tags, tagQuery);
+        filter.setIncludeSubcategories(includeSubcategories);
+        
+        List<BigDecimal> bounds = null;
+        if (priceBuckets != null && !priceBuckets.isBlank()) {
+            try {
+                bounds = Arrays.stream(priceBuckets.split(","))
+                    .map(String::trim)
+                    .map(BigDecimal::new)
+                    .collect(Collectors.toList());
+            } catch (NumberFormatException e) {
+                throw new ValidationException("Invalid price buckets");
+            }
+        }
+        
+        return productService.getFacets(filter, bounds)
+            .onItem().transform(facets -> Response.ok(facets).build());
+    }
+    
+    // Streams every active product as NDJSON (default) or CSV without buffering the catalog
+    @GET
+    @Path("/export")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public RestMulti<Buffer> exportProducts(@QueryParam("format") String format) {
+        ProductExportService.Format exportFormat = ProductExportService.Format.parse(format);
+        return RestMulti.fromMultiData(exportService.export(exportFormat))
+            .header(HttpHeaders.CONTENT_TYPE, exportFormat.getMediaType())
+            .header("Content-Disposition",
+                "attachment; filename=\"products." + exportFormat.getExtension() + "\"")
+            .build();
+    }
+    
+    // Bulk create/update from a CSV or NDJSON upload; failed rows are reported by line number
+    @POST
+    @Path("/import")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    public Uni<Response> importProducts(@MultipartForm ProductImportUploadDTO upload) {
+        if (upload.getFile() == null) {
+            throw new ValidationException("An import file is required");
+        }
+        ProductExportService.Format format =
+            ProductImportService.detectFormat(upload.getFormat(), upload.getFile().fileName());
+        return importService.importFile(upload.getFile().uploadedFile(), format)
+            .onItem().transform(result -> Response.ok(result).build());
+    }
+    
+    @GET
+    @Path("/cache/stats")
+    public Response getCacheStats() {
+        return Response.ok(productService.getDetailCacheStats()).build();
+    }
+    
     @GET
     @Path("/{id}")
     public Uni<Response> getProduct(@PathParam("id") Long id) {
-        return productService.getProductById(id)
-            .onItem().transform(product -> Response.ok(product).build());
+        return productService.getProductDetail(id)
+            .onItem().transform(json -> Response.ok(json, MediaType.APPLICATION_JSON).build());
     }
     
     @POST
@@ -79,4 +167,18 @@ public class ProductResource {
                 deleted ? Response.noContent().build()
                        : Response.status(Response.Status.NOT_FOUND).build());
     }
+    
+    private ProductFilterDTO buildFilter(String searchTerm, Long categoryId, Double minPrice,
+            Double maxPrice, Double minRating, Boolean inStock, Set<String> tags, String tagQuery) {
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setSearchTerm(searchTerm);
+        filter.setCategoryId(categoryId);
+        filter.setMinPrice(minPrice != null ? BigDecimal.valueOf(minPrice) : null);
+        filter.setMaxPrice(maxPrice != null ? BigDecimal.valueOf(maxPrice) : null);
+        filter.setMinRating(minRating);
+        filter.setInStock(inStock);
+        filter.setTags(tags);
+        filter.setTagQuery(tagQuery);
+        return filter;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.ecommerce.resource;
 
 import com.ecommerce.domain.dto.ReviewDTO;
+import com.ecommerce.exception.ValidationException;
 import com.ecommerce.service.ReviewService;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
@@ -8,6 +9,8 @@ import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
 
 @Path("/api/reviews")
 @Produces(MediaType.APPLICATION_JSON)
@@ -19,11 +22,49 @@ public class ReviewResource {
     
     @GET
     @Path("/product/{productId}")
-    public Uni<Response> getProductReviews(@PathParam("productId") Long productId) {
-        return reviewService.getProductReviews(productId)
+    public Uni<Response> getProductReviews(
+            @PathParam("productId") Long productId,
+            @QueryParam("sort") String sort,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") Integer size) {
+        return reviewService.getProductReviews(productId, sort, cursor, size)
+            .onItem().transform(page -> Response.ok(page).build());
+    }
+    
+    @GET
+    @Path("/product/{productId}/top")
+    public Uni<Response> getTopReviews(
+            @PathParam("productId") Long productId,
+            @QueryParam("limit") Integer limit) {
+        return reviewService.getTopReviews(productId, limit)
             .onItem().transform(reviews -> Response.ok(reviews).build());
     }
     
+    @GET
+    @Path("/product/{productId}/summary")
+    public Uni<Response> getSummary(@PathParam("productId") Long productId) {
+        return reviewService.getSummary(productId)
+            .onItem().transform(summary -> Response.ok(summary).build());
+    }
+    
+    // Summaries for a listing page in one call: ?productIds=1,2,3
+    @GET
+    @Path("/summaries")
+    public Uni<Response> getSummaries(@QueryParam("productIds") String productIds) {
+        List<Long> ids = new ArrayList<>();
+        if (productIds != null && !productIds.isBlank()) {
+            try {
+                for (String id : productIds.split(",")) {
+                    ids.add(Long.valueOf(id.trim()));
+                }
+            } catch (NumberFormatException e) {
+                throw new ValidationException("Invalid product ids");
+            }
+        }
+        return reviewService.getSummaries(ids)
+            .onItem().transform(summaries -> Response.ok(summaries).build());
+    }
+    
     @GET
     @Path("/user")
     public Uni<Response> getUserReviews(@HeaderParam("X-User-Id") String userId) {
@@ -65,6 +106,6 @@ public class ReviewResource {
     @Path("/{reviewId}/helpful")
     public Uni<Response> voteHelpful(@PathParam("reviewId") Long reviewId) {
         return reviewService.voteHelpful(reviewId)
-            .onItem().transform(review -> Response.ok(review).build());
+            .onItem().transform(v -> Response.accepted().build());
     }
 }
\ No newline at end of file
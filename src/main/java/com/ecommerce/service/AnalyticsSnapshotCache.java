@@ -0,0 +1,108 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.repository.InventoryAnalyticsRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Dashboard figures that are expensive to compute and fine to serve a little stale. Each node keeps the
+// last value for the TTL; past that it reads the snapshot stored in analytics_snapshots, and only when
+// that is stale too does one node, holding a short claim, recompute and store it. Nodes that lose the
+// claim keep serving the stale snapshot meanwhile, so the catalog is aggregated once per interval
+// however many replicas serve the dashboard.
+@ApplicationScoped
+public class AnalyticsSnapshotCache {
+    
+    @Inject
+    InventoryAnalyticsRepository analyticsRepository;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @ConfigProperty(name = "app.analytics.snapshot-ttl-seconds", defaultValue = "30")
+    long ttlSeconds;
+    
+    private final Map<String, Cached> local = new ConcurrentHashMap<>();
+    
+    // Concurrent misses for the same snapshot share one load
+    private final Map<String, Uni<Object>> loading = new ConcurrentHashMap<>();
+    
+    @SuppressWarnings("unchecked")
+    public <T> Uni<T> get(String name, TypeReference<T> type, Supplier<Uni<T>> compute) {
+        Cached cached = local.get(name);
+        if (cached != null && isFresh(cached.computedAt)) {
+            return Uni.createFrom().item((T) cached.value);
+        }
+        return (Uni<T>) loading.computeIfAbsent(name, key -> ((Uni<Object>) load(name, type, compute))
+            .eventually(() -> loading.remove(name))
+            .memoize().indefinitely());
+    }
+    
+    private <T> Uni<Object> load(String name, TypeReference<T> type, Supplier<Uni<T>> compute) {
+        return analyticsRepository.findSnapshot(name)
+            .chain(stored -> {
+                T storedValue = stored != null && stored[0] != null ? parse((String) stored[0], type) : null;
+                LocalDateTime storedAt = stored != null ? (LocalDateTime) stored[1] : null;
+                if (storedValue != null && isFresh(storedAt)) {
+                    return Uni.createFrom().item(keep(name, storedValue, storedAt));
+                }
+                return analyticsRepository.claimSnapshot(name, LocalDateTime.now().plusSeconds(ttlSeconds))
+                    .chain(claimed -> {
+                        if (!claimed && storedValue != null) {
+                            return Uni.createFrom().<Object>item(storedValue);
+                        }
+                        LocalDateTime computedAt = LocalDateTime.now();
+                        // Without the claim there is nothing to serve yet, so compute without storing
+                        return compute.get()
+                            .call(value -> claimed
+                                ? analyticsRepository.saveSnapshot(name, write(value), computedAt)
+                                : Uni.createFrom().voidItem())
+                            .map(value -> keep(name, value, computedAt));
+                    });
+            });
+    }
+    
+    private Object keep(String name, Object value, LocalDateTime computedAt) {
+        local.put(name, new Cached(value, computedAt));
+        return value;
+    }
+    
+    private boolean isFresh(LocalDateTime computedAt) {
+        return computedAt != null && computedAt.isAfter(LocalDateTime.now().minusSeconds(ttlSeconds));
+    }
+    
+    private <T> T parse(String payload, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (JsonProcessingException e) {
+            // Written by an older version; recomputed below
+            return null;
+        }
+    }
+    
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Snapshot is not serializable", e);
+        }
+    }
+    
+    private static final class Cached {
+        private final Object value;
+        private final LocalDateTime computedAt;
+        
+        Cached(Object value, LocalDateTime computedAt) {
+            this.value = value;
+            this.computedAt = computedAt;
+        }
+    }
+}
\ No newline at end of file
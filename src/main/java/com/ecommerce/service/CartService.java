@@ -1,81 +1,246 @@
 package com.ecommerce.service;
 
-import com.ecommerce.domain.model.Cart;
-import com.ecommerce.domain.model.CartItem;
-import com.ecommerce.domain.model.Product;
-import com.ecommerce.domain.repository.CartRepository;
+import com.ecommerce.domain.dto.CartDTO;
+import com.ecommerce.domain.dto.CartItemChangeDTO;
+import com.ecommerce.domain.dto.CartValidationDTO;
 import com.ecommerce.domain.repository.ProductRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.exception.ValidationException;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+// Carts are read and changed in the cart store, which writes them to the database behind the request
 @ApplicationScoped
 public class CartService {
     
+    private static final int MAX_CHANGES = 1000;
+    private static final int MAX_QUANTITY = 999;
+    // Line subtotals and cart totals are stored as DECIMAL(10,2)
+    private static final BigDecimal MAX_AMOUNT = new BigDecimal("99999999.99");
+    
     @Inject
-    CartRepository cartRepository;
+    CartStore cartStore;
     
     @Inject
     ProductRepository productRepository;
     
-    public Uni<Cart> getCart(String userId) {
-        return cartRepository.findByUserId(userId)
-            .onItem().ifNull().switchTo(() -> createCart(userId));
+    public Uni<CartDTO> getCart(String userId) {
+        return requireUser(userId)
+            .chain(() -> cartStore.withCart(userId, CartStore.CartState::toDTO));
     }
     
-    @Transactional
-    public Uni<Cart> addToCart(String userId, Long productId, Integer quantity) {
-        return Uni.combine().all().unis(
-            getCart(userId),
-            productRepository.findById(productId)
-        ).asTuple()
-        .chain(tuple -> {
-            Cart cart = tuple.getItem1();
-            Product product = tuple.getItem2();
-            
-            if (product == null) {
+    public Uni<CartDTO> addToCart(String userId, Long productId, Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            return Uni.createFrom().failure(new ValidationException("Quantity must be at least 1"));
+        }
+        return updateItems(userId, List.of(change(productId, quantity, true)));
+    }
+    
+    public Uni<CartDTO> setQuantity(String userId, Long productId, Integer quantity) {
+        return updateItems(userId, List.of(change(productId, quantity, false)));
+    }
+    
+    public Uni<CartDTO> removeItem(String userId, Long productId) {
+        return updateItems(userId, List.of(change(productId, 0, false)));
+    }
+    
+    public Uni<CartDTO> clearCart(String userId) {
+        return requireUser(userId)
+            .chain(() -> cartStore.withCart(userId, cart -> {
+                cart.clear();
+                return cart.toDTO();
+            }));
+    }
+    
+    // Applies every change or none. Products are looked up together, once, and the changes are made under
+    // one hold of the cart, so they also reach the database in the same write. Lines that grow or are
+    // set take the product's current price; a line that only shrinks keeps its price.
+    public Uni<CartDTO> updateItems(String userId, List<CartItemChangeDTO> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return Uni.createFrom().failure(new ValidationException("At least one change is required"));
+        }
+        if (changes.size() > MAX_CHANGES) {
+            return Uni.createFrom().failure(
+                new ValidationException("At most " + MAX_CHANGES + " changes per request"));
+        }
+        Set<Long> priced = new LinkedHashSet<>();
+        for (CartItemChangeDTO change : changes) {
+            if (change.getProductId() == null || change.getQuantity() == null) {
+                return Uni.createFrom().failure(new ValidationException("Product ID and quantity are required"));
+            }
+            boolean increment = Boolean.TRUE.equals(change.getIncrement());
+            if (!increment && change.getQuantity() < 0) {
+                return Uni.createFrom().failure(new ValidationException("Quantity cannot be negative"));
+            }
+            if (change.getQuantity() > MAX_QUANTITY) {
                 return Uni.createFrom().failure(
-                    new ResourceNotFoundException("Product not found"));
+                    new ValidationException("Quantity cannot exceed " + MAX_QUANTITY));
+            }
+            if (change.getQuantity() > 0) {
+                priced.add(change.getProductId());
             }
-            
-            CartItem cartItem = findOrCreateCartItem(cart, product);
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            cartItem.setPrice(product.getPrice());
-            cartItem.setSubtotal(product.getPrice().multiply(
-                BigDecimal.valueOf(cartItem.getQuantity())));
-            
-            updateCartTotal(cart);
-            
-            return cartRepository.persist(cart);
-        });
+        }
+        
+        return requireUser(userId)
+            .chain(() -> priced.isEmpty()
+                ? Uni.createFrom().item(List.<Object[]>of())
+                : productRepository.findCartProducts(priced))
+            .chain(rows -> {
+                Map<Long, Object[]> products = new HashMap<>();
+                rows.forEach(row -> products.put((Long) row[0], row));
+                for (Long productId : priced) {
+                    Object[] product = products.get(productId);
+                    if (product == null) {
+                        return Uni.createFrom().failure(
+                            new ResourceNotFoundException("Product not found: " + productId));
+                    }
+                    if (!Boolean.TRUE.equals(product[4])) {
+                        return Uni.createFrom().failure(
+                            new ValidationException("Product is not available: " + productId));
+                    }
+                }
+                return cartStore.withCart(userId, cart -> {
+                    // Every line's outcome is checked before any is changed, so a rejected request
+                    // leaves the cart as it was
+                    Map<Long, Integer> quantities = new LinkedHashMap<>();
+                    for (CartItemChangeDTO change : changes) {
+                        Long productId = change.getProductId();
+                        int current = quantities.getOrDefault(productId, cart.quantity(productId));
+                        quantities.put(productId, quantityAfter(current, change));
+                    }
+                    checkLimits(cart, quantities, products);
+                    quantities.forEach((productId, quantity) ->
+                        apply(cart, productId, quantity, products.get(productId)));
+                    return cart.toDTO();
+                });
+            });
     }
     
-    private CartItem findOrCreateCartItem(Cart cart, Product product) {
-        return cart.getItems().stream()
-            .filter(item -> item.getProduct().getId().equals(product.getId()))
-            .findFirst()
-            .orElseGet(() -> {
-                CartItem newItem = new CartItem();
-                newItem.setCart(cart);
-                newItem.setProduct(product);
-                newItem.setQuantity(0);
-                cart.getItems().add(newItem);
-                return newItem;
-            });
+    // Checks every line against one lookup of all the cart's products, starting from the cart as last
+    // written by any node. Lines are repriced in the cart; products gone, withdrawn or short of sellable
+    // stock are only reported, for the shopper to decide.
+    public Uni<CartValidationDTO> validate(String userId) {
+        return requireUser(userId)
+            .chain(() -> cartStore.ensureCurrent(userId))
+            .chain(() -> cartStore.withCart(userId, CartStore.CartState::productIds))
+            .chain(productIds -> (productIds.isEmpty()
+                    ? Uni.createFrom().item(List.<Object[]>of())
+                    : productRepository.findCartProducts(productIds))
+                .chain(rows -> {
+                    Map<Long, Object[]> products = new HashMap<>();
+                    rows.forEach(row -> products.put((Long) row[0], row));
+                    // Null when lines were added meanwhile, which then need their products too
+                    return cartStore.withCart(userId, cart -> productIds.containsAll(cart.productIds())
+                        ? reprice(cart, products)
+                        : null);
+                }))
+            .chain(validation -> validation != null ? Uni.createFrom().item(validation) : validate(userId));
+    }
+    
+    private static CartValidationDTO reprice(CartStore.CartState cart, Map<Long, Object[]> products) {
+        CartValidationDTO validation = new CartValidationDTO();
+        validation.setPreviousTotal(cart.totalAmount());
+        for (Long productId : cart.productIds()) {
+            Object[] product = products.get(productId);
+            if (product == null) {
+                validation.getUnavailable().add(new CartValidationDTO.Unavailable(productId,
+                    cart.productName(productId), "Product no longer exists"));
+                continue;
+            }
+            String name = (String) product[1];
+            if (!Boolean.TRUE.equals(product[4])) {
+                validation.getUnavailable().add(new CartValidationDTO.Unavailable(productId, name,
+                    "Product is not available"));
+                continue;
+            }
+            BigDecimal price = (BigDecimal) product[2];
+            BigDecimal previousPrice = cart.price(productId);
+            int quantity = cart.quantity(productId);
+            if (previousPrice.compareTo(price) != 0) {
+                validation.getPriceChanges().add(
+                    new CartValidationDTO.PriceChange(productId, name, previousPrice, price));
+            }
+            if (previousPrice.compareTo(price) != 0 || !name.equals(cart.productName(productId))) {
+                cart.setLine(productId, name, price, quantity);
+            }
+            long sellable = ((Number) product[6]).longValue();
+            if (quantity > sellable) {
+                validation.getShortfalls().add(new CartValidationDTO.Shortfall(productId, name, quantity, sellable));
+            }
+        }
+        validation.setCart(cart.toDTO());
+        return validation;
+    }
+    
+    private static int quantityAfter(int current, CartItemChangeDTO change) {
+        if (!Boolean.TRUE.equals(change.getIncrement())) {
+            return change.getQuantity();
+        }
+        try {
+            return Math.addExact(current, change.getQuantity());
+        } catch (ArithmeticException e) {
+            throw new ValidationException("Quantity cannot exceed " + MAX_QUANTITY);
+        }
+    }
+    
+    // Lines that grow take the looked-up price, the others keep theirs
+    private static void checkLimits(CartStore.CartState cart, Map<Long, Integer> quantities,
+            Map<Long, Object[]> products) {
+        BigDecimal total = cart.totalAmount();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Long productId = entry.getKey();
+            int quantity = Math.max(entry.getValue(), 0);
+            if (quantity > MAX_QUANTITY) {
+                throw new ValidationException("Quantity of product " + productId + " cannot exceed " + MAX_QUANTITY);
+            }
+            Object[] product = products.get(productId);
+            BigDecimal price = product != null ? (BigDecimal) product[2] : cart.price(productId);
+            if (cart.price(productId) != null) {
+                total = total.subtract(cart.price(productId).multiply(BigDecimal.valueOf(cart.quantity(productId))));
+            }
+            if (quantity == 0) {
+                continue;
+            }
+            BigDecimal subtotal = price.multiply(BigDecimal.valueOf(quantity));
+            if (subtotal.compareTo(MAX_AMOUNT) > 0) {
+                throw new ValidationException("Subtotal of product " + productId + " cannot exceed " + MAX_AMOUNT);
+            }
+            total = total.add(subtotal);
+        }
+        if (total.compareTo(MAX_AMOUNT) > 0) {
+            throw new ValidationException("Cart total cannot exceed " + MAX_AMOUNT);
+        }
+    }
+    
+    private static void apply(CartStore.CartState cart, Long productId, int quantity, Object[] product) {
+        if (quantity <= 0) {
+            cart.removeLine(productId);
+        } else if (product != null) {
+            cart.setLine(productId, (String) product[1], (BigDecimal) product[2], quantity);
+        } else {
+            cart.setQuantity(productId, quantity);
+        }
     }
     
-    private void updateCartTotal(Cart cart) {
-        cart.setTotalAmount(cart.getItems().stream()
-            .map(CartItem::getSubtotal)
-            .reduce(BigDecimal.ZERO, BigDecimal::add));
+    private static CartItemChangeDTO change(Long productId, Integer quantity, boolean increment) {
+        CartItemChangeDTO change = new CartItemChangeDTO();
+        change.setProductId(productId);
+        change.setQuantity(quantity);
+        change.setIncrement(increment);
+        return change;
     }
     
-    private Uni<Cart> createCart(String userId) {
-        Cart cart = new Cart();
-        cart.setUserId(userId);
-        return cartRepository.persist(cart);
+    private static Uni<Void> requireUser(String userId) {
+        return userId == null || userId.isBlank()
+            ? Uni.createFrom().failure(new ValidationException("X-User-Id header is required"))
+            : Uni.createFrom().voidItem();
     }
 }
\ No newline at end of file
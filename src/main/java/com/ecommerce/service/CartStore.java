@@ -0,0 +1,548 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.CartDTO;
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.CartChangedEvent;
+import com.ecommerce.domain.repository.CartRepository;
+import com.ecommerce.domain.repository.CartRepository.CartWrite;
+import com.ecommerce.domain.repository.CartRepository.LineWrite;
+import com.ecommerce.domain.repository.ProductRepository;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// Active carts live in memory and reach carts/cart_items by write-behind. Each cart is changed under its
+// own lock, lines are indexed by product and the total is adjusted by the changed line only. Changes
+// mark lines dirty; a flush writes every dirty cart's current lines in batched statements, so a line
+// changed many times between flushes is written once. A cart is dropped once it has been idle and fully
+// written, and shutdown waits for every cart to be written. Nothing is logged durably: if the process dies
+// without a clean shutdown, changes acknowledged since the last flush, up to flush-ms of them, are lost.
+// Each write-back applies only over the cart version this node loaded and is broadcast on the
+// invalidation bus, so other nodes drop their older copies. A node whose copy was changed elsewhere
+// first loses the write, drops its copy with the unwritten changes and reloads the cart as written;
+// checkout compares the copy with the stored version before it validates.
+@ApplicationScoped
+public class CartStore {
+    
+    private static final int SHARDS = 16;
+    
+    @Inject
+    CartRepository cartRepository;
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    Event<CartChangedEvent> cartChanged;
+    
+    @ConfigProperty(name = "app.cart.flush-ms", defaultValue = "1000")
+    long flushIntervalMs;
+    
+    // Carts per write-back transaction
+    @ConfigProperty(name = "app.cart.batch-size", defaultValue = "200")
+    int batchSize;
+    
+    @ConfigProperty(name = "app.cart.idle-minutes", defaultValue = "30")
+    long idleMinutes;
+    
+    @ConfigProperty(name = "app.cart.shutdown-flush-seconds", defaultValue = "10")
+    long shutdownFlushSeconds;
+    
+    // Failed writes of a cart on its own before its unwritten changes are dropped
+    @ConfigProperty(name = "app.cart.max-write-attempts", defaultValue = "5")
+    int maxWriteAttempts;
+    
+    // Shopper id -> cart, spread over independent maps by the shopper's hash
+    private final List<Map<String, CartState>> shards = new ArrayList<>(SHARDS);
+    
+    // Cart id -> shopper, to find the copy an invalidation from another node refers to
+    private final Map<Long, String> cartUsers = new ConcurrentHashMap<>();
+    
+    // Concurrent misses for the same shopper share one load
+    private final Map<String, Uni<CartState>> loading = new ConcurrentHashMap<>();
+    
+    private final Set<CartState> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    
+    public CartStore() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new ConcurrentHashMap<>());
+        }
+    }
+    
+    void onStart(@Observes StartupEvent ev) {
+        vertx.setPeriodic(flushIntervalMs, id -> flush());
+    }
+    
+    void onShutdown(@Observes ShutdownEvent ev) {
+        try {
+            drain().await().atMost(Duration.ofSeconds(shutdownFlushSeconds));
+        } catch (RuntimeException e) {
+            System.err.println("Carts left unwritten at shutdown: " + dirty.size() + " (" + e.getMessage() + ")");
+        }
+    }
+    
+    // Runs the function on the shopper's cart under the cart's lock; changes it makes are written behind
+    public <T> Uni<T> withCart(String userId, Function<CartState, T> function) {
+        return load(userId)
+            .chain(state -> {
+                synchronized (state) {
+                    if (!state.evicted) {
+                        state.lastAccess = System.currentTimeMillis();
+                        T result = function.apply(state);
+                        if (state.isDirty()) {
+                            dirty.add(state);
+                        }
+                        return Uni.createFrom().item(result);
+                    }
+                }
+                // Evicted between lookup and lock; everything it held is written, so load it again
+                return withCart(userId, function);
+            });
+    }
+    
+    private Uni<CartState> load(String userId) {
+        CartState cached = shard(userId).get(userId);
+        if (cached != null) {
+            return Uni.createFrom().item(cached);
+        }
+        return loading.computeIfAbsent(userId, key -> cartRepository.findLines(userId)
+            .map(rows -> shard(userId).computeIfAbsent(userId, id -> {
+                CartState state = CartState.of(userId, rows);
+                if (state.cartId != null) {
+                    cartUsers.put(state.cartId, userId);
+                }
+                return state;
+            }))
+            .eventually(() -> loading.remove(userId))
+            .memoize().indefinitely());
+    }
+    
+    // Drops this node's copy when the database holds a newer write of the cart, e.g. from another node
+    // whose invalidation has not arrived yet, so the next access reads the cart as written
+    public Uni<Void> ensureCurrent(String userId) {
+        CartState cached = shard(userId).get(userId);
+        if (cached == null) {
+            return Uni.createFrom().voidItem();
+        }
+        return cartRepository.findVersion(userId)
+            .invoke(row -> {
+                if (row != null && cached.isOlderThan(((Number) row[0]).longValue(), ((Number) row[1]).longValue())) {
+                    discard(cached, "because another node changed the cart");
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    void onCartChanged(@Observes CartChangedEvent event) {
+        if (!event.isRemote()) {
+            return;
+        }
+        String userId = cartUsers.get(event.getCartId());
+        CartState state = userId != null ? shard(userId).get(userId) : null;
+        // A copy with unwritten changes stays until its write-back loses and drops it
+        if (state != null && state.evictIfOlder(event.getCartId(), event.getVersion())) {
+            forget(state);
+        }
+    }
+    
+    void onCacheFlush(@Observes CacheFlushEvent event) {
+        evictClean(Long.MAX_VALUE);
+    }
+    
+    private Map<String, CartState> shard(String userId) {
+        return shards.get(Math.floorMod(userId.hashCode(), SHARDS));
+    }
+    
+    private void flush() {
+        if (dirty.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        flushDirty()
+            .eventually(() -> flushing.set(false))
+            .subscribe().with(
+                v -> { },
+                error -> System.err.println("Failed to write carts: " + error.getMessage()));
+    }
+    
+    private Uni<Void> flushDirty() {
+        List<CartState> taken = new ArrayList<>();
+        List<CartState> suspects = new ArrayList<>();
+        for (CartState state : dirty) {
+            dirty.remove(state);
+            // Carts whose last write failed go on their own, so they cannot fail anyone else's batch
+            (state.hasFailed() ? suspects : taken).add(state);
+        }
+        return Multi.createFrom().range(0, (taken.size() + batchSize - 1) / batchSize)
+            .onItem().transformToUniAndConcatenate(batch -> {
+                List<CartState> states =
+                    taken.subList(batch * batchSize, Math.min((batch + 1) * batchSize, taken.size()));
+                // One bad cart rolls back its whole batch, so a failed batch is written again cart by cart
+                return write(states).onFailure().recoverWithUni(() -> states.size() > 1
+                    ? writeEach(states)
+                    : Uni.createFrom().voidItem());
+            })
+            .collect().last()
+            .chain(() -> writeEach(suspects));
+    }
+    
+    private Uni<Void> writeEach(List<CartState> states) {
+        states.forEach(dirty::remove);
+        return Multi.createFrom().iterable(states)
+            // Failed carts are dirty again; the others still go
+            .onItem().transformToUniAndConcatenate(state -> write(List.of(state)).onFailure().recoverWithNull())
+            .collect().last()
+            .replaceWithVoid();
+    }
+    
+    private Uni<Void> write(List<CartState> states) {
+        List<CartState> written = new ArrayList<>();
+        List<CartWrite> writes = new ArrayList<>();
+        for (CartState state : states) {
+            CartWrite write = state.beginWrite();
+            if (write != null) {
+                written.add(state);
+                writes.add(write);
+            } else if (state.isDirty()) {
+                // Being written by another flush; its changes since go with the next one
+                dirty.add(state);
+            }
+        }
+        if (writes.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return cartRepository.writeBack(writes)
+            .invoke(() -> {
+                for (int i = 0; i < written.size(); i++) {
+                    CartState state = written.get(i);
+                    CartWrite write = writes.get(i);
+                    state.endWrite(write, null, false).complete(null);
+                    if (write.isConflict()) {
+                        discard(state, "because another node changed the cart");
+                    } else {
+                        cartUsers.put(write.getCartId(), state.userId);
+                        cartChanged.fire(new CartChangedEvent(write.getCartId(), write.getVersion(), false));
+                    }
+                }
+            })
+            .onFailure().invoke(error -> {
+                System.err.println("Failed to write " + writes.size() + " carts: " + error.getMessage());
+                boolean alone = written.size() == 1;
+                for (int i = 0; i < written.size(); i++) {
+                    written.get(i).endWrite(writes.get(i), error, alone).completeExceptionally(error);
+                    dirty.add(written.get(i));
+                }
+            })
+            .onFailure().call(() -> written.size() == 1 ? recover(written.get(0)) : Uni.createFrom().voidItem());
+    }
+    
+    // A cart that fails on its own holds something the database rejects. Lines of products deleted since
+    // they were added are dropped. A cart that keeps failing is dropped from memory with its unwritten
+    // changes, so it stops being retried and the shopper gets the cart as last written.
+    private Uni<Void> recover(CartState state) {
+        boolean exhausted;
+        Set<Long> productIds;
+        synchronized (state) {
+            exhausted = state.failedWrites >= maxWriteAttempts;
+            productIds = new HashSet<>(state.dirtyLines);
+        }
+        if (exhausted) {
+            discard(state, "after " + maxWriteAttempts + " failed writes");
+            return Uni.createFrom().voidItem();
+        }
+        if (productIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return productRepository.findNames(productIds)
+            .invoke(rows -> {
+                Set<Long> missing = new HashSet<>(productIds);
+                rows.forEach(row -> missing.remove((Long) row[0]));
+                if (!missing.isEmpty()) {
+                    synchronized (state) {
+                        missing.forEach(state::removeLine);
+                    }
+                    System.err.println("Dropped lines of deleted products " + missing + " from the cart of "
+                        + state.userId);
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    // Drops the copy with its unwritten changes; the next access loads the cart as written
+    private void discard(CartState state, String reason) {
+        Set<Long> lost;
+        synchronized (state) {
+            if (state.inFlight != null) {
+                return;
+            }
+            lost = new HashSet<>(state.dirtyLines);
+            state.dirtyLines.clear();
+            state.evicted = true;
+        }
+        forget(state);
+        if (!lost.isEmpty()) {
+            System.err.println("Dropped unwritten changes to products " + lost + " in the cart of " + state.userId
+                + " " + reason);
+        }
+    }
+    
+    private void forget(CartState state) {
+        shard(state.userId).remove(state.userId, state);
+        dirty.remove(state);
+        if (state.cartId != null) {
+            cartUsers.remove(state.cartId, state.userId);
+        }
+    }
+    
+    private Uni<Void> drain() {
+        return flushDirty()
+            .chain(() -> dirty.isEmpty() && !flushing.get()
+                ? Uni.createFrom().voidItem()
+                : Uni.createFrom().voidItem().onItem().delayIt().by(Duration.ofMillis(100)).chain(this::drain));
+    }
+    
+    // Drops carts that were not used for a while and have nothing left to write
+    @Scheduled(every = "{app.cart.evict-every}", delayed = "1m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void evictIdle() {
+        evictClean(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes));
+    }
+    
+    private void evictClean(long cutoff) {
+        for (Map<String, CartState> shard : shards) {
+            shard.values().removeIf(state -> {
+                if (!state.evictIfIdle(cutoff)) {
+                    return false;
+                }
+                if (state.cartId != null) {
+                    cartUsers.remove(state.cartId, state.userId);
+                }
+                return true;
+            });
+        }
+    }
+    
+    // One shopper's cart. Every method runs under the cart's lock: withCart holds it for callers.
+    static final class CartState {
+        private final String userId;
+        private Long cartId;
+        // Version of the cart row this copy was loaded or last written at
+        private long version;
+        
+        // Product id -> line, in the order lines were added
+        private final Map<Long, Line> lines = new LinkedHashMap<>();
+        private BigDecimal totalAmount = BigDecimal.ZERO;
+        private int itemCount;
+        
+        // Lines changed since the last write, by product id
+        private final Set<Long> dirtyLines = new HashSet<>();
+        private CompletableFuture<Void> inFlight;
+        // Consecutive failed writes of this cart on its own
+        private int failedWrites;
+        private boolean evicted;
+        private long lastAccess = System.currentTimeMillis();
+        
+        private CartState(String userId) {
+            this.userId = userId;
+        }
+        
+        static CartState of(String userId, List<Object[]> rows) {
+            CartState state = new CartState(userId);
+            for (Object[] row : rows) {
+                state.cartId = ((Number) row[0]).longValue();
+                state.version = ((Number) row[1]).longValue();
+                if (row[2] != null) {
+                    Line line = new Line((String) row[3], ((Number) row[4]).intValue(), (BigDecimal) row[5],
+                        (BigDecimal) row[6]);
+                    state.lines.put(((Number) row[2]).longValue(), line);
+                    state.totalAmount = state.totalAmount.add(line.subtotal);
+                    state.itemCount += line.quantity;
+                }
+            }
+            return state;
+        }
+        
+        int quantity(Long productId) {
+            Line line = lines.get(productId);
+            return line != null ? line.quantity : 0;
+        }
+        
+        BigDecimal price(Long productId) {
+            Line line = lines.get(productId);
+            return line != null ? line.price : null;
+        }
+        
+        String productName(Long productId) {
+            Line line = lines.get(productId);
+            return line != null ? line.productName : null;
+        }
+        
+        Set<Long> productIds() {
+            return new LinkedHashSet<>(lines.keySet());
+        }
+        
+        BigDecimal totalAmount() {
+            return totalAmount;
+        }
+        
+        // Sets the line's quantity at the given price; zero removes the line
+        void setLine(Long productId, String productName, BigDecimal price, int quantity) {
+            Line previous = quantity > 0
+                ? lines.put(productId, new Line(productName, quantity, price,
+                    price.multiply(BigDecimal.valueOf(quantity))))
+                : lines.remove(productId);
+            if (previous != null) {
+                totalAmount = totalAmount.subtract(previous.subtotal);
+                itemCount -= previous.quantity;
+            }
+            if (quantity > 0) {
+                Line line = lines.get(productId);
+                totalAmount = totalAmount.add(line.subtotal);
+                itemCount += quantity;
+            }
+            if (previous != null || quantity > 0) {
+                dirtyLines.add(productId);
+            }
+        }
+        
+        // Changes the quantity of an existing line at its price; false when there is no such line
+        boolean setQuantity(Long productId, int quantity) {
+            Line line = lines.get(productId);
+            if (line == null) {
+                return false;
+            }
+            setLine(productId, line.productName, line.price, quantity);
+            return true;
+        }
+        
+        void removeLine(Long productId) {
+            setLine(productId, null, null, 0);
+        }
+        
+        void clear() {
+            dirtyLines.addAll(lines.keySet());
+            lines.clear();
+            totalAmount = BigDecimal.ZERO;
+            itemCount = 0;
+        }
+        
+        CartDTO toDTO() {
+            CartDTO cart = new CartDTO(userId, totalAmount, itemCount);
+            lines.forEach((productId, line) -> cart.getItems().add(
+                new CartDTO.Item(productId, line.productName, line.quantity, line.price, line.subtotal)));
+            return cart;
+        }
+        
+        synchronized boolean isDirty() {
+            return !dirtyLines.isEmpty();
+        }
+        
+        synchronized boolean hasFailed() {
+            return failedWrites > 0;
+        }
+        
+        // Takes the dirty lines' current state for writing; null when there is nothing to write or a write
+        // is still in flight, since two writes of one cart could commit out of order
+        synchronized CartWrite beginWrite() {
+            if (inFlight != null || dirtyLines.isEmpty()) {
+                return null;
+            }
+            if (cartId == null && lines.isEmpty()) {
+                // Emptied before it was ever written
+                dirtyLines.clear();
+                return null;
+            }
+            List<LineWrite> changed = new ArrayList<>(dirtyLines.size());
+            for (Long productId : dirtyLines) {
+                Line line = lines.get(productId);
+                changed.add(line != null
+                    ? new LineWrite(productId, line.quantity, line.price, line.subtotal)
+                    : new LineWrite(productId, 0, null, null));
+            }
+            dirtyLines.clear();
+            inFlight = new CompletableFuture<>();
+            return new CartWrite(userId, cartId, version, totalAmount, changed);
+        }
+        
+        // Completes the write begun above; the caller completes the returned future outside the lock. Only
+        // failures of the cart written on its own count against it. A write that lost to another node's
+        // leaves its lines dirty for the caller to drop with the copy.
+        synchronized CompletableFuture<Void> endWrite(CartWrite write, Throwable error, boolean alone) {
+            CompletableFuture<Void> done = inFlight;
+            inFlight = null;
+            if (error != null || write.isConflict()) {
+                write.getLines().forEach(line -> dirtyLines.add(line.getProductId()));
+                if (error != null && alone) {
+                    failedWrites++;
+                }
+            } else {
+                failedWrites = 0;
+                cartId = write.getCartId();
+                version = write.getVersion();
+            }
+            return done;
+        }
+        
+        // True when the database holds a different cart or a newer write of this one
+        synchronized boolean isOlderThan(Long storedCartId, long storedVersion) {
+            return !storedCartId.equals(cartId) || version < storedVersion;
+        }
+        
+        synchronized boolean evictIfIdle(long cutoff) {
+            if (inFlight != null || !dirtyLines.isEmpty() || lastAccess > cutoff) {
+                return false;
+            }
+            evicted = true;
+            return true;
+        }
+        
+        // Evicts a fully written copy older than the given version of the same cart
+        synchronized boolean evictIfOlder(Long changedCartId, long changedVersion) {
+            if (!changedCartId.equals(cartId) || version >= changedVersion || inFlight != null
+                    || !dirtyLines.isEmpty()) {
+                return false;
+            }
+            evicted = true;
+            return true;
+        }
+    }
+    
+    private static final class Line {
+        private final String productName;
+        private final int quantity;
+        private final BigDecimal price;
+        private final BigDecimal subtotal;
+        
+        Line(String productName, int quantity, BigDecimal price, BigDecimal subtotal) {
+            this.productName = productName;
+            this.quantity = quantity;
+            this.price = price;
+            this.subtotal = subtotal;
+        }
+    }
+}
\ No newline at end of file
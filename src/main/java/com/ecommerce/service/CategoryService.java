@@ -1,13 +1,17 @@
 package com.ecommerce.service;
 
 import com.ecommerce.domain.dto.CategoryDTO;
+import com.ecommerce.domain.dto.CategoryTreeDTO;
+import com.ecommerce.domain.event.CategoryChangedEvent;
 import com.ecommerce.domain.model.Category;
 import com.ecommerce.domain.repository.CategoryRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.exception.ValidationException;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import java.util.List;
 
 @ApplicationScoped
@@ -16,10 +20,22 @@ public class CategoryService {
     @Inject
     CategoryRepository categoryRepository;
     
+    @Inject
+    CategoryTree categoryTree;
+    
+    @Inject
+    Event<CategoryChangedEvent> categoryChanged;
+    
     public Uni<List<Category>> getAllCategories() {
         return categoryRepository.listAll();
     }
     
+    // The whole hierarchy in one response, served from the in-memory tree
+    public Uni<List<CategoryTreeDTO>> getCategoryTree() {
+        return categoryTree.ensureLoaded()
+            .map(v -> categoryTree.roots());
+    }
+    
     public Uni<List<Category>> getRootCategories() {
         return categoryRepository.findRootCategories();
     }
@@ -34,37 +50,13 @@ public class CategoryService {
                 new ResourceNotFoundException("Category not found"));
     }
     
-    @Transactional
     public Uni<Category> createCategory(CategoryDTO categoryDTO) {
-        return Uni.createFrom().item(() -> {
-            Category category = new Category();
-            updateCategoryFromDto(category, categoryDTO);
-            return category;
-        }).chain(category -> {
-            if (categoryDTO.getParentId() != null) {
-                return categoryRepository.findById(categoryDTO.getParentId())
-                    .onItem().ifNull().failWith(() -> 
-                        new ResourceNotFoundException("Parent category not found"))
-                    .map(parent -> {
-                        category.setParent(parent);
-                        return category;
-                    });
-            }
-            return Uni.createFrom().item(category);
-        }).chain(category -> categoryRepository.persist(category));
-    }
-    
-    @Transactional
-    public Uni<Category> updateCategory(Long id, CategoryDTO categoryDTO) {
-        return categoryRepository.findById(id)
-            .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Category not found"))
-            .chain(category -> {
+        return Panache.withTransaction(() -> Uni.createFrom().item(() -> {
+                Category category = new Category();
                 updateCategoryFromDto(category, categoryDTO);
-                
-                if (categoryDTO.getParentId() != null && 
-                    !categoryDTO.getParentId().equals(
-                        category.getParent() != null ? category.getParent().getId() : null)) {
+                return category;
+            }).chain(category -> {
+                if (categoryDTO.getParentId() != null) {
                     return categoryRepository.findById(categoryDTO.getParentId())
                         .onItem().ifNull().failWith(() -> 
                             new ResourceNotFoundException("Parent category not found"))
@@ -74,31 +66,62 @@ public class CategoryService {
                         });
                 }
                 return Uni.createFrom().item(category);
-            })
-            .chain(category -> categoryRepository.persist(category));
+            }).chain(category -> categoryRepository.persistAndFlush(category)))
+            .invoke(saved -> categoryChanged.fire(new CategoryChangedEvent(saved)));
+    }
+    
+    public Uni<Category> updateCategory(Long id, CategoryDTO categoryDTO) {
+        return Panache.withTransaction(() -> categoryRepository.findById(id)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Category not found"))
+                .chain(category -> {
+                    updateCategoryFromDto(category, categoryDTO);
+                    
+                    if (categoryDTO.getParentId() != null && 
+                        !categoryDTO.getParentId().equals(
+                            category.getParent() != null ? category.getParent().getId() : null)) {
+                        return categoryTree.ensureLoaded()
+                            .invoke(() -> {
+                                if (categoryTree.isWithinSubtree(id, categoryDTO.getParentId())) {
+                                    throw new ValidationException(
+                                        "Category cannot be moved under itself or its subcategories");
+                                }
+                            })
+                            .chain(() -> categoryRepository.findById(categoryDTO.getParentId()))
+                            .onItem().ifNull().failWith(() -> 
+                                new ResourceNotFoundException("Parent category not found"))
+                            .map(parent -> {
+                                category.setParent(parent);
+                                return category;
+                            });
+                    }
+                    return Uni.createFrom().item(category);
+                })
+                .chain(category -> categoryRepository.persistAndFlush(category)))
+            .invoke(saved -> categoryChanged.fire(new CategoryChangedEvent(saved)));
     }
     
-    @Transactional
     public Uni<Boolean> deleteCategory(Long id) {
-        return categoryRepository.hasProducts(id)
-            .chain(hasProducts -> {
-                if (hasProducts) {
-                    return Uni.createFrom().failure(
-                        new IllegalStateException("Cannot delete category with products"));
-                }
-                return categoryRepository.findById(id)
-                    .onItem().ifNull().failWith(() -> 
-                        new ResourceNotFoundException("Category not found"))
-                    .chain(category -> {
-                        if (!category.getSubcategories().isEmpty()) {
-                            return Uni.createFrom().failure(
-                                new IllegalStateException(
-                                    "Cannot delete category with subcategories"));
-                        }
-                        return categoryRepository.delete(category)
-                            .map(deleted -> deleted > 0);
-                    });
-            });
+        return Panache.withTransaction(() -> categoryRepository.hasProducts(id)
+                .chain(hasProducts -> {
+                    if (hasProducts) {
+                        return Uni.createFrom().failure(
+                            new IllegalStateException("Cannot delete category with products"));
+                    }
+                    return categoryRepository.findById(id)
+                        .onItem().ifNull().failWith(() -> 
+                            new ResourceNotFoundException("Category not found"))
+                        .chain(category -> {
+                            if (!category.getSubcategories().isEmpty()) {
+                                return Uni.createFrom().failure(
+                                    new IllegalStateException(
+                                        "Cannot delete category with subcategories"));
+                            }
+                            return categoryRepository.delete(category)
+                                .map(v -> true);
+                        });
+                }))
+            .invoke(() -> categoryChanged.fire(new CategoryChangedEvent(id, true)));
     }
     
     private void updateCategoryFromDto(Category category, CategoryDTO dto) {
@@ -0,0 +1,255 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.CategoryTreeDTO;
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.CategoryChangedEvent;
+import com.ecommerce.domain.model.Category;
+import com.ecommerce.domain.repository.CategoryRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+// In-memory copy of the category hierarchy, numbered by an Euler tour: each category's subtree is
+// the contiguous range [enter, exit) of the pre-order, so descendant lookups never walk the tree.
+@ApplicationScoped
+public class CategoryTree {
+    
+    private static final Comparator<Node> SIBLING_ORDER =
+        Comparator.comparing((Node node) -> node.name, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(node -> node.id);
+    
+    @Inject
+    CategoryRepository categoryRepository;
+    
+    // Adjacency as last written, guarded by this; readers only see published snapshots
+    private final Map<Long, Node> nodes = new HashMap<>();
+    
+    private volatile Snapshot snapshot = Snapshot.build(Map.of());
+    
+    private final AtomicReference<Uni<Void>> loading = new AtomicReference<>();
+    
+    private volatile boolean ready;
+    
+    // Bumped by every reset; a load started under an older generation publishes nothing
+    private volatile long generation;
+    
+    public Uni<Void> ensureLoaded() {
+        if (ready) {
+            return Uni.createFrom().voidItem();
+        }
+        Uni<Void> current = loading.get();
+        if (current == null) {
+            long loadGeneration = generation;
+            Uni<Void> candidate = categoryRepository.findTreeRows()
+                .map(rows -> {
+                    synchronized (this) {
+                        if (generation != loadGeneration) {
+                            return false;
+                        }
+                        for (Object[] row : rows) {
+                            // Writes that raced ahead of the initial load are newer than this snapshot
+                            nodes.putIfAbsent((Long) row[0], Node.of(row));
+                        }
+                        publish();
+                        ready = true;
+                        return true;
+                    }
+                })
+                // A reset abandoned this load; wait for the one that replaced it
+                .chain(loaded -> loaded ? Uni.createFrom().voidItem() : ensureLoaded())
+                .onFailure().invoke(error -> loading.set(null))
+                .memoize().indefinitely();
+            current = loading.compareAndSet(null, candidate) ? candidate : loading.get();
+        }
+        return current;
+    }
+    
+    void onCategoryChanged(@Observes CategoryChangedEvent event) {
+        Long id = event.getCategoryId();
+        if (event.isDeleted()) {
+            remove(id);
+        } else if (event.getCategory() != null) {
+            put(Node.of(event.getCategory()));
+        } else {
+            // Another node's write: only the id travels, so re-read the row
+            categoryRepository.findTreeRow(id)
+                .subscribe().with(
+                    row -> {
+                        if (row == null) {
+                            remove(id);
+                        } else {
+                            put(Node.of(row));
+                        }
+                    },
+                    error -> {
+                        System.err.println("Could not refresh category " + id + ": " + error.getMessage());
+                        reset();
+                    });
+        }
+    }
+    
+    void onCacheFlush(@Observes CacheFlushEvent event) {
+        reset();
+    }
+    
+    public List<CategoryTreeDTO> roots() {
+        return snapshot.toTree();
+    }
+    
+    // The category and all its descendants; just the id when the category is unknown
+    public List<Long> subtreeIds(Long categoryId) {
+        return snapshot.subtree(categoryId);
+    }
+    
+    public boolean contains(Long categoryId) {
+        return snapshot.enter.containsKey(categoryId);
+    }
+    
+    public boolean isWithinSubtree(Long ancestorId, Long categoryId) {
+        return snapshot.contains(ancestorId, categoryId);
+    }
+    
+    private synchronized void put(Node node) {
+        nodes.put(node.id, node);
+        publish();
+    }
+    
+    private synchronized void remove(Long id) {
+        if (nodes.remove(id) != null) {
+            publish();
+        }
+    }
+    
+    private synchronized void reset() {
+        generation++;
+        nodes.clear();
+        publish();
+        ready = false;
+        loading.set(null);
+    }
+    
+    private void publish() {
+        snapshot = Snapshot.build(nodes);
+    }
+    
+    private static final class Node {
+        private final Long id;
+        private final String name;
+        private final String description;
+        private final Long parentId;
+        private final Boolean active;
+        
+        Node(Long id, String name, String description, Long parentId, Boolean active) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.parentId = parentId;
+            this.active = active;
+        }
+        
+        static Node of(Object[] row) {
+            return new Node((Long) row[0], (String) row[1], (String) row[2], (Long) row[3], (Boolean) row[4]);
+        }
+        
+        static Node of(Category category) {
+            return new Node(category.getId(), category.getName(), category.getDescription(),
+                category.getParent() != null ? category.getParent().getId() : null, category.getActive());
+        }
+    }
+    
+    private static final class Snapshot {
+        private final Node[] order;
+        private final int[] exit;
+        private final int[] depth;
+        private final Map<Long, Integer> enter;
+        
+        private Snapshot(Node[] order, int[] exit, int[] depth, Map<Long, Integer> enter) {
+            this.order = order;
+            this.exit = exit;
+            this.depth = depth;
+            this.enter = enter;
+        }
+        
+        static Snapshot build(Map<Long, Node> nodes) {
+            Map<Long, List<Node>> children = new HashMap<>();
+            List<Node> roots = new ArrayList<>();
+            for (Node node : nodes.values()) {
+                // A missing parent (deleted meanwhile, or not loaded yet) leaves the node at the top
+                if (node.parentId == null || !nodes.containsKey(node.parentId)) {
+                    roots.add(node);
+                } else {
+                    children.computeIfAbsent(node.parentId, id -> new ArrayList<>()).add(node);
+                }
+            }
+            roots.sort(SIBLING_ORDER);
+            children.values().forEach(siblings -> siblings.sort(SIBLING_ORDER));
+            
+            // Iterative pre-order walk; nodes caught in a parent cycle are never reached and drop out
+            Node[] order = new Node[nodes.size()];
+            int[] exit = new int[nodes.size()];
+            int[] depth = new int[nodes.size()];
+            Map<Long, Integer> enter = new HashMap<>();
+            Deque<Integer> open = new ArrayDeque<>();
+            Deque<Iterator<Node>> pending = new ArrayDeque<>();
+            int next = 0;
+            pending.push(roots.iterator());
+            while (!pending.isEmpty()) {
+                Iterator<Node> siblings = pending.peek();
+                if (!siblings.hasNext()) {
+                    pending.pop();
+                    if (!open.isEmpty()) {
+                        exit[open.pop()] = next;
+                    }
+                    continue;
+                }
+                Node node = siblings.next();
+                order[next] = node;
+                depth[next] = open.size();
+                enter.put(node.id, next);
+                open.push(next);
+                next++;
+                pending.push(children.getOrDefault(node.id, List.of()).iterator());
+            }
+            return new Snapshot(Arrays.copyOf(order, next), Arrays.copyOf(exit, next),
+                Arrays.copyOf(depth, next), enter);
+        }
+        
+        List<Long> subtree(Long categoryId) {
+            Integer start = enter.get(categoryId);
+            if (start == null) {
+                return List.of(categoryId);
+            }
+            List<Long> ids = new ArrayList<>(exit[start] - start);
+            for (int i = start; i < exit[start]; i++) {
+                ids.add(order[i].id);
+            }
+            return ids;
+        }
+        
+        boolean contains(Long ancestorId, Long categoryId) {
+            Integer ancestor = enter.get(ancestorId);
+            Integer position = enter.get(categoryId);
+            return ancestor != null && position != null && position >= ancestor && position < exit[ancestor];
+        }
+        
+        List<CategoryTreeDTO> toTree() {
+            List<CategoryTreeDTO> roots = new ArrayList<>();
+            CategoryTreeDTO[] path = new CategoryTreeDTO[order.length + 1];
+            for (int i = 0; i < order.length; i++) {
+                Node node = order[i];
+                CategoryTreeDTO dto = new CategoryTreeDTO(node.id, node.name, node.description,
+                    depth[i] == 0 ? null : node.parentId, node.active, depth[i], exit[i] - i - 1);
+                if (depth[i] == 0) {
+                    roots.add(dto);
+                } else {
+                    path[depth[i] - 1].getChildren().add(dto);
+                }
+                path[depth[i]] = dto;
+            }
+            return roots;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,415 @@
+package com.ecommerce.service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Roaring-style bitmap over product ids: ids are split into 16-bit chunks, each stored
+// as a sorted char array while sparse and as a 65536-bit bitmap once dense.
+public final class CompressedBitmap {
+    
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+    
+    private final TreeMap<Long, Container> containers;
+    
+    public CompressedBitmap() {
+        this(new TreeMap<>());
+    }
+    
+    private CompressedBitmap(TreeMap<Long, Container> containers) {
+        this.containers = containers;
+    }
+    
+    public static CompressedBitmap of(long... ids) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (long id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+    
+    public void add(long id) {
+        long key = id >>> 16;
+        char low = (char) id;
+        Container container = containers.get(key);
+        containers.put(key, container == null ? new ArrayContainer().add(low) : container.add(low));
+    }
+    
+    public void remove(long id) {
+        long key = id >>> 16;
+        Container container = containers.get(key);
+        if (container == null) {
+            return;
+        }
+        Container updated = container.remove((char) id);
+        if (updated.cardinality() == 0) {
+            containers.remove(key);
+        } else {
+            containers.put(key, updated);
+        }
+    }
+    
+    public boolean contains(long id) {
+        Container container = containers.get(id >>> 16);
+        return container != null && container.contains((char) id);
+    }
+    
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers.values()) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+    
+    public boolean isEmpty() {
+        return containers.isEmpty();
+    }
+    
+    public CompressedBitmap copy() {
+        TreeMap<Long, Container> copy = new TreeMap<>();
+        containers.forEach((key, container) -> copy.put(key, container.copy()));
+        return new CompressedBitmap(copy);
+    }
+    
+    public CompressedBitmap and(CompressedBitmap other) {
+        TreeMap<Long, Container> result = new TreeMap<>();
+        CompressedBitmap smaller = containers.size() <= other.containers.size() ? this : other;
+        CompressedBitmap larger = smaller == this ? other : this;
+        for (Map.Entry<Long, Container> entry : smaller.containers.entrySet()) {
+            Container match = larger.containers.get(entry.getKey());
+            if (match != null) {
+                Container combined = entry.getValue().and(match);
+                if (combined.cardinality() > 0) {
+                    result.put(entry.getKey(), combined);
+                }
+            }
+        }
+        return new CompressedBitmap(result);
+    }
+    
+    public CompressedBitmap or(CompressedBitmap other) {
+        TreeMap<Long, Container> result = new TreeMap<>();
+        containers.forEach((key, container) -> result.put(key, container.copy()));
+        other.containers.forEach((key, container) -> result.merge(key, container.copy(), Container::or));
+        return new CompressedBitmap(result);
+    }
+    
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        TreeMap<Long, Container> result = new TreeMap<>();
+        for (Map.Entry<Long, Container> entry : containers.entrySet()) {
+            Container subtrahend = other.containers.get(entry.getKey());
+            Container remaining = subtrahend == null ? entry.getValue().copy() : entry.getValue().andNot(subtrahend);
+            if (remaining.cardinality() > 0) {
+                result.put(entry.getKey(), remaining);
+            }
+        }
+        return new CompressedBitmap(result);
+    }
+    
+    public long[] toArray() {
+        long[] ids = new long[(int) cardinality()];
+        int n = 0;
+        for (Map.Entry<Long, Container> entry : containers.entrySet()) {
+            long high = entry.getKey() << 16;
+            for (Iterator<Character> it = entry.getValue().iterator(); it.hasNext(); ) {
+                ids[n++] = high | it.next();
+            }
+        }
+        return ids;
+    }
+    
+    private abstract static class Container {
+        abstract Container add(char value);
+        
+        abstract Container remove(char value);
+        
+        abstract boolean contains(char value);
+        
+        abstract int cardinality();
+        
+        abstract Container copy();
+        
+        abstract long[] words();
+        
+        abstract Iterator<Character> iterator();
+        
+        Container and(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                return ((ArrayContainer) this).intersect((ArrayContainer) other);
+            }
+            if (this instanceof ArrayContainer || other instanceof ArrayContainer) {
+                ArrayContainer sparse = (ArrayContainer) (this instanceof ArrayContainer ? this : other);
+                Container dense = sparse == this ? other : this;
+                ArrayContainer result = new ArrayContainer();
+                for (int i = 0; i < sparse.size; i++) {
+                    if (dense.contains(sparse.values[i])) {
+                        result.append(sparse.values[i]);
+                    }
+                }
+                return result;
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] out = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                out[i] = a[i] & b[i];
+            }
+            return BitmapContainer.of(out);
+        }
+        
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                    && ((ArrayContainer) this).size + ((ArrayContainer) other).size <= ARRAY_LIMIT) {
+                return ((ArrayContainer) this).union((ArrayContainer) other);
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] out = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                out[i] = a[i] | b[i];
+            }
+            return BitmapContainer.of(out);
+        }
+        
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                ArrayContainer sparse = (ArrayContainer) this;
+                ArrayContainer result = new ArrayContainer();
+                for (int i = 0; i < sparse.size; i++) {
+                    if (!other.contains(sparse.values[i])) {
+                        result.append(sparse.values[i]);
+                    }
+                }
+                return result;
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] out = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                out[i] = a[i] & ~b[i];
+            }
+            return BitmapContainer.of(out);
+        }
+    }
+    
+    private static final class ArrayContainer extends Container {
+        private char[] values = new char[4];
+        private int size;
+        
+        @Override
+        Container add(char value) {
+            int pos = Arrays.binarySearch(values, 0, size, value);
+            if (pos >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                // Promote directly; of() would hand a full array back as another array
+                return new BitmapContainer(words(), size).add(value);
+            }
+            int insertAt = -pos - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, size * 2));
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = value;
+            size++;
+            return this;
+        }
+        
+        @Override
+        Container remove(char value) {
+            int pos = Arrays.binarySearch(values, 0, size, value);
+            if (pos >= 0) {
+                System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+                size--;
+            }
+            return this;
+        }
+        
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+        
+        @Override
+        int cardinality() {
+            return size;
+        }
+        
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer();
+            copy.values = Arrays.copyOf(values, Math.max(size, 4));
+            copy.size = size;
+            return copy;
+        }
+        
+        @Override
+        long[] words() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+        
+        @Override
+        Iterator<Character> iterator() {
+            return new Iterator<>() {
+                private int i;
+                
+                @Override
+                public boolean hasNext() {
+                    return i < size;
+                }
+                
+                @Override
+                public Character next() {
+                    return values[i++];
+                }
+            };
+        }
+        
+        // Values must arrive in ascending order
+        void append(char value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        ArrayContainer intersect(ArrayContainer other) {
+            ArrayContainer result = new ArrayContainer();
+            int i = 0, j = 0;
+            while (i < size && j < other.size) {
+                if (values[i] < other.values[j]) {
+                    i++;
+                } else if (values[i] > other.values[j]) {
+                    j++;
+                } else {
+                    result.append(values[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+        
+        ArrayContainer union(ArrayContainer other) {
+            ArrayContainer result = new ArrayContainer();
+            int i = 0, j = 0;
+            while (i < size || j < other.size) {
+                if (j >= other.size || (i < size && values[i] < other.values[j])) {
+                    result.append(values[i++]);
+                } else if (i >= size || other.values[j] < values[i]) {
+                    result.append(other.values[j++]);
+                } else {
+                    result.append(values[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+    
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+        
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+        
+        // Demotes to an array container when the result is sparse
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                return new BitmapContainer(words, cardinality);
+            }
+            ArrayContainer array = new ArrayContainer();
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.append((char) (i * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+        
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+        
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+                if (cardinality <= ARRAY_LIMIT) {
+                    return of(words);
+                }
+            }
+            return this;
+        }
+        
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+        
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+        
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+        
+        @Override
+        long[] words() {
+            return words;
+        }
+        
+        @Override
+        Iterator<Character> iterator() {
+            return new Iterator<>() {
+                private int word;
+                private long bits = words[0];
+                
+                @Override
+                public boolean hasNext() {
+                    while (bits == 0 && word < WORDS - 1) {
+                        bits = words[++word];
+                    }
+                    return bits != 0;
+                }
+                
+                @Override
+                public Character next() {
+                    hasNext();
+                    char value = (char) (word * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                    return value;
+                }
+            };
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.dto.LowStockAlertDTO;
 import com.ecommerce.domain.model.User;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -7,6 +8,8 @@ import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import io.quarkus.mailer.Mail;
 import io.quarkus.mailer.reactive.ReactiveMailer;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class EmailService {
@@ -17,6 +20,9 @@ public class EmailService {
     @ConfigProperty(name = "app.base-url")
     String baseUrl;
     
+    @ConfigProperty(name = "app.inventory.alert-recipients")
+    List<String> alertRecipients;
+    
     public Uni<Void> sendPasswordResetEmail(User user) {
         String resetLink = baseUrl + "/reset-password?token=" + user.getResetToken();
         
@@ -29,6 +35,17 @@ public class EmailService {
         ));
     }
     
+    public Uni<Void> sendLowStockDigest(List<LowStockAlertDTO> alerts) {
+        String subject = alerts.size() == 1
+            ? "Low stock: " + alerts.get(0).getProductName()
+            : "Low stock: " + alerts.size() + " products";
+        
+        return mailer.send(new Mail()
+            .setTo(alertRecipients)
+            .setSubject(subject)
+            .setHtml(buildLowStockDigest(alerts)));
+    }
+    
     private String buildPasswordResetEmail(String firstName, String resetLink) {
         return """
             <div style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto; padding: 20px;">
@@ -59,4 +76,38 @@ public class EmailService {
             </div>
             """.formatted(firstName, resetLink);
     }
+    
+    private String buildLowStockDigest(List<LowStockAlertDTO> alerts) {
+        String rows = alerts.stream()
+            .map(alert -> """
+                <tr>
+                    <td style="padding: 8px; border-bottom: 1px solid #eeeeee;">%s</td>
+                    <td style="padding: 8px; border-bottom: 1px solid #eeeeee; text-align: right;">%d</td>
+                    <td style="padding: 8px; border-bottom: 1px solid #eeeeee; text-align: right;">%d</td>
+                </tr>
+                """.formatted(escape(alert.getProductName()), alert.getStockQuantity(), alert.getThreshold()))
+            .collect(Collectors.joining());
+        
+        return """
+            <div style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto; padding: 20px;">
+                <div style="background-color: #ffffff; border-radius: 8px; box-shadow: 0 2px 4px rgba(0,0,0,0.1); padding: 30px;">
+                    <h1 style="color: #333333; margin-bottom: 10px;">Low Stock</h1>
+                    <p style="color: #666666; font-size: 16px;">These products fell to or below their alert threshold.</p>
+                    
+                    <table style="width: 100%%; border-collapse: collapse; color: #333333; font-size: 14px;">
+                        <tr>
+                            <th style="padding: 8px; text-align: left;">Product</th>
+                            <th style="padding: 8px; text-align: right;">In stock</th>
+                            <th style="padding: 8px; text-align: right;">Threshold</th>
+                        </tr>
+                        %s
+                    </table>
+                </div>
+            </div>
+            """.formatted(rows);
+    }
+    
+    private static String escape(String text) {
+        return text == null ? "" : text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,340 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.event.ReviewChangedEvent;
+import com.ecommerce.domain.repository.ReviewRepository;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.unchecked.Unchecked;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Helpful votes are acknowledged once they are on disk and reach the database as coalesced deltas.
+// Voters only enqueue; a single log writer appends whole batches to the current segment with one
+// fsync (group commit) and tallies them per review. Each flush seals the segment, applies its
+// tallies in one transaction that also records (log id, segment), and then deletes the file, so a
+// segment replayed after a crash is applied exactly once. A record is only dropped once no segment at
+// or below its number is left on disk, dead-lettered ones included. Segments apply independently, so
+// one that keeps failing is skipped rather than holding back newer ones; after max-attempts failures
+// in flushes where other segments did apply, it is moved to the dead-letter directory for an operator
+// to inspect and, once fixed, move back to be replayed.
+@ApplicationScoped
+public class HelpfulVoteBuffer {
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+    
+    @Inject
+    ReviewRepository reviewRepository;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    Event<ReviewChangedEvent> reviewChanged;
+    
+    @ConfigProperty(name = "app.reviews.vote-log-dir", defaultValue = "data/helpful-votes")
+    String logDir;
+    
+    @ConfigProperty(name = "app.reviews.vote-flush-ms", defaultValue = "1000")
+    long flushIntervalMs;
+    
+    @ConfigProperty(name = "app.reviews.vote-max-attempts", defaultValue = "5")
+    int maxAttempts;
+    
+    private final ConcurrentLinkedQueue<Vote> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    
+    // Sealed segments waiting for the database, oldest first
+    private final ConcurrentLinkedDeque<Segment> sealed = new ConcurrentLinkedDeque<>();
+    
+    private ExecutorService writer;
+    private String logId;
+    
+    // Owned by the writer thread
+    private Segment current;
+    private FileChannel channel;
+    
+    void onStart(@Observes StartupEvent ev) {
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "helpful-vote-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        await(writer.submit(Unchecked.runnable(this::recover)));
+        vertx.setPeriodic(flushIntervalMs, id -> flush());
+    }
+    
+    // Unflushed segments stay on disk and are replayed by the next start
+    void onShutdown(@Observes ShutdownEvent ev) {
+        writer.submit(Unchecked.runnable(() -> {
+            drain();
+            channel.close();
+        }));
+        writer.shutdown();
+    }
+    
+    // Completes once the vote is durable
+    public Uni<Void> record(Long reviewId) {
+        Vote vote = new Vote(reviewId);
+        incoming.add(vote);
+        if (draining.compareAndSet(false, true)) {
+            writer.execute(this::drainAll);
+        }
+        return Uni.createFrom().completionStage(vote.done);
+    }
+    
+    private void drainAll() {
+        draining.set(false);
+        drain();
+    }
+    
+    private void drain() {
+        List<Vote> batch = new ArrayList<>();
+        Vote vote;
+        while ((vote = incoming.poll()) != null) {
+            batch.add(vote);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        ByteBuffer records = ByteBuffer.allocate(batch.size() * Long.BYTES);
+        batch.forEach(v -> records.putLong(v.reviewId));
+        records.flip();
+        try {
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            batch.forEach(v -> v.done.completeExceptionally(e));
+            return;
+        }
+        batch.forEach(v -> current.add(v.reviewId, 1));
+        batch.forEach(v -> v.done.complete(null));
+    }
+    
+    private void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        vertx.executeBlocking(Uni.createFrom().item(Unchecked.supplier(() -> await(writer.submit(() -> {
+                seal();
+                return oldestRetained();
+            })))))
+            .chain(this::applySealed)
+            .eventually(() -> flushing.set(false))
+            .subscribe().with(
+                v -> { },
+                error -> System.err.println("Failed to flush helpful votes: " + error.getMessage()));
+    }
+    
+    // Writer thread: the segment being written becomes read-only and a new one starts
+    private void seal() throws IOException {
+        drain();
+        if (current.counts.isEmpty()) {
+            return;
+        }
+        channel.close();
+        sealed.add(current);
+        open(current.number + 1);
+    }
+    
+    // Writer thread: the oldest segment number still on disk, sealed, dead-lettered or being written.
+    // Applied records below it can be dropped, since no file can replay them; the records of segments
+    // still on disk must stay, as one may have committed without the flush learning of it.
+    private long oldestRetained() throws IOException {
+        long oldest = current.number;
+        for (Segment segment : sealed) {
+            oldest = Math.min(oldest, segment.number);
+        }
+        Path deadLetters = Paths.get(logDir, DEAD_LETTER_DIR);
+        if (Files.isDirectory(deadLetters)) {
+            try (Stream<Path> listing = Files.list(deadLetters)) {
+                oldest = Math.min(oldest, listing.mapToLong(HelpfulVoteBuffer::segmentNumber)
+                    .filter(number -> number >= 0)
+                    .min()
+                    .orElse(oldest));
+            }
+        }
+        return oldest;
+    }
+    
+    private Uni<Void> applySealed(long retainFrom) {
+        return applyFrom(new ArrayList<>(sealed), 0, retainFrom, false);
+    }
+    
+    private Uni<Void> applyFrom(List<Segment> segments, int index, long retainFrom, boolean appliedAny) {
+        if (index == segments.size()) {
+            // Only a flush that reached the database can tell a bad segment from an outage
+            return appliedAny ? deadLetter(segments) : Uni.createFrom().voidItem();
+        }
+        Segment segment = segments.get(index);
+        return reviewRepository.applyHelpfulVotes(logId, segment.number, segment.counts, retainFrom)
+            .onFailure().invoke(error -> {
+                segment.failures++;
+                System.err.println("Failed to apply helpful vote segment " + segment.number + " (attempt "
+                    + segment.failures + "): " + error.getMessage());
+            })
+            .onFailure().recoverWithNull()
+            .chain(applied -> applied == null
+                ? Uni.createFrom().item(false)
+                : retire(segment, applied).replaceWith(true))
+            .chain(done -> applyFrom(segments, index + 1, retainFrom, appliedAny || done));
+    }
+    
+    private Uni<Void> retire(Segment segment, boolean applied) {
+        return vertx.executeBlocking(Uni.createFrom().item(Unchecked.supplier(() -> {
+                Files.deleteIfExists(segment.path);
+                sealed.remove(segment);
+                return applied;
+            })))
+            .chain(() -> applied ? announce(segment.counts.keySet()) : Uni.createFrom().voidItem());
+    }
+    
+    private Uni<Void> deadLetter(List<Segment> segments) {
+        List<Segment> failed = segments.stream()
+            .filter(segment -> segment.failures >= maxAttempts && sealed.contains(segment))
+            .collect(Collectors.toList());
+        if (failed.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return vertx.executeBlocking(Uni.createFrom().item(Unchecked.supplier(() -> {
+            Path dir = Paths.get(logDir, DEAD_LETTER_DIR);
+            Files.createDirectories(dir);
+            for (Segment segment : failed) {
+                Files.move(segment.path, dir.resolve(segment.path.getFileName()),
+                    StandardCopyOption.REPLACE_EXISTING);
+                sealed.remove(segment);
+                System.err.println("Moved helpful vote segment " + segment.number + " to " + dir + " after "
+                    + segment.failures + " failed attempts");
+            }
+            return null;
+        }))).replaceWithVoid();
+    }
+    
+    private Uni<Void> announce(Set<Long> reviewIds) {
+        return reviewRepository.findHelpfulVotes(reviewIds)
+            .invoke(rows -> rows.forEach(row -> reviewChanged.fire(
+                new ReviewChangedEvent((Long) row[1], (Long) row[0], (Integer) row[2]))))
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    // Writer thread at startup: queue every segment left on disk and open the next one
+    private void recover() throws IOException {
+        Path dir = Paths.get(logDir);
+        Files.createDirectories(dir);
+        Path idFile = dir.resolve("log-id");
+        if (!Files.exists(idFile)) {
+            Files.writeString(idFile, UUID.randomUUID().toString(), StandardCharsets.UTF_8);
+        }
+        logId = Files.readString(idFile, StandardCharsets.UTF_8).trim();
+        
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(path -> segmentNumber(path) >= 0)
+                .sorted(Comparator.comparingLong(HelpfulVoteBuffer::segmentNumber))
+                .collect(Collectors.toList());
+        }
+        long next = 1;
+        for (Path file : files) {
+            Segment segment = new Segment(segmentNumber(file), file);
+            // A record cut short by a crash was never acknowledged
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (bytes.remaining() >= Long.BYTES) {
+                segment.add(bytes.getLong(), 1);
+            }
+            // Numbering continues after the newest file, even an empty one, so it never reuses a
+            // segment number the database may still have recorded
+            if (segment.counts.isEmpty()) {
+                Files.delete(file);
+            } else {
+                sealed.add(segment);
+            }
+            next = segment.number + 1;
+        }
+        open(next);
+    }
+    
+    private void open(long number) throws IOException {
+        Path path = Paths.get(logDir, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        current = new Segment(number, path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private static final class Vote {
+        private final Long reviewId;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        
+        Vote(Long reviewId) {
+            this.reviewId = reviewId;
+        }
+    }
+    
+    private static final class Segment {
+        private final long number;
+        private final Path path;
+        private final Map<Long, Integer> counts = new HashMap<>();
+        private int failures;
+        
+        Segment(long number, Path path) {
+            this.number = number;
+            this.path = path;
+        }
+        
+        void add(Long reviewId, int votes) {
+            counts.merge(reviewId, votes, Integer::sum);
+        }
+    }
+}
\ No newline at end of file
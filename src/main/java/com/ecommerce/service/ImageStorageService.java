@@ -11,11 +11,16 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @ApplicationScoped
 public class ImageStorageService {
     
+    private static final String IMPORT_PREFIX = "import_";
+    
     @ConfigProperty(name = "quarkus.s3.aws.region")
     String awsRegion;
     
@@ -62,15 +67,50 @@ public class ImageStorageService {
                     RequestBody.fromInputStream(inputStream, size));
                 
                 // Return the URL
-                return String.format("https://%s.s3.%s.amazonaws.com/%s",
-                    bucket, awsRegion, uniqueFileName);
+                return objectUrl(uniqueFileName);
+            
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to upload image to S3", e);
+            }
+        });
+    }
+    
+    // Images fetched by a product import are keyed by their source URL, so importing the same image
+    // again overwrites its object instead of storing another copy
+    public Uni<String> storeImportedImage(String sourceUrl, byte[] content, String contentType) {
+        return Uni.createFrom().item(() -> {
+            try {
+                S3Client s3Client = getS3Client();
+                
+                if (!bucketExists(s3Client, bucket)) {
+                    createBucket(s3Client, bucket);
+                }
                 
+                String key = IMPORT_PREFIX + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(sourceUrl.getBytes(StandardCharsets.UTF_8)));
+                
+                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .acl(ObjectCannedACL.PUBLIC_READ)
+                    .build();
+                
+                s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content));
+                
+                return objectUrl(key);
+            
             } catch (Exception e) {
                 throw new RuntimeException("Failed to upload image to S3", e);
             }
         });
     }
     
+    // Whether the URL points into this service's bucket
+    public boolean isStored(String imageUrl) {
+        return imageUrl.startsWith(objectUrl(""));
+    }
+    
     public Uni<Void> deleteImage(String imageUrl) {
         return Uni.createFrom().item(() -> {
             try {
@@ -93,6 +133,10 @@ public class ImageStorageService {
         });
     }
     
+    private String objectUrl(String key) {
+        return String.format("https://%s.s3.%s.amazonaws.com/%s", bucket, awsRegion, key);
+    }
+    
     private boolean bucketExists(S3Client s3Client, String bucket) {
         try {
             s3Client.headBucket(HeadBucketRequest.builder()
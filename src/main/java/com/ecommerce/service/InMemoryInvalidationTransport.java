@@ -0,0 +1,63 @@
+package com.ecommerce.service;
+
+import io.smallrye.mutiny.Uni;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// In-process stand-in for LISTEN/NOTIFY: transports sharing a hub see each other's messages.
+// Used for single-node deployments and for exercising the bus without a database.
+public class InMemoryInvalidationTransport implements InvalidationTransport {
+    
+    private static final List<InMemoryInvalidationTransport> SHARED_HUB = new CopyOnWriteArrayList<>();
+    
+    private final List<InMemoryInvalidationTransport> hub;
+    private volatile Consumer<String> onMessage;
+    private volatile Runnable onReconnect;
+    private volatile boolean connected = true;
+    
+    public InMemoryInvalidationTransport() {
+        this(SHARED_HUB);
+    }
+    
+    public InMemoryInvalidationTransport(List<InMemoryInvalidationTransport> hub) {
+        this.hub = hub;
+    }
+    
+    @Override
+    public Uni<Void> publish(String payload) {
+        if (!connected) {
+            return Uni.createFrom().failure(new IllegalStateException("Transport disconnected"));
+        }
+        for (InMemoryInvalidationTransport node : hub) {
+            if (node.connected && node.onMessage != null) {
+                node.onMessage.accept(payload);
+            }
+        }
+        return Uni.createFrom().voidItem();
+    }
+    
+    @Override
+    public void subscribe(Consumer<String> onMessage, Runnable onReconnect) {
+        this.onMessage = onMessage;
+        this.onReconnect = onReconnect;
+        hub.add(this);
+    }
+    
+    @Override
+    public int maxPayloadLength() {
+        return 7_900;
+    }
+    
+    // Messages published while disconnected are lost, as with a dropped LISTEN connection
+    public void disconnect() {
+        connected = false;
+    }
+    
+    public void reconnect() {
+        connected = true;
+        if (onReconnect != null) {
+            onReconnect.run();
+        }
+    }
+}
\ No newline at end of file
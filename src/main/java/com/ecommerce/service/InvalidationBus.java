@@ -0,0 +1,236 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.CartChangedEvent;
+import com.ecommerce.domain.event.CategoryChangedEvent;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.model.Tag;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.TagExpression;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Keeps in-process catalog caches and cart copies coherent across replicas. Local product, category
+// and cart writes are batched into messages "node|seq|P:id:version,C:id:0,K:id:version,..." and
+// broadcast; other nodes replay them as remote change events. Each node numbers its messages, so a receiver that sees a
+// sequence gap, or whose transport reconnects, has missed messages and flushes everything instead.
+@ApplicationScoped
+public class InvalidationBus {
+    
+    private static final int MAX_RELOAD_ATTEMPTS = 5;
+    private static final long RELOAD_RETRY_MS = 100;
+    
+    @Inject
+    InvalidationTransport transport;
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    @Inject
+    Event<CategoryChangedEvent> categoryChanged;
+    
+    @Inject
+    Event<CartChangedEvent> cartChanged;
+    
+    @Inject
+    Event<CacheFlushEvent> cacheFlush;
+    
+    @ConfigProperty(name = "app.invalidation.batch-window-ms", defaultValue = "50")
+    long batchWindowMs;
+    
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    
+    void onStart(@Observes StartupEvent ev) {
+        transport.subscribe(this::onMessage, () -> flushAll("transport reconnected"));
+        vertx.setPeriodic(batchWindowMs, id -> publishPending());
+    }
+    
+    void onShutdown(@Observes ShutdownEvent ev) {
+        publishPending();
+    }
+    
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (!event.isRemote()) {
+            Long version = event.isDeleted() ? -1L : event.getProduct().getVersion();
+            pending.add("P:" + event.getProductId() + ":" + (version != null ? version : 0L));
+        }
+    }
+    
+    void onCategoryChanged(@Observes CategoryChangedEvent event) {
+        if (!event.isRemote()) {
+            pending.add("C:" + event.getCategoryId() + ":" + (event.isDeleted() ? -1 : 0));
+        }
+    }
+    
+    void onCartChanged(@Observes CartChangedEvent event) {
+        if (!event.isRemote()) {
+            pending.add("K:" + event.getCartId() + ":" + event.getVersion());
+        }
+    }
+    
+    // One publish in flight at a time, so this node's sequence numbers reach the channel in order
+    private void publishPending() {
+        if (pending.isEmpty() || !publishing.compareAndSet(false, true)) {
+            return;
+        }
+        List<String> messages = drain();
+        publishAll(messages, 0)
+            .eventually(() -> publishing.set(false))
+            .subscribe().with(
+                v -> { },
+                error -> System.err.println("Failed to publish cache invalidations: " + error.getMessage()));
+    }
+    
+    private List<String> drain() {
+        int limit = transport.maxPayloadLength();
+        Set<String> entries = new LinkedHashSet<>();
+        String entry;
+        while ((entry = pending.poll()) != null) {
+            entries.add(entry);
+        }
+        
+        List<String> messages = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (String item : entries) {
+            // Header is at most ~30 chars; leave room for it
+            if (body.length() > 0 && body.length() + item.length() + 40 > limit) {
+                messages.add(body.toString());
+                body.setLength(0);
+            }
+            if (body.length() > 0) {
+                body.append(',');
+            }
+            body.append(item);
+        }
+        if (body.length() > 0) {
+            messages.add(body.toString());
+        }
+        return messages;
+    }
+    
+    private Uni<Void> publishAll(List<String> bodies, int index) {
+        if (index >= bodies.size()) {
+            return Uni.createFrom().voidItem();
+        }
+        // A failed publish still consumes its sequence number; receivers see the gap and flush
+        String payload = nodeId + "|" + sequence.incrementAndGet() + "|" + bodies.get(index);
+        return transport.publish(payload)
+            .onFailure().recoverWithUni(error -> {
+                System.err.println("Dropped cache invalidation batch: " + error.getMessage());
+                return Uni.createFrom().voidItem();
+            })
+            .chain(() -> publishAll(bodies, index + 1));
+    }
+    
+    void onMessage(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        long seq;
+        try {
+            seq = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        
+        Long previous = lastSeen.put(parts[0], seq);
+        if (previous != null && seq != previous + 1) {
+            flushAll("gap in invalidations from node " + parts[0]);
+            return;
+        }
+        
+        Map<Long, Long> products = new LinkedHashMap<>();
+        for (String item : parts[2].split(",")) {
+            String[] fields = item.split(":");
+            if (fields.length != 3) {
+                continue;
+            }
+            Long id = Long.valueOf(fields[1]);
+            long version = Long.parseLong(fields[2]);
+            switch (fields[0]) {
+                case "P":
+                    products.merge(id, version, Math::max);
+                    break;
+                case "C":
+                    categoryChanged.fire(new CategoryChangedEvent(id, version < 0, true));
+                    break;
+                case "K":
+                    cartChanged.fire(new CartChangedEvent(id, version, true));
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!products.isEmpty()) {
+            reloadProducts(products, 1);
+        }
+    }
+    
+    // Re-reads the changed products once and replays them through the local observers. A row older
+    // than the message means the writer's transaction is not visible yet, so it is retried shortly.
+    private void reloadProducts(Map<Long, Long> expectedVersions, int attempt) {
+        productRepository.findDetailsByIds(expectedVersions.keySet())
+            .subscribe().with(
+                products -> {
+                    Map<Long, Long> lagging = new LinkedHashMap<>();
+                    Map<Long, Product> byId = products.stream()
+                        .collect(Collectors.toMap(Product::getId, p -> p));
+                    expectedVersions.forEach((id, version) -> {
+                        Product product = byId.get(id);
+                        if (product == null) {
+                            if (version >= 0 && attempt < MAX_RELOAD_ATTEMPTS) {
+                                lagging.put(id, version);
+                            } else {
+                                productChanged.fire(ProductChangedEvent.remoteDelete(id));
+                            }
+                            return;
+                        }
+                        long current = product.getVersion() != null ? product.getVersion() : 0L;
+                        if (current < version && attempt < MAX_RELOAD_ATTEMPTS) {
+                            lagging.put(id, version);
+                            return;
+                        }
+                        Set<String> tags = product.getTags().stream()
+                            .map(Tag::getName)
+                            .map(TagExpression::normalize)
+                            .collect(Collectors.toSet());
+                        productChanged.fire(ProductChangedEvent.remote(product, tags));
+                    });
+                    if (!lagging.isEmpty()) {
+                        vertx.setTimer(RELOAD_RETRY_MS * attempt,
+                            id -> reloadProducts(lagging, attempt + 1));
+                    }
+                },
+                error -> flushAll("could not reload changed products: " + error.getMessage()));
+    }
+    
+    private void flushAll(String reason) {
+        System.err.println("Flushing catalog caches and carts: " + reason);
+        cacheFlush.fire(new CacheFlushEvent(reason));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.ecommerce.service;
+
+import io.smallrye.mutiny.Uni;
+import java.util.function.Consumer;
+
+// Broadcast channel between application nodes; every subscriber receives every published payload,
+// including its own. onReconnect runs whenever delivery resumes after an interruption.
+public interface InvalidationTransport {
+    
+    Uni<Void> publish(String payload);
+    
+    void subscribe(Consumer<String> onMessage, Runnable onReconnect);
+    
+    // Largest payload the channel accepts
+    int maxPayloadLength();
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.repository.InventoryAnalyticsRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Rolls inventory transactions up into inventory_analytics off the write path. Recorded transactions are
+// buffered by id and every flush folds them in with one upsert per product-day. A flush claims
+// its transactions by id in the same database transaction, so the ids act as replay-safe sequence
+// numbers: a retried flush never counts a transaction twice. Transactions still buffered when a node
+// stops are picked up from the table by the sweep.
+@ApplicationScoped
+public class InventoryAnalyticsAggregator {
+    
+    @Inject
+    InventoryAnalyticsRepository analyticsRepository;
+    
+    @Inject
+    Vertx vertx;
+    
+    @ConfigProperty(name = "app.analytics.flush-ms", defaultValue = "1000")
+    long flushIntervalMs;
+    
+    @ConfigProperty(name = "app.analytics.batch-size", defaultValue = "1000")
+    int batchSize;
+    
+    // Left to the flushes of the node that recorded them before the sweep claims them
+    @ConfigProperty(name = "app.analytics.sweep-grace-seconds", defaultValue = "60")
+    long sweepGraceSeconds;
+    
+    // Transaction ids not yet flushed
+    private final List<Long> pending = new ArrayList<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    
+    void onStart(@Observes StartupEvent ev) {
+        vertx.setPeriodic(flushIntervalMs, id -> flush());
+    }
+    
+    public void record(Long transactionId) {
+        synchronized (pending) {
+            pending.add(transactionId);
+        }
+    }
+    
+    private void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        List<Long> ids;
+        synchronized (pending) {
+            ids = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (ids.isEmpty()) {
+            flushing.set(false);
+            return;
+        }
+        apply(ids)
+            .onFailure().invoke(error -> {
+                System.err.println("Failed to flush inventory analytics: " + error.getMessage());
+                // Claims roll back with the failed flush, so the same ids are simply tried again
+                synchronized (pending) {
+                    pending.addAll(ids);
+                }
+            })
+            .eventually(() -> flushing.set(false))
+            .subscribe().with(applied -> { }, error -> { });
+    }
+    
+    private Uni<Integer> apply(List<Long> ids) {
+        return Multi.createFrom().range(0, (ids.size() + batchSize - 1) / batchSize)
+            .onItem().transformToUniAndConcatenate(batch -> analyticsRepository.applyTransactions(
+                ids.subList(batch * batchSize, Math.min((batch + 1) * batchSize, ids.size()))))
+            .collect().with(Collectors.summingInt(Integer::intValue));
+    }
+    
+    // Folds in transactions no flush claimed, e.g. those buffered on a node that stopped
+    @Scheduled(every = "{app.analytics.sweep-every}", delayed = "1m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> sweep() {
+        LocalDateTime before = LocalDateTime.now().minusSeconds(sweepGraceSeconds);
+        return sweep(before, 0)
+            .invoke(applied -> {
+                // Past the grace period only a node that stopped or failed to flush leaves these behind
+                if (applied > 0) {
+                    System.err.println("Inventory analytics found " + applied
+                        + " transactions no flush applied; a node stopped or failed before flushing them");
+                }
+            })
+            .onFailure().invoke(error ->
+                System.err.println("Inventory analytics sweep failed: " + error.getMessage()))
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    private Uni<Integer> sweep(LocalDateTime before, int applied) {
+        return analyticsRepository.findUnaggregated(before, batchSize)
+            .chain(ids -> {
+                if (ids.isEmpty()) {
+                    return Uni.createFrom().item(applied);
+                }
+                return analyticsRepository.applyTransactions(ids)
+                    .chain(count -> ids.size() == batchSize
+                        ? sweep(before, applied + count)
+                        : Uni.createFrom().item(applied + count));
+            });
+    }
+
+}
\ No newline at end of file
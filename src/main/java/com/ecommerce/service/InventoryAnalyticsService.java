@@ -2,6 +2,8 @@ package com.ecommerce.service;
 
 import com.ecommerce.domain.model.*;
 import com.ecommerce.domain.repository.*;
+import com.ecommerce.exception.ValidationException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -12,12 +14,20 @@ import java.util.stream.Collectors;
 @ApplicationScoped
 public class InventoryAnalyticsService {
     
+    private static final int MAX_STOCKOUT_RISK = 1000;
+    
     @Inject
     InventoryAnalyticsRepository analyticsRepository;
     
     @Inject
     ProductRepository productRepository;
     
+    @Inject
+    TopSellingTracker topSelling;
+    
+    @Inject
+    AnalyticsSnapshotCache snapshots;
+    
     public Uni<Map<String, Object>> getProductAnalytics(
             Long productId, LocalDate startDate, LocalDate endDate) {
         return analyticsRepository.findByProductAndDateRange(productId, startDate, endDate)
@@ -80,71 +90,108 @@ public class InventoryAnalyticsService {
     
     public Uni<List<Map<String, Object>>> getTopSellingProducts(
             LocalDate startDate, LocalDate endDate, int limit) {
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            throw new ValidationException("startDate and endDate are required, startDate first");
+        }
         return analyticsRepository.findTopSellingProducts(startDate, endDate, limit)
-            .map(analytics -> analytics.stream()
-                .map(a -> {
+            .map(rows -> rows.stream()
+                .map(row -> {
                     Map<String, Object> product = new HashMap<>();
-                    product.put("productId", a.getProduct().getId());
-                    product.put("productName", a.getProduct().getName());
-                    product.put("totalSales", a.getSalesCount());
-                    product.put("turnoverRate", a.getTurnoverRate());
-                    product.put("averageStock", 
-                        (a.getStartingStock() + a.getEndingStock()) / 2.0);
+                    product.put("productId", row[0]);
+                    product.put("productName", row[1]);
+                    product.put("totalSales", row[2]);
+                    product.put("turnoverRate", row[3]);
+                    product.put("averageStock", row[4]);
                     return product;
                 })
                 .collect(Collectors.toList()));
     }
     
-    public Uni<List<Map<String, Object>>> getStockoutRisk() {
-        return productRepository.find("stockQuantity <= lowStockThreshold and active = true")
-            .list()
-            .map(products -> products.stream()
-                .map(p -> {
-                    Map<String, Object> risk = new HashMap<>();
-                    risk.put("productId", p.getId());
-                    risk.put("productName", p.getName());
-                    risk.put("currentStock", p.getStockQuantity());
-                    risk.put("threshold", p.getLowStockThreshold());
-                    risk.put("riskLevel", calculateRiskLevel(p));
-                    return risk;
-                })
-                .collect(Collectors.toList()));
+    // Served from memory; totalSales is an estimate that can be off in either direction. A day's summary
+    // can overstate a product's sales that day by up to the day's smallest counter, and it leaves out a
+    // product outside the day's top capacity, whose sales that day were at most that counter. The window
+    // total is therefore within the sum of its days' smallest counters of the true figure, less any sales
+    // made on other nodes since the last refresh.
+    public Uni<List<Map<String, Object>>> getRollingTopSelling(int days, int limit) {
+        if (!TopSellingTracker.WINDOWS.contains(days)) {
+            throw new ValidationException("days must be one of " + TopSellingTracker.WINDOWS);
+        }
+        if (limit < 1) {
+            throw new ValidationException("limit must be positive");
+        }
+        List<long[]> top = topSelling.top(days, Math.min(limit, topSelling.capacity()));
+        if (top.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        return productRepository.findNames(top.stream().map(entry -> entry[0]).collect(Collectors.toList()))
+            .map(rows -> {
+                Map<Long, String> names = new HashMap<>();
+                rows.forEach(row -> names.put((Long) row[0], (String) row[1]));
+                return top.stream()
+                    .filter(entry -> names.containsKey(entry[0]))
+                    .map(entry -> {
+                        Map<String, Object> product = new HashMap<>();
+                        product.put("productId", entry[0]);
+                        product.put("productName", names.get(entry[0]));
+                        product.put("totalSales", entry[1]);
+                        return product;
+                    })
+                    .collect(Collectors.toList());
+            });
     }
     
-    private String calculateRiskLevel(Product product) {
-        double stockRatio = (double) product.getStockQuantity() / product.getLowStockThreshold();
+    // Most at-risk products first; the snapshot holds the first MAX_STOCKOUT_RISK of them
+    public Uni<List<Map<String, Object>>> getStockoutRisk(int limit) {
+        if (limit < 1) {
+            throw new ValidationException("limit must be positive");
+        }
+        return snapshots.get("stockout-risk", new TypeReference<List<Map<String, Object>>>() { },
+                () -> analyticsRepository.findStockoutRisk(MAX_STOCKOUT_RISK)
+                    .map(rows -> rows.stream()
+                        .map(row -> {
+                            int stock = ((Number) row[2]).intValue();
+                            int threshold = ((Number) row[3]).intValue();
+                            Map<String, Object> risk = new HashMap<>();
+                            risk.put("productId", ((Number) row[0]).longValue());
+                            risk.put("productName", row[1]);
+                            risk.put("currentStock", stock);
+                            risk.put("threshold", threshold);
+                            risk.put("riskLevel", calculateRiskLevel(stock, threshold));
+                            return risk;
+                        })
+                        .collect(Collectors.toList())))
+            .map(risks -> risks.size() > limit ? risks.subList(0, limit) : risks);
+    }
+    
+    private String calculateRiskLevel(int stock, int threshold) {
+        double stockRatio = threshold == 0 ? 0 : (double) stock / threshold;
         if (stockRatio <= 0.25) return "CRITICAL";
         if (stockRatio <= 0.5) return "HIGH";
         if (stockRatio <= 0.75) return "MEDIUM";
         return "LOW";
     }
     
+    // Counted and summed by the database in one pass, so memory does not grow with the catalog
     public Uni<Map<String, Object>> getInventoryHealth() {
-        return productRepository.findAll().list()
-            .map(products -> {
-                Map<String, Object> health = new HashMap<>();
-                
-                long totalProducts = products.size();
-                long lowStockProducts = products.stream()
-                    .filter(p -> p.getStockQuantity() <= p.getLowStockThreshold())
-                    .count();
-                long outOfStockProducts = products.stream()
-                    .filter(p -> p.getStockQuantity() == 0)
-                    .count();
-                
-                double totalValue = products.stream()
-                    .mapToDouble(p -> p.getPrice().doubleValue() * p.getStockQuantity())
-                    .sum();
-                
-                health.put("totalProducts", totalProducts);
-                health.put("lowStockProducts", lowStockProducts);
-                health.put("outOfStockProducts", outOfStockProducts);
-                health.put("totalInventoryValue", totalValue);
-                health.put("healthScore", calculateHealthScore(
-                    totalProducts, lowStockProducts, outOfStockProducts));
-                
-                return health;
-            });
+        return snapshots.get("inventory-health", new TypeReference<Map<String, Object>>() { },
+            () -> analyticsRepository.findInventoryHealth()
+                .map(row -> {
+                    Map<String, Object> health = new HashMap<>();
+                    
+                    long totalProducts = ((Number) row[0]).longValue();
+                    long lowStockProducts = ((Number) row[1]).longValue();
+                    long outOfStockProducts = ((Number) row[2]).longValue();
+                    double totalValue = ((Number) row[3]).doubleValue();
+                    
+                    health.put("totalProducts", totalProducts);
+                    health.put("lowStockProducts", lowStockProducts);
+                    health.put("outOfStockProducts", outOfStockProducts);
+                    health.put("totalInventoryValue", totalValue);
+                    health.put("healthScore", calculateHealthScore(
+                        totalProducts, lowStockProducts, outOfStockProducts));
+                    
+                    return health;
+                }));
     }
     
     private double calculateHealthScore(
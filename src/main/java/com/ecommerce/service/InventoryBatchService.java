@@ -0,0 +1,204 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.InventoryBatchResultDTO;
+import com.ecommerce.domain.dto.InventoryTransactionDTO;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.model.TransactionType;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.StockReservationRepository.StockChange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.unchecked.Unchecked;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Bulk ingestion of inventory transactions from the warehouse system, as a JSON array or an NDJSON
+// stream. Items are written in batches, each in one database transaction: a batch costs one lock per
+// product, one stock UPDATE per product and one multi-row INSERT, however many items it carries.
+// Items are applied in request order and every item gets its own result.
+@ApplicationScoped
+public class InventoryBatchService {
+    
+    @Inject
+    StockReservationService stockReservationService;
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @Inject
+    Validator validator;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    @ConfigProperty(name = "app.inventory.batch-size", defaultValue = "500")
+    int batchSize;
+    
+    public Uni<InventoryBatchResultDTO> record(List<InventoryTransactionDTO> transactions) {
+        long started = System.nanoTime();
+        InventoryBatchResultDTO result = new InventoryBatchResultDTO();
+        List<List<Item>> batches = new ArrayList<>();
+        for (int from = 0; from < transactions.size(); from += batchSize) {
+            List<Item> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(from + batchSize, transactions.size()); i++) {
+                batch.add(toItem(i, transactions.get(i)));
+            }
+            batches.add(batch);
+        }
+        return Multi.createFrom().iterable(batches)
+            .onItem().transformToUniAndConcatenate(batch -> write(batch, result))
+            .collect().last()
+            .map(v -> finish(result, started));
+    }
+    
+    // One transaction per non-blank line; the stream is read a batch at a time on a worker thread
+    public Uni<InventoryBatchResultDTO> record(InputStream ndjson) {
+        long started = System.nanoTime();
+        InventoryBatchResultDTO result = new InventoryBatchResultDTO();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        long[] index = { 0L };
+        return Multi.createBy().repeating()
+            .uni(() -> reader, r -> vertx.executeBlocking(Uni.createFrom().item(
+                Unchecked.supplier(() -> {
+                    List<Item> batch = new ArrayList<>(batchSize);
+                    String line;
+                    while (batch.size() < batchSize && (line = r.readLine()) != null) {
+                        if (!line.isBlank()) {
+                            batch.add(parse(index[0]++, line));
+                        }
+                    }
+                    return batch;
+                }))))
+            .whilst(batch -> batch.size() == batchSize)
+            .onItem().transformToUniAndConcatenate(batch -> write(batch, result))
+            .collect().last()
+            .eventually(() -> vertx.executeBlocking(Uni.createFrom().item(
+                Unchecked.supplier(() -> {
+                    reader.close();
+                    return true;
+                }))))
+            .map(v -> finish(result, started));
+    }
+    
+    private Item parse(long index, String json) {
+        try {
+            return toItem(index, objectMapper.readValue(json, InventoryTransactionDTO.class));
+        } catch (JsonProcessingException e) {
+            return Item.failed(index, null, "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+    
+    private Item toItem(long index, InventoryTransactionDTO dto) {
+        if (dto == null) {
+            return Item.failed(index, null, "Transaction is required");
+        }
+        Set<ConstraintViolation<InventoryTransactionDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            return Item.failed(index, dto.getProductId(), violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; ")));
+        }
+        boolean absolute = dto.getType() == TransactionType.ADJUSTMENT;
+        int delta = absolute ? dto.getQuantity() : InventoryService.stockDelta(dto.getQuantity(), dto.getType());
+        return new Item(index, new StockChange(dto.getProductId(), dto.getQuantity(), dto.getType(),
+            dto.getReference(), delta, absolute), null);
+    }
+    
+    private Uni<Void> write(List<Item> batch, InventoryBatchResultDTO result) {
+        result.setReceived(result.getReceived() + batch.size());
+        List<StockChange> changes = batch.stream()
+            .filter(item -> item.change != null)
+            .map(item -> item.change)
+            .collect(Collectors.toList());
+        Uni<List<Long>> written = changes.isEmpty()
+            ? Uni.createFrom().item(List.of())
+            : stockReservationService.recordStockChanges(changes);
+        return written
+            .invoke(() -> batch.forEach(item -> report(result, item, null)))
+            .onFailure().recoverWithItem(error -> {
+                String message = "Batch rolled back: " + error.getMessage();
+                batch.forEach(item -> report(result, item, message));
+                return List.of();
+            })
+            .call(this::announce)
+            .replaceWithVoid();
+    }
+    
+    // Caches, indexes and stock alerts see the batch the same way as single transactions
+    private Uni<Void> announce(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return productRepository.findDetailsByIds(productIds)
+            .invoke(products -> products.forEach(product -> productChanged.fire(new ProductChangedEvent(product))))
+            .onFailure().invoke(error ->
+                System.err.println("Failed to announce inventory batch: " + error.getMessage()))
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    private static void report(InventoryBatchResultDTO result, Item item, String rollback) {
+        StockChange change = item.change;
+        String error = item.error != null ? item.error
+            : rollback != null ? rollback
+            : change.getError();
+        if (error != null) {
+            result.setFailed(result.getFailed() + 1);
+            result.getResults().add(new InventoryBatchResultDTO.ItemResult(item.index,
+                change != null ? change.getProductId() : item.productId, null, null, error));
+        } else {
+            result.setRecorded(result.getRecorded() + 1);
+            result.getResults().add(new InventoryBatchResultDTO.ItemResult(item.index, change.getProductId(),
+                change.getTransactionId(), change.getStockQuantity(), null));
+        }
+    }
+    
+    private static InventoryBatchResultDTO finish(InventoryBatchResultDTO result, long started) {
+        result.setElapsedMillis((System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+    
+    private static final class Item {
+        private final long index;
+        private final Long productId;
+        private final StockChange change;
+        private final String error;
+        
+        Item(long index, StockChange change, String error) {
+            this(index, change != null ? change.getProductId() : null, change, error);
+        }
+        
+        private Item(long index, Long productId, StockChange change, String error) {
+            this.index = index;
+            this.productId = productId;
+            this.change = change;
+            this.error = error;
+        }
+        
+        static Item failed(long index, Long productId, String error) {
+            return new Item(index, productId, null, error);
+        }
+    }
+}
\ No newline at end of file
@@ -1,12 +1,18 @@
 package com.ecommerce.service;
 
 import com.ecommerce.domain.dto.InventoryTransactionDTO;
+import com.ecommerce.domain.dto.PageDTO;
 import com.ecommerce.domain.dto.StockAlertDTO;
+import com.ecommerce.domain.event.ProductChangedEvent;
 import com.ecommerce.domain.model.*;
 import com.ecommerce.domain.repository.*;
+import com.ecommerce.domain.repository.StockReservationRepository.StockChange;
+import com.ecommerce.exception.InsufficientStockException;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.exception.ValidationException;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.time.LocalDateTime;
@@ -15,6 +21,9 @@ import java.util.List;
 @ApplicationScoped
 public class InventoryService {
     
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    
     @Inject
     ProductRepository productRepository;
     
@@ -25,74 +34,73 @@ public class InventoryService {
     StockAlertRepository alertRepository;
     
     @Inject
-    EmailService emailService;
+    StockReservationService stockReservationService;
     
-    @Transactional
+    @Inject
+    StockAlertEvaluator alertEvaluator;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    // Goes the same way as a one-item batch: the product row is locked once and the stock level and
+    // transaction row are written in the same database transaction
     public Uni<InventoryTransaction> recordTransaction(InventoryTransactionDTO transactionDTO) {
-        return productRepository.findById(transactionDTO.getProductId())
-            .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Product not found"))
-            .chain(product -> {
-                // Calculate new stock level
-                int newStock = calculateNewStock(
-                    product.getStockQuantity(),
-                    transactionDTO.getQuantity(),
-                    transactionDTO.getType()
-                );
-                
-                // Validate stock level
-                if (newStock < 0) {
-                    return Uni.createFrom().failure(
-                        new IllegalStateException("Insufficient stock"));
+        boolean absolute = transactionDTO.getType() == TransactionType.ADJUSTMENT;
+        int delta = absolute
+            ? transactionDTO.getQuantity()
+            : stockDelta(transactionDTO.getQuantity(), transactionDTO.getType());
+        StockChange change = new StockChange(transactionDTO.getProductId(), transactionDTO.getQuantity(),
+            transactionDTO.getType(), transactionDTO.getReference(), delta, absolute);
+        
+        return stockReservationService.recordStockChanges(List.of(change))
+            .chain(changed -> {
+                if (change.getError() != null) {
+                    return Uni.createFrom().failure("Product not found".equals(change.getError())
+                        ? new ResourceNotFoundException(change.getError())
+                        : new InsufficientStockException(change.getProductId()));
                 }
+                return productRepository.findDetailsByIds(changed);
+            })
+            .map(products -> {
+                Product product = products.get(0);
+                productChanged.fire(new ProductChangedEvent(product));
                 
-                // Update product stock
-                product.setStockQuantity(newStock);
-                
-                // Create transaction record
                 InventoryTransaction transaction = new InventoryTransaction();
+                transaction.setId(change.getTransactionId());
                 transaction.setProduct(product);
                 transaction.setQuantity(transactionDTO.getQuantity());
                 transaction.setType(transactionDTO.getType());
                 transaction.setReference(transactionDTO.getReference());
-                
-                // Check for low stock
-                checkLowStock(product, newStock);
-                
-                return productRepository.persist(product)
-                    .chain(() -> transactionRepository.persist(transaction));
+                transaction.setStockBefore(change.getStockBefore());
+                transaction.setStockAfter(change.getStockQuantity());
+                transaction.setTimestamp(change.getRecordedAt());
+                return transaction;
             });
     }
     
-    private int calculateNewStock(int currentStock, int quantity, TransactionType type) {
+    static int stockDelta(int quantity, TransactionType type) {
         return switch (type) {
-            case PURCHASE, RESTOCK, RETURN -> currentStock + quantity;
-            case SALE, DAMAGED -> currentStock - quantity;
-            case ADJUSTMENT -> quantity;
+            case PURCHASE, RESTOCK, RETURN -> quantity;
+            case SALE, DAMAGED -> -quantity;
+            case ADJUSTMENT -> throw new ValidationException("Adjustments set the stock level");
         };
     }
     
-    private void checkLowStock(Product product, int newStock) {
-        alertRepository.findByProduct(product.getId())
-            .subscribe().with(alert -> {
-                if (alert != null && alert.getActive() && 
-                    newStock <= alert.getThreshold()) {
-                    emailService.sendLowStockAlert(product, newStock, alert.getThreshold())
-                        .subscribe().with(
-                            success -> {},
-                            error -> System.err.println("Failed to send low stock alert: " + error)
-                        );
-                }
-            });
-    }
-    
     public Uni<List<InventoryTransaction>> getProductTransactions(Long productId) {
         return transactionRepository.findByProduct(productId);
     }
     
-    public Uni<List<Product>> getLowStockProducts() {
-        return productRepository.find("stockQuantity <= lowStockThreshold")
-            .list();
+    public Uni<PageDTO<Product>> getLowStockProducts(String cursor, Integer size) {
+        LowStockCursor after = LowStockCursor.decode(cursor);
+        int pageSize = size == null || size < 1 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        
+        return productRepository.findLowStock(after, pageSize + 1)
+            .map(products -> {
+                boolean hasNext = products.size() > pageSize;
+                List<Product> content = hasNext ? products.subList(0, pageSize) : products;
+                String nextCursor = hasNext ? LowStockCursor.after(content.get(pageSize - 1)).encode() : null;
+                return new PageDTO<>(content, pageSize, hasNext, after != null, nextCursor);
+            });
     }
     
     @Transactional
@@ -106,7 +114,8 @@ public class InventoryService {
                 alert.setThreshold(alertDTO.getThreshold());
                 alert.setActive(alertDTO.getActive());
                 
-                return alertRepository.persist(alert);
+                return alertRepository.persistAndFlush(alert)
+                    .call(() -> alertEvaluator.reload(product.getId()));
             });
     }
     
@@ -119,7 +128,8 @@ public class InventoryService {
                 alert.setThreshold(alertDTO.getThreshold());
                 alert.setActive(alertDTO.getActive());
                 
-                return alertRepository.persist(alert);
+                return alertRepository.persistAndFlush(alert)
+                    .call(() -> alertEvaluator.reload(alert.getProduct().getId()));
             });
     }
     
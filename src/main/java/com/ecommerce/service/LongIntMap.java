@@ -0,0 +1,122 @@
+package com.ecommerce.service;
+
+import java.util.Arrays;
+
+// Open-addressing hash map from positive long keys to int values, without boxing either. Key 0 marks an
+// empty slot, which is fine for identity ids. Removal shifts the following entries of the probe run back,
+// so lookups never have to step over tombstones. Not thread-safe.
+final class LongIntMap {
+    
+    private long[] keys;
+    private int[] values;
+    private int size;
+    
+    LongIntMap() {
+        this(16);
+    }
+    
+    LongIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    boolean containsKey(long key) {
+        return key > 0 && keys[slot(key)] == key;
+    }
+    
+    int get(long key, int missing) {
+        if (key <= 0) {
+            return missing;
+        }
+        int slot = slot(key);
+        return keys[slot] == key ? values[slot] : missing;
+    }
+    
+    void put(long key, int value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive");
+        }
+        int slot = slot(key);
+        if (keys[slot] != key) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+    
+    void remove(long key) {
+        int slot = slot(key);
+        if (key <= 0 || keys[slot] != key) {
+            return;
+        }
+        int mask = keys.length - 1;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            // An entry can fill the gap unless its home slot lies cyclically after the gap
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = 0;
+        size--;
+    }
+    
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+    
+    void forEach(Entry action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+    
+    // Slot holding the key, or the empty slot where it would go
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    @FunctionalInterface
+    interface Entry {
+        void accept(long key, int value);
+    }
+}
\ No newline at end of file
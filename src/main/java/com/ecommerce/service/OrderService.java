@@ -1,24 +1,43 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.dto.CartDTO;
 import com.ecommerce.domain.model.*;
-import com.ecommerce.domain.repository.CartRepository;
 import com.ecommerce.domain.repository.OrderRepository;
+import com.ecommerce.exception.CartChangedException;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.exception.ValidationException;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @ApplicationScoped
 public class OrderService {
     
+    // Statuses an order may move to. Stock is only sold from open holds and only returned before payment,
+    // so a paid order cannot be cancelled here and a failed or cancelled one cannot be paid.
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = Map.of(
+        OrderStatus.PENDING, Set.of(OrderStatus.PAID, OrderStatus.CANCELLED, OrderStatus.PAYMENT_FAILED),
+        OrderStatus.PAID, Set.of(OrderStatus.PROCESSING),
+        OrderStatus.PROCESSING, Set.of(OrderStatus.SHIPPED),
+        OrderStatus.SHIPPED, Set.of(OrderStatus.DELIVERED),
+        OrderStatus.DELIVERED, Set.of(),
+        OrderStatus.CANCELLED, Set.of(),
+        OrderStatus.PAYMENT_FAILED, Set.of());
+    
     @Inject
     OrderRepository orderRepository;
     
     @Inject
-    CartRepository cartRepository;
+    StockReservationService stockReservationService;
+    
+    @Inject
+    CartService cartService;
     
     public Uni<List<Order>> getUserOrders(String userId) {
         return orderRepository.findByUserId(userId);
@@ -32,36 +51,76 @@ public class OrderService {
     
     @Transactional
     public Uni<Order> createOrder(String userId, ShippingAddress shippingAddress) {
-        return cartRepository.findByUserId(userId)
-            .onItem().ifNull().failWith(() ->
-                new ResourceNotFoundException("Cart not found"))
-            .chain(cart -> {
-                Order order = new Order();
-                order.setUserId(userId);
-                order.setOrderDate(LocalDateTime.now());
-                order.setStatus(OrderStatus.PENDING);
-                order.setTotalAmount(cart.getTotalAmount());
-                order.setShippingAddress(shippingAddress);
-                
-                cart.getItems().forEach(cartItem -> {
-                    OrderItem orderItem = new OrderItem();
-                    orderItem.setOrder(order);
-                    orderItem.setProduct(cartItem.getProduct());
-                    orderItem.setQuantity(cartItem.getQuantity());
-                    orderItem.setPrice(cartItem.getPrice());
-                    orderItem.setSubtotal(cartItem.getSubtotal());
-                    order.getItems().add(orderItem);
-                });
+        // Every line is repriced and checked in one product lookup before any stock is held. The order
+        // is built from the cart exactly as validated under the cart's lock, so a change made after the
+        // check cannot slip into the order unchecked.
+        return cartService.validate(userId)
+            .chain(validation -> {
+                CartDTO cart = validation.getCart();
+                if (cart.getItems().isEmpty()) {
+                    return Uni.createFrom().failure(new ValidationException("Cart is empty"));
+                }
+                if (validation.isChanged()) {
+                    return Uni.createFrom().failure(new CartChangedException(validation));
+                }
+                Map<Long, Integer> quantities = new HashMap<>();
+                cart.getItems().forEach(item ->
+                    quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum));
                 
-                return orderRepository.persist(order);
+                // Stock is held in its own transaction before the order exists. A failure while saving
+                // the order hands the units back at once; should the order's transaction still fail to
+                // commit after that, its holds are returned when they expire.
+                return stockReservationService.reserve(quantities)
+                    .chain(holdId -> orderRepository.getSession()
+                        .chain(session -> {
+                            Order order = new Order();
+                            order.setUserId(userId);
+                            order.setOrderDate(LocalDateTime.now());
+                            order.setStatus(OrderStatus.PENDING);
+                            order.setTotalAmount(cart.getTotalAmount());
+                            order.setShippingAddress(shippingAddress);
+                            
+                            cart.getItems().forEach(item -> {
+                                OrderItem orderItem = new OrderItem();
+                                orderItem.setOrder(order);
+                                orderItem.setProduct(session.getReference(Product.class, item.getProductId()));
+                                orderItem.setQuantity(item.getQuantity());
+                                orderItem.setPrice(item.getPrice());
+                                orderItem.setSubtotal(item.getSubtotal());
+                                order.getItems().add(orderItem);
+                            });
+                            
+                            return orderRepository.persistAndFlush(order);
+                        })
+                        .call(saved -> stockReservationService.attach(holdId, saved.getId()))
+                        .onFailure().call(() -> stockReservationService.releaseHold(holdId)));
             });
     }
     
     @Transactional
     public Uni<Order> updateOrderStatus(Long orderId, OrderStatus status) {
+        // Stock moves in its own transaction before the status is written, so a failed commit or release
+        // leaves the previous status. Both only pick up holds not yet committed or released, which makes
+        // repeating the update (e.g. a redelivered payment webhook) safe when the status write fails
+        // after the stock moved.
         return orderRepository.findById(orderId)
             .onItem().ifNull().failWith(() ->
                 new ResourceNotFoundException("Order not found"))
+            .invoke(order -> {
+                OrderStatus current = order.getStatus() != null ? order.getStatus() : OrderStatus.PENDING;
+                if (current != status && !TRANSITIONS.get(current).contains(status)) {
+                    throw new ValidationException("Order cannot move from " + current + " to " + status);
+                }
+            })
+            .call(order -> {
+                if (status == OrderStatus.PAID) {
+                    return stockReservationService.commit(orderId);
+                }
+                if (status == OrderStatus.CANCELLED || status == OrderStatus.PAYMENT_FAILED) {
+                    return stockReservationService.release(orderId);
+                }
+                return Uni.createFrom().voidItem();
+            })
             .chain(order -> {
                 order.setStatus(status);
                 return orderRepository.persist(order);
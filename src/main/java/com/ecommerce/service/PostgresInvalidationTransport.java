@@ -0,0 +1,81 @@
+package com.ecommerce.service;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgConnection;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import java.util.function.Consumer;
+
+// NOTIFY goes through the pool; LISTEN holds one dedicated connection and re-establishes it
+// after a drop, reporting the reconnect since notifications sent meanwhile are lost.
+public class PostgresInvalidationTransport implements InvalidationTransport {
+    
+    private static final long RECONNECT_DELAY_MS = 1_000;
+    
+    // NOTIFY payloads must be shorter than 8000 bytes
+    private static final int MAX_PAYLOAD = 7_900;
+    
+    private final PgPool pool;
+    private final Vertx vertx;
+    private final String channel;
+    
+    private volatile Consumer<String> onMessage;
+    private volatile Runnable onReconnect;
+    
+    public PostgresInvalidationTransport(PgPool pool, Vertx vertx, String channel) {
+        this.pool = pool;
+        this.vertx = vertx;
+        this.channel = channel;
+    }
+    
+    @Override
+    public Uni<Void> publish(String payload) {
+        return pool.preparedQuery("select pg_notify($1, $2)")
+            .execute(Tuple.of(channel, payload))
+            .replaceWithVoid();
+    }
+    
+    @Override
+    public void subscribe(Consumer<String> onMessage, Runnable onReconnect) {
+        this.onMessage = onMessage;
+        this.onReconnect = onReconnect;
+        listen(false);
+    }
+    
+    @Override
+    public int maxPayloadLength() {
+        return MAX_PAYLOAD;
+    }
+    
+    private void listen(boolean reconnecting) {
+        pool.getConnection()
+            .chain(connection -> {
+                PgConnection pg = PgConnection.cast(connection);
+                pg.notificationHandler(notification -> {
+                    if (channel.equals(notification.getChannel())) {
+                        onMessage.accept(notification.getPayload());
+                    }
+                });
+                // Channel names are fixed configuration, never user input
+                return pg.query("LISTEN " + channel).execute()
+                    .onFailure().call(error -> pg.close())
+                    .replaceWith(pg);
+            })
+            .subscribe().with(
+                pg -> {
+                    pg.closeHandler(this::scheduleReconnect);
+                    if (reconnecting) {
+                        onReconnect.run();
+                    }
+                },
+                error -> {
+                    System.err.println("Failed to listen on " + channel + ": " + error.getMessage());
+                    scheduleReconnect();
+                });
+    }
+    
+    private void scheduleReconnect() {
+        vertx.setTimer(RECONNECT_DELAY_MS, id -> listen(true));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.CacheStatsDTO;
+import com.ecommerce.domain.dto.ProductDetailDTO;
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Serialized product detail views keyed by product id. Invalidation runs once the write has committed and
+// leaves a tombstone carrying the written @Version; only a view of at least that version replaces it, so a
+// read that saw the row before the write cannot re-cache the older row.
+@ApplicationScoped
+public class ProductDetailCache {
+    
+    private static final int ENTRY_OVERHEAD = 64;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @ConfigProperty(name = "app.product-cache.max-entries", defaultValue = "10000")
+    int maxEntries;
+    
+    @ConfigProperty(name = "app.product-cache.max-weight-mb", defaultValue = "64")
+    int maxWeightMb;
+    
+    private TinyLfuCache<Long, Entry> cache;
+    
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    @PostConstruct
+    void init() {
+        cache = new TinyLfuCache<>(maxEntries, maxWeightMb * 1024L * 1024L,
+            entry -> ENTRY_OVERHEAD + (entry.json != null ? entry.json.length : 0));
+    }
+    
+    public byte[] get(Long productId) {
+        Entry entry = cache.getIfPresent(productId);
+        if (entry == null || entry.json == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.json;
+    }
+    
+    // Taken before reading the database; compared against tombstones when the result is stored
+    public long ticket() {
+        return invalidations.get();
+    }
+    
+    public byte[] put(long ticket, ProductDetailDTO view) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(view);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize product " + view.getId(), e);
+        }
+        // Without a tombstone to compare against, any write since the read began makes it suspect
+        if (ticket != invalidations.get() && !cache.containsKey(view.getId())) {
+            return json;
+        }
+        long version = view.getVersion() != null ? view.getVersion() : 0L;
+        cache.merge(view.getId(), new Entry(version, json), ProductDetailCache::resolve);
+        return json;
+    }
+    
+    public void invalidate(Long productId, Long version) {
+        invalidations.incrementAndGet();
+        cache.merge(productId, new Entry(version != null ? version : 0L, null), ProductDetailCache::resolve);
+    }
+    
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+    
+    // Writers fire the event after their reactive transaction has committed; a JTA phase would never apply
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        invalidate(event.getProductId(),
+            event.isDeleted() ? Long.MAX_VALUE : event.getProduct().getVersion());
+    }
+    
+    void onCacheFlush(@Observes CacheFlushEvent event) {
+        invalidateAll();
+    }
+    
+    public CacheStatsDTO stats() {
+        return new CacheStatsDTO(hits.sum(), misses.sum(), cache.evictionCount(), cache.evictionWeight(),
+            cache.size(), cache.weight(), cache.maximumWeight());
+    }
+    
+    // An entry newer than the incoming one stays. A tombstone also replaces a view of its own version,
+    // while a view needs at least the tombstone's version; deletes carry Long.MAX_VALUE, so none does.
+    private static Entry resolve(Entry current, Entry incoming) {
+        if (incoming.json == null) {
+            return current.version > incoming.version ? current : incoming;
+        }
+        return incoming.version >= current.version ? incoming : current;
+    }
+    
+    private static final class Entry {
+        private final long version;
+        private final byte[] json;
+        
+        Entry(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
\ No newline at end of file
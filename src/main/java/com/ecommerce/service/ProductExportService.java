@@ -0,0 +1,126 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductExportDTO;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.exception.ValidationException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.util.List;
+import java.util.Locale;
+
+// Streams the active catalog for feed generators. Products are read in keyset batches and each batch
+// becomes one response chunk; the next batch is only queried once the client has taken the last one.
+@ApplicationScoped
+public class ProductExportService {
+    
+    private static final String CSV_HEADER = "id,name,description,price,stock_quantity,category_id,"
+        + "category_name,average_rating,image_url,updated_at\n";
+    
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+        
+        private final String mediaType;
+        private final String extension;
+        
+        Format(String mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+        
+        public String getMediaType() {
+            return mediaType;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+        
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Unsupported export format: " + value);
+            }
+        }
+    }
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @ConfigProperty(name = "app.export.batch-size", defaultValue = "1000")
+    int batchSize;
+    
+    public Multi<Buffer> export(Format format) {
+        Multi<Buffer> rows = Multi.createBy().repeating()
+            .uni(() -> new long[] { 0L }, lastId -> productRepository.findExportBatch(lastId[0], batchSize)
+                .invoke(batch -> {
+                    if (!batch.isEmpty()) {
+                        lastId[0] = batch.get(batch.size() - 1).getId();
+                    }
+                }))
+            .whilst(batch -> batch.size() == batchSize)
+            .filter(batch -> !batch.isEmpty())
+            .map(batch -> format == Format.CSV ? toCsv(batch) : toNdjson(batch));
+        
+        if (format == Format.CSV) {
+            return Multi.createBy().concatenating()
+                .streams(Multi.createFrom().item(Buffer.buffer(CSV_HEADER)), rows);
+        }
+        return rows;
+    }
+    
+    private Buffer toNdjson(List<ProductExportDTO> batch) {
+        Buffer chunk = Buffer.buffer(batch.size() * 256);
+        for (ProductExportDTO row : batch) {
+            try {
+                chunk.appendBytes(objectMapper.writeValueAsBytes(row));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not serialize product " + row.getId(), e);
+            }
+            chunk.appendString("\n");
+        }
+        return chunk;
+    }
+    
+    private Buffer toCsv(List<ProductExportDTO> batch) {
+        StringBuilder chunk = new StringBuilder(batch.size() * 256);
+        for (ProductExportDTO row : batch) {
+            chunk.append(row.getId()).append(',')
+                .append(csv(row.getName())).append(',')
+                .append(csv(row.getDescription())).append(',')
+                .append(row.getPrice() != null ? row.getPrice().toPlainString() : "").append(',')
+                .append(row.getStockQuantity() != null ? row.getStockQuantity() : "").append(',')
+                .append(row.getCategoryId() != null ? row.getCategoryId() : "").append(',')
+                .append(csv(row.getCategoryName())).append(',')
+                .append(row.getAverageRating() != null ? row.getAverageRating() : "").append(',')
+                .append(csv(row.getImageUrl())).append(',')
+                .append(row.getUpdatedAt() != null ? row.getUpdatedAt() : "")
+                .append('\n');
+        }
+        return Buffer.buffer(chunk.toString());
+    }
+    
+    // RFC 4180 quoting; a leading formula character is prefixed so spreadsheets show it as text
+    private static String csv(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = "=+-@".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,354 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductFacetsDTO;
+import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.repository.ProductRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@ApplicationScoped
+public class ProductFacetIndex {
+    
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final int NO_CATEGORY = -1;
+    private static final int[] NO_TAGS = new int[0];
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Columnar catalog snapshot, indexed by product ordinal
+    private long[] ids = new long[1024];
+    private long[] priceCents = new long[1024];
+    private float[] ratings = new float[1024];
+    private int[] stock = new int[1024];
+    private int[] categories = new int[1024];
+    private int[][] tags = new int[1024][];
+    private int size;
+    private final BitSet live = new BitSet();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    
+    // Facet values by ordinal; counting is a single pass over the matching products
+    private final Map<Long, Integer> categoryOrdinals = new HashMap<>();
+    private final List<Long> categoryIds = new ArrayList<>();
+    private final Map<String, Integer> tagOrdinals = new HashMap<>();
+    private final List<String> tagNames = new ArrayList<>();
+    
+    private final AtomicReference<Uni<Void>> loading = new AtomicReference<>();
+    
+    private volatile boolean ready;
+    
+    // Bumped by every flush; a load started under an older generation stops adding rows
+    private volatile long generation;
+    
+    public Uni<Void> ensureLoaded() {
+        if (ready) {
+            return Uni.createFrom().voidItem();
+        }
+        Uni<Void> current = loading.get();
+        if (current == null) {
+            Uni<Void> candidate = loadFrom(0L, generation)
+                // A flush abandoned this load; wait for the one that replaced it
+                .chain(loaded -> loaded ? Uni.createFrom().voidItem() : ensureLoaded())
+                .onFailure().invoke(error -> loading.set(null))
+                .memoize().indefinitely();
+            current = loading.compareAndSet(null, candidate) ? candidate : loading.get();
+        }
+        return current;
+    }
+    
+    // True once the index is complete, false when a flush abandoned the load
+    private Uni<Boolean> loadFrom(Long afterId, long loadGeneration) {
+        return productRepository.findFacetDocuments(afterId, LOAD_BATCH_SIZE)
+            .chain(rows -> {
+                if (rows.isEmpty()) {
+                    return finish(loadGeneration);
+                }
+                Long firstId = (Long) rows.get(0)[0];
+                Long lastId = (Long) rows.get(rows.size() - 1)[0];
+                return productRepository.findTagNames(firstId, lastId)
+                    .chain(tagRows -> {
+                        Map<Long, List<String>> tagsByProduct = new HashMap<>();
+                        for (Object[] tagRow : tagRows) {
+                            tagsByProduct.computeIfAbsent(((Number) tagRow[0]).longValue(),
+                                id -> new ArrayList<>()).add((String) tagRow[1]);
+                        }
+                        lock.writeLock().lock();
+                        try {
+                            if (generation != loadGeneration) {
+                                return Uni.createFrom().item(false);
+                            }
+                            for (Object[] row : rows) {
+                                Long id = (Long) row[0];
+                                // Writes that raced ahead of the initial load are newer than this snapshot
+                                if (!ordinals.containsKey(id)) {
+                                    int ordinal = put(id, (BigDecimal) row[1], (Integer) row[2],
+                                        (Double) row[3], (Long) row[4]);
+                                    setTags(ordinal, tagsByProduct.getOrDefault(id, List.of()));
+                                }
+                            }
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                        if (rows.size() < LOAD_BATCH_SIZE) {
+                            return finish(loadGeneration);
+                        }
+                        return loadFrom(lastId, loadGeneration);
+                    });
+            });
+    }
+    
+    private Uni<Boolean> finish(long loadGeneration) {
+        lock.writeLock().lock();
+        try {
+            ready = generation == loadGeneration;
+            return Uni.createFrom().item(ready);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                Integer ordinal = ordinals.remove(event.getProductId());
+                if (ordinal != null) {
+                    clear(ordinal);
+                }
+                return;
+            }
+            Product product = event.getProduct();
+            int ordinal = put(product.getId(), product.getPrice(), product.getStockQuantity(),
+                product.getAverageRating(),
+                product.getCategory() != null ? product.getCategory().getId() : null);
+            if (event.getTags() != null) {
+                setTags(ordinal, event.getTags());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    void onCacheFlush(@Observes CacheFlushEvent event) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            size = 0;
+            live.clear();
+            ordinals.clear();
+            categoryOrdinals.clear();
+            categoryIds.clear();
+            tagOrdinals.clear();
+            tagNames.clear();
+            ready = false;
+            loading.set(null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public ProductFacetsDTO facets(ProductFilterDTO filter, long[] candidateIds, List<BigDecimal> priceBounds) {
+        long[] bounds = priceBounds.stream().sorted().mapToLong(ProductFacetIndex::toCents).toArray();
+        long minPrice = filter.getMinPrice() != null ? toCents(filter.getMinPrice()) : Long.MIN_VALUE;
+        long maxPrice = filter.getMaxPrice() != null ? toCents(filter.getMaxPrice()) : Long.MAX_VALUE;
+        double minRating = filter.getMinRating() != null ? filter.getMinRating() : Double.NEGATIVE_INFINITY;
+        boolean inStockOnly = Boolean.TRUE.equals(filter.getInStock());
+        
+        lock.readLock().lock();
+        try {
+            BitSet scope = (BitSet) live.clone();
+            if (candidateIds != null) {
+                BitSet matches = new BitSet(size);
+                for (long id : candidateIds) {
+                    Integer ordinal = ordinals.get(id);
+                    if (ordinal != null) {
+                        matches.set(ordinal);
+                    }
+                }
+                scope.and(matches);
+            }
+            
+            // Ordinals of the selected category, or of its whole subtree
+            BitSet categoryScope = null;
+            if (filter.getCategoryId() != null) {
+                categoryScope = new BitSet();
+                List<Long> selected = filter.getCategoryIds() != null
+                    ? filter.getCategoryIds() : List.of(filter.getCategoryId());
+                for (Long categoryId : selected) {
+                    Integer ordinal = categoryOrdinals.get(categoryId);
+                    if (ordinal != null) {
+                        categoryScope.set(ordinal);
+                    }
+                }
+            }
+            
+            long[] categoryCounts = new long[categoryIds.size()];
+            long[] priceCounts = new long[bounds.length];
+            long[] ratingCounts = new long[6];
+            long[] tagCounts = new long[tagNames.size()];
+            long total = 0;
+            long inStock = 0;
+            long outOfStock = 0;
+            
+            // Single pass; each dimension's counts ignore that dimension's own predicate
+            for (int ord = scope.nextSetBit(0); ord >= 0; ord = scope.nextSetBit(ord + 1)) {
+                boolean categoryOk = categoryScope == null
+                    || (categories[ord] != NO_CATEGORY && categoryScope.get(categories[ord]));
+                boolean priceOk = priceCents[ord] >= minPrice && priceCents[ord] <= maxPrice;
+                boolean ratingOk = minRating == Double.NEGATIVE_INFINITY
+                    || (!Float.isNaN(ratings[ord]) && ratings[ord] >= minRating);
+                boolean stockOk = !inStockOnly || stock[ord] > 0;
+                
+                if (priceOk && ratingOk && stockOk && categories[ord] != NO_CATEGORY) {
+                    categoryCounts[categories[ord]]++;
+                }
+                if (categoryOk && ratingOk && stockOk) {
+                    int bucket = bucketOf(bounds, priceCents[ord]);
+                    if (bucket >= 0) {
+                        priceCounts[bucket]++;
+                    }
+                }
+                if (categoryOk && priceOk && stockOk && !Float.isNaN(ratings[ord])) {
+                    ratingCounts[Math.min(5, (int) ratings[ord])]++;
+                }
+                if (categoryOk && priceOk && ratingOk) {
+                    if (stock[ord] > 0) {
+                        inStock++;
+                    } else {
+                        outOfStock++;
+                    }
+                }
+                if (categoryOk && priceOk && ratingOk && stockOk) {
+                    total++;
+                    for (int tag : tags[ord]) {
+                        tagCounts[tag]++;
+                    }
+                }
+            }
+            
+            ProductFacetsDTO result = new ProductFacetsDTO();
+            result.setTotalElements(total);
+            result.setInStock(inStock);
+            result.setOutOfStock(outOfStock);
+            
+            Map<Long, Long> categoryFacet = new LinkedHashMap<>();
+            for (int i = 0; i < categoryCounts.length; i++) {
+                if (categoryCounts[i] > 0) {
+                    categoryFacet.put(categoryIds.get(i), categoryCounts[i]);
+                }
+            }
+            result.setCategories(categoryFacet);
+            
+            List<ProductFacetsDTO.PriceBucket> priceFacet = new ArrayList<>();
+            for (int i = 0; i < bounds.length; i++) {
+                priceFacet.add(new ProductFacetsDTO.PriceBucket(
+                    fromCents(bounds[i]),
+                    i + 1 < bounds.length ? fromCents(bounds[i + 1]) : null,
+                    priceCounts[i]));
+            }
+            result.setPriceRanges(priceFacet);
+            
+            // "N stars & up" buckets
+            Map<Integer, Long> ratingFacet = new LinkedHashMap<>();
+            long atLeast = 0;
+            for (int stars = 5; stars >= 1; stars--) {
+                atLeast += ratingCounts[stars];
+                ratingFacet.put(stars, atLeast);
+            }
+            result.setRatings(ratingFacet);
+            
+            Map<String, Long> tagFacet = new LinkedHashMap<>();
+            for (int i = 0; i < tagCounts.length; i++) {
+                if (tagCounts[i] > 0) {
+                    tagFacet.put(tagNames.get(i), tagCounts[i]);
+                }
+            }
+            result.setTags(tagFacet);
+            
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private int put(Long id, BigDecimal price, Integer stockQuantity, Double averageRating, Long categoryId) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            ordinal = size++;
+            ensureCapacity(size);
+            ordinals.put(id, ordinal);
+            tags[ordinal] = NO_TAGS;
+        }
+        
+        ids[ordinal] = id;
+        priceCents[ordinal] = price != null ? toCents(price) : 0L;
+        stock[ordinal] = stockQuantity != null ? stockQuantity : 0;
+        ratings[ordinal] = averageRating != null ? averageRating.floatValue() : Float.NaN;
+        categories[ordinal] = categoryId != null ? categoryOrdinal(categoryId) : NO_CATEGORY;
+        live.set(ordinal);
+        return ordinal;
+    }
+    
+    private void setTags(int ordinal, Collection<String> names) {
+        int[] assigned = names.stream().distinct().mapToInt(this::tagOrdinal).toArray();
+        tags[ordinal] = assigned.length == 0 ? NO_TAGS : assigned;
+    }
+    
+    private void clear(int ordinal) {
+        live.clear(ordinal);
+        categories[ordinal] = NO_CATEGORY;
+        tags[ordinal] = NO_TAGS;
+    }
+    
+    private int categoryOrdinal(Long categoryId) {
+        return categoryOrdinals.computeIfAbsent(categoryId, id -> {
+            categoryIds.add(id);
+            return categoryIds.size() - 1;
+        });
+    }
+    
+    private int tagOrdinal(String name) {
+        return tagOrdinals.computeIfAbsent(name, n -> {
+            tagNames.add(n);
+            return tagNames.size() - 1;
+        });
+    }
+    
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        ratings = Arrays.copyOf(ratings, capacity);
+        stock = Arrays.copyOf(stock, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+    }
+    
+    private static int bucketOf(long[] bounds, long cents) {
+        int pos = Arrays.binarySearch(bounds, cents);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+    
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+    
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
\ No newline at end of file
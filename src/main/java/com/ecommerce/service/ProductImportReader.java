@@ -0,0 +1,153 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.ValidationException;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Splits an uploaded import file into raw records without interpreting them, so conversion and
+// validation can run in parallel. CSV records may span lines inside quoted fields.
+final class ProductImportReader implements Closeable {
+    
+    private final BufferedReader reader;
+    private final ProductExportService.Format format;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private long line;
+    
+    ProductImportReader(Path file, ProductExportService.Format format) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.format = format;
+        if (format == ProductExportService.Format.CSV) {
+            try {
+                readHeader();
+            } catch (ValidationException | IOException e) {
+                reader.close();
+                throw e;
+            }
+        }
+    }
+    
+    private void readHeader() throws IOException {
+        Record header = nextCsv();
+        if (header == null || header.fields == null) {
+            throw new ValidationException("CSV import file has no header row");
+        }
+        for (int i = 0; i < header.fields.size(); i++) {
+            columns.put(header.fields.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("price")
+                || !columns.containsKey("stock_quantity")) {
+            throw new ValidationException("CSV header must include name, price and stock_quantity");
+        }
+    }
+    
+    Map<String, Integer> columns() {
+        return columns;
+    }
+    
+    // Up to max records; fewer only at the end of the file
+    List<Record> next(int max) throws IOException {
+        List<Record> records = new ArrayList<>(max);
+        while (records.size() < max) {
+            Record record = format == ProductExportService.Format.CSV ? nextCsv() : nextLine();
+            if (record == null) {
+                break;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+    
+    private Record nextLine() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (!text.isBlank()) {
+                return new Record(line, text, null);
+            }
+        }
+        return null;
+    }
+    
+    private Record nextCsv() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            line++;
+        } while (text.isBlank());
+        
+        long start = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == text.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // Newline inside a quoted field
+                String continuation = reader.readLine();
+                if (continuation == null) {
+                    return new Record(start, null, null);
+                }
+                line++;
+                field.append('\n');
+                text = continuation;
+                i = 0;
+                continue;
+            }
+            char c = text.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < text.length() && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return new Record(start, null, fields);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    // One NDJSON line or CSV row; both null when a quoted CSV field is never closed
+    static final class Record {
+        final long line;
+        final String json;
+        final List<String> fields;
+        
+        Record(long line, String json, List<String> fields) {
+            this.line = line;
+            this.json = json;
+            this.fields = fields;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,602 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductDTO;
+import com.ecommerce.domain.dto.ProductImportResultDTO;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.model.Category;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.model.ProductImage;
+import com.ecommerce.domain.model.Tag;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.TagExpression;
+import com.ecommerce.domain.repository.TagRepository;
+import com.ecommerce.exception.ValidationException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.unchecked.Unchecked;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.reactive.mutiny.Mutiny;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Bulk product upsert from an uploaded CSV or NDJSON file. The file is consumed one batch at a time:
+// records are read and validated on a worker thread in parallel, then each batch is written in its
+// own transaction. Rows with an id update that product; rows without one are created. Image URLs
+// outside the bucket are fetched and stored there first, a bounded number at a time across the batch;
+// a row whose image cannot be fetched fails on its own. Only hosts that resolve to public addresses
+// are fetched, checked again on every redirect, and a body is dropped as soon as it passes the size cap.
+// Images stored for a batch that then rolls back stay in the bucket and are reused when the row is
+// imported again.
+@ApplicationScoped
+public class ProductImportService {
+    
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_IMAGE_BYTES = 10 * 1024 * 1024;
+    private static final int MAX_IMAGE_REDIRECTS = 3;
+    private static final Duration IMAGE_TIMEOUT = Duration.ofSeconds(30);
+    
+    // Redirects are followed by fetch() so that every hop's host is checked
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(10))
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .build();
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    TagRepository tagRepository;
+    
+    @Inject
+    CategoryTree categoryTree;
+    
+    @Inject
+    StockReservationService stockReservationService;
+    
+    @Inject
+    ImageStorageService imageStorageService;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @Inject
+    Validator validator;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    @ConfigProperty(name = "app.import.batch-size", defaultValue = "500")
+    int batchSize;
+    
+    @ConfigProperty(name = "app.import.image-concurrency", defaultValue = "8")
+    int imageConcurrency;
+    
+    public static ProductExportService.Format detectFormat(String format, String fileName) {
+        if (format != null && !format.isBlank()) {
+            return ProductExportService.Format.parse(format);
+        }
+        return fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".csv")
+            ? ProductExportService.Format.CSV : ProductExportService.Format.NDJSON;
+    }
+    
+    public Uni<ProductImportResultDTO> importFile(Path file, ProductExportService.Format format) {
+        long started = System.nanoTime();
+        ProductImportResultDTO result = new ProductImportResultDTO();
+        
+        // Tag name -> id, loaded once and extended as batches create new tags
+        Map<String, Long> tagIds = new ConcurrentHashMap<>();
+        
+        return categoryTree.ensureLoaded()
+            .chain(() -> tagRepository.findAllNames())
+            .invoke(rows -> rows.forEach(row -> tagIds.put((String) row[1], (Long) row[0])))
+            .chain(() -> vertx.executeBlocking(Uni.createFrom().item(
+                Unchecked.supplier(() -> new ProductImportReader(file, format)))))
+            .chain(reader -> Multi.createBy().repeating()
+                .uni(() -> reader, r -> vertx.executeBlocking(Uni.createFrom().item(
+                    Unchecked.supplier(() -> parse(r.next(batchSize), r.columns())))))
+                .whilst(rows -> rows.size() == batchSize)
+                .onItem().transformToUniAndConcatenate(rows -> write(rows, tagIds, result))
+                .collect().last()
+                .eventually(() -> vertx.executeBlocking(Uni.createFrom().item(
+                    Unchecked.supplier(() -> {
+                        reader.close();
+                        return true;
+                    })))))
+            .map(v -> {
+                long elapsed = (System.nanoTime() - started) / 1_000_000;
+                result.setElapsedMillis(elapsed);
+                result.setRowsPerMinute(elapsed == 0 ? result.getRows() : result.getRows() * 60_000 / elapsed);
+                return result;
+            });
+    }
+    
+    // Runs on a worker thread; records are independent, so conversion and validation fan out
+    private List<ImportRow> parse(List<ProductImportReader.Record> records, Map<String, Integer> columns) {
+        return records.parallelStream()
+            .map(record -> toRow(record, columns))
+            .collect(Collectors.toList());
+    }
+    
+    private ImportRow toRow(ProductImportReader.Record record, Map<String, Integer> columns) {
+        try {
+            ProductDTO product;
+            if (record.json != null) {
+                product = objectMapper.readValue(record.json, ProductDTO.class);
+            } else if (record.fields != null) {
+                product = fromCsv(record.fields, columns);
+            } else {
+                return ImportRow.failed(record.line, "Unterminated quoted field");
+            }
+            
+            Set<ConstraintViolation<ProductDTO>> violations = validator.validate(product);
+            if (!violations.isEmpty()) {
+                return ImportRow.failed(record.line, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            }
+            if (product.getCategoryId() != null && !categoryTree.contains(product.getCategoryId())) {
+                return ImportRow.failed(record.line, "Category not found: " + product.getCategoryId());
+            }
+            return new ImportRow(record.line, product, ProductService.normalizeTags(product.getTags()), null);
+        } catch (JsonProcessingException e) {
+            return ImportRow.failed(record.line, "Malformed JSON: " + e.getOriginalMessage());
+        } catch (ValidationException e) {
+            return ImportRow.failed(record.line, e.getMessage());
+        }
+    }
+    
+    private static ProductDTO fromCsv(List<String> fields, Map<String, Integer> columns) {
+        ProductDTO product = new ProductDTO();
+        String id = field(fields, columns, "id");
+        product.setId(id != null ? parse(id, "id", Long::valueOf) : null);
+        product.setName(field(fields, columns, "name"));
+        product.setDescription(field(fields, columns, "description"));
+        String price = field(fields, columns, "price");
+        product.setPrice(price != null ? parse(price, "price", BigDecimal::new) : null);
+        String stock = field(fields, columns, "stock_quantity");
+        product.setStockQuantity(stock != null ? parse(stock, "stock_quantity", Integer::valueOf) : null);
+        String category = field(fields, columns, "category_id");
+        product.setCategoryId(category != null ? parse(category, "category_id", Long::valueOf) : null);
+        String tags = field(fields, columns, "tags");
+        if (tags != null) {
+            product.setTags(split(tags));
+        }
+        String images = field(fields, columns, columns.containsKey("image_urls") ? "image_urls" : "image_url");
+        if (images != null) {
+            product.setImageUrls(split(images));
+        }
+        String active = field(fields, columns, "active");
+        product.setActive(active != null ? Boolean.valueOf(active) : null);
+        return product;
+    }
+    
+    // Trimmed value of the column; null when the column is absent or the cell is empty
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+    
+    private static <T> T parse(String value, String column, Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Invalid " + column + ": " + value);
+        }
+    }
+    
+    // Multi-valued cells are separated by '|'
+    private static Set<String> split(String value) {
+        return Arrays.stream(value.split("\\|"))
+            .map(String::trim)
+            .filter(item -> !item.isEmpty())
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+    
+    private Uni<Void> write(List<ImportRow> rows, Map<String, Long> tagIds, ProductImportResultDTO result) {
+        result.setRows(result.getRows() + rows.size());
+        List<ImportRow> valid = new ArrayList<>();
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                fail(result, row.line, row.error);
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return ingestImages(valid)
+            .chain(() -> {
+                List<ImportRow> ready = new ArrayList<>();
+                for (ImportRow row : valid) {
+                    if (row.error != null) {
+                        fail(result, row.line, row.error);
+                    } else {
+                        ready.add(row);
+                    }
+                }
+                return ready.isEmpty() ? Uni.createFrom().voidItem() : store(ready, tagIds, result);
+            });
+    }
+    
+    private Uni<Void> store(List<ImportRow> valid, Map<String, Long> tagIds, ProductImportResultDTO result) {
+        Map<String, Long> createdTags = new HashMap<>();
+        return productRepository.withBatchTransaction(batchSize, session -> createMissingTags(
+                session, valid, tagIds, createdTags)
+                .chain(() -> upsert(session, valid, tagIds, createdTags)))
+            .invoke(saved -> {
+                tagIds.putAll(createdTags);
+                for (ImportRow row : valid) {
+                    if (row.error != null) {
+                        fail(result, row.line, row.error);
+                    } else if (row.product.getId() != null) {
+                        result.setUpdated(result.getUpdated() + 1);
+                    } else {
+                        result.setCreated(result.getCreated() + 1);
+                    }
+                }
+                // Indexes and caches pick the batch up the same way as single writes
+                saved.forEach(entry -> productChanged.fire(new ProductChangedEvent(entry.getKey(), entry.getValue())));
+            })
+            .onFailure().recoverWithItem(error -> {
+                String message = "Batch rolled back: " + error.getMessage();
+                valid.forEach(row -> fail(result, row.line, message));
+                return List.of();
+            })
+            // Imported stock levels replace the sellable stock held in reservation shards
+            .call(saved -> stockReservationService.rebalance(saved.stream()
+                    .map(entry -> entry.getKey().getId())
+                    .collect(Collectors.toList()))
+                .onFailure().invoke(error ->
+                    System.err.println("Failed to rebalance imported stock: " + error.getMessage()))
+                .onFailure().recoverWithNull())
+            .replaceWithVoid();
+    }
+    
+    // Each distinct URL of the batch is fetched once; rows then point at the stored copies
+    private Uni<Void> ingestImages(List<ImportRow> rows) {
+        Set<String> sources = rows.stream()
+            .filter(row -> row.product.getImageUrls() != null)
+            .flatMap(row -> row.product.getImageUrls().stream())
+            .filter(url -> !imageStorageService.isStored(url))
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (sources.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        Map<String, String> stored = new ConcurrentHashMap<>();
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        return Multi.createFrom().iterable(sources)
+            .onItem().transformToUni(source -> ingestImage(source)
+                .invoke(url -> stored.put(source, url))
+                .replaceWith(true)
+                .onFailure().recoverWithItem(error -> {
+                    failures.put(source, String.valueOf(error.getMessage()));
+                    return false;
+                }))
+            .merge(imageConcurrency)
+            .collect().last()
+            .invoke(() -> {
+                for (ImportRow row : rows) {
+                    if (row.product.getImageUrls() == null) {
+                        continue;
+                    }
+                    Set<String> urls = new LinkedHashSet<>();
+                    for (String url : row.product.getImageUrls()) {
+                        if (failures.containsKey(url)) {
+                            row.error = "Image " + url + " could not be stored: " + failures.get(url);
+                            break;
+                        }
+                        urls.add(stored.getOrDefault(url, url));
+                    }
+                    row.product.setImageUrls(urls);
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    private Uni<String> ingestImage(String source) {
+        URI uri;
+        try {
+            uri = URI.create(source);
+        } catch (IllegalArgumentException e) {
+            return Uni.createFrom().failure(new ValidationException("Invalid URL"));
+        }
+        return fetch(uri, 0)
+            .chain(response -> {
+                String contentType = response.headers().firstValue("Content-Type").orElse("");
+                if (response.statusCode() != 200) {
+                    return Uni.createFrom().failure(new IllegalStateException("HTTP " + response.statusCode()));
+                }
+                if (!contentType.startsWith("image/")) {
+                    return Uni.createFrom().failure(new IllegalStateException("Not an image: " + contentType));
+                }
+                if (response.body() == null) {
+                    return Uni.createFrom().failure(tooLarge());
+                }
+                // The S3 client blocks
+                return vertx.executeBlocking(
+                    imageStorageService.storeImportedImage(source, response.body(), contentType));
+            });
+    }
+    
+    private Uni<HttpResponse<byte[]>> fetch(URI uri, int redirects) {
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            return Uni.createFrom().failure(new ValidationException("Only http and https URLs are fetched"));
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(IMAGE_TIMEOUT).GET().build();
+        // Name resolution blocks
+        return vertx.executeBlocking(Uni.createFrom().item(Unchecked.supplier(() -> {
+                requirePublicHost(uri);
+                return uri;
+            })))
+            .chain(() -> Uni.createFrom().completionStage(() ->
+                httpClient.sendAsync(request, ProductImportService::imageBody)))
+            .chain(response -> {
+                int status = response.statusCode();
+                if (status != 301 && status != 302 && status != 303 && status != 307 && status != 308) {
+                    return Uni.createFrom().item(response);
+                }
+                Optional<String> location = response.headers().firstValue("Location");
+                if (location.isEmpty()) {
+                    return Uni.createFrom().failure(new IllegalStateException("HTTP " + status + " without Location"));
+                }
+                if (redirects == MAX_IMAGE_REDIRECTS) {
+                    return Uni.createFrom().failure(new IllegalStateException("Too many redirects"));
+                }
+                URI next;
+                try {
+                    next = uri.resolve(location.get());
+                } catch (IllegalArgumentException e) {
+                    return Uni.createFrom().failure(new IllegalStateException("Invalid redirect: " + location.get()));
+                }
+                return fetch(next, redirects + 1);
+            });
+    }
+    
+    // Keeps imports from reaching loopback, private, link-local (cloud metadata) or multicast addresses
+    private static void requirePublicHost(URI uri) throws UnknownHostException {
+        String host = uri.getHost();
+        if (host == null) {
+            throw new ValidationException("Invalid URL");
+        }
+        for (InetAddress address : InetAddress.getAllByName(host)) {
+            byte[] bytes = address.getAddress();
+            boolean uniqueLocal = address instanceof Inet6Address && (bytes[0] & 0xfe) == 0xfc;
+            boolean sharedSpace = bytes.length == 4 && (bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64;
+            if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                    || address.isSiteLocalAddress() || address.isMulticastAddress() || uniqueLocal || sharedSpace) {
+                throw new ValidationException("Host " + host + " is not a public address");
+            }
+        }
+    }
+    
+    // Only a 200 image response is read, and at most MAX_IMAGE_BYTES of it; anything else is discarded.
+    // A body over the cap (declared or actual) comes back as null.
+    private static HttpResponse.BodySubscriber<byte[]> imageBody(HttpResponse.ResponseInfo info) {
+        if (info.statusCode() != 200
+                || !info.headers().firstValue("Content-Type").orElse("").startsWith("image/")
+                || info.headers().firstValueAsLong("Content-Length").orElse(0L) > MAX_IMAGE_BYTES) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        return new CappedBody();
+    }
+    
+    private static IllegalStateException tooLarge() {
+        return new IllegalStateException("Larger than " + MAX_IMAGE_BYTES / (1024 * 1024) + " MB");
+    }
+    
+    private Uni<Void> createMissingTags(Mutiny.Session session, List<ImportRow> rows,
+            Map<String, Long> tagIds, Map<String, Long> createdTags) {
+        List<Tag> missing = rows.stream()
+            .filter(row -> row.tags != null)
+            .flatMap(row -> row.tags.stream())
+            .filter(name -> !tagIds.containsKey(name))
+            .distinct()
+            .map(name -> {
+                Tag tag = new Tag();
+                tag.setName(name);
+                return tag;
+            })
+            .collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return session.persistAll(missing.toArray())
+            .chain(session::flush)
+            .invoke(() -> missing.forEach(tag -> createdTags.put(tag.getName(), tag.getId())));
+    }
+    
+    private Uni<List<Map.Entry<Product, Set<String>>>> upsert(Mutiny.Session session, List<ImportRow> rows,
+            Map<String, Long> tagIds, Map<String, Long> createdTags) {
+        Object[] productIds = rows.stream()
+            .map(row -> row.product.getId())
+            .filter(Objects::nonNull)
+            .distinct()
+            .toArray();
+        Object[] referencedTags = rows.stream()
+            .filter(row -> row.tags != null)
+            .flatMap(row -> row.tags.stream())
+            .distinct()
+            .map(name -> createdTags.getOrDefault(name, tagIds.get(name)))
+            .toArray();
+        
+        Uni<List<Product>> existing = productIds.length == 0
+            ? Uni.createFrom().item(List.of()) : session.find(Product.class, productIds);
+        Uni<List<Tag>> tags = referencedTags.length == 0
+            ? Uni.createFrom().item(List.of()) : session.find(Tag.class, referencedTags);
+        Uni<List<Object[]>> images = productIds.length == 0
+            ? Uni.createFrom().item(List.of())
+            : session.createQuery("select i.product.id, i.imageUrl from ProductImage i where i.product.id in ?1",
+                    Object[].class)
+                .setParameter(1, Arrays.asList(productIds))
+                .getResultList();
+        
+        return existing.chain(products -> tags.chain(tagList -> images.chain(imageRows -> {
+            Map<Long, Product> byId = new HashMap<>();
+            products.stream().filter(Objects::nonNull).forEach(product -> byId.put(product.getId(), product));
+            Map<String, Tag> tagsByName = new HashMap<>();
+            tagList.stream().filter(Objects::nonNull)
+                .forEach(tag -> tagsByName.put(TagExpression.normalize(tag.getName()), tag));
+            Map<Long, Set<String>> imageUrls = new HashMap<>();
+            for (Object[] imageRow : imageRows) {
+                imageUrls.computeIfAbsent((Long) imageRow[0], id -> new HashSet<>()).add((String) imageRow[1]);
+            }
+            
+            List<Product> created = new ArrayList<>();
+            List<ProductImage> newImages = new ArrayList<>();
+            List<Map.Entry<Product, Set<String>>> saved = new ArrayList<>();
+            for (ImportRow row : rows) {
+                ProductDTO dto = row.product;
+                Product product;
+                if (dto.getId() != null) {
+                    product = byId.get(dto.getId());
+                    if (product == null) {
+                        row.error = "Product not found: " + dto.getId();
+                        continue;
+                    }
+                } else {
+                    product = new Product();
+                    created.add(product);
+                }
+                ProductService.updateProductFromDto(product, dto);
+                product.setCategory(dto.getCategoryId() != null
+                    ? session.getReference(Category.class, dto.getCategoryId()) : null);
+                // Omitted tags leave the current assignment untouched, as with single updates
+                if (row.tags != null) {
+                    product.setTags(row.tags.stream()
+                        .map(tagsByName::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet()));
+                }
+                if (dto.getImageUrls() != null) {
+                    Set<String> known = dto.getId() != null
+                        ? imageUrls.computeIfAbsent(dto.getId(), id -> new HashSet<>()) : new HashSet<>();
+                    boolean cover = known.isEmpty();
+                    for (String url : dto.getImageUrls()) {
+                        if (known.add(url)) {
+                            ProductImage image = new ProductImage();
+                            image.setProduct(product);
+                            image.setImageUrl(url);
+                            image.setIsCover(cover);
+                            cover = false;
+                            newImages.add(image);
+                        }
+                    }
+                }
+                // A new product's event always carries its tags; an update's only when they were given
+                saved.add(new AbstractMap.SimpleEntry<>(product,
+                    row.tags != null || dto.getId() != null ? row.tags : Set.of()));
+            }
+            // Images are persisted on their own rather than through Product.images, so no product
+            // entity ends up hashed into a set while its collections are still changing
+            return session.persistAll(created.toArray())
+                .chain(() -> session.persistAll(newImages.toArray()))
+                .replaceWith(saved);
+        })));
+    }
+    
+    private static void fail(ProductImportResultDTO result, long line, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ProductImportResultDTO.RowError(line, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+    
+    // Collects a body until it passes MAX_IMAGE_BYTES, then cancels the download
+    private static final class CappedBody implements HttpResponse.BodySubscriber<byte[]> {
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private Flow.Subscription subscription;
+        
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+        
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                if (body.isDone()) {
+                    return;
+                }
+                if (buffer.size() + item.remaining() > MAX_IMAGE_BYTES) {
+                    subscription.cancel();
+                    body.complete(null);
+                    return;
+                }
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                buffer.write(bytes, 0, bytes.length);
+            }
+        }
+        
+        @Override
+        public void onError(Throwable error) {
+            body.completeExceptionally(error);
+        }
+        
+        @Override
+        public void onComplete() {
+            body.complete(buffer.toByteArray());
+        }
+    }
+    
+    private static final class ImportRow {
+        private final long line;
+        private final ProductDTO product;
+        private final Set<String> tags;
+        private String error;
+        
+        ImportRow(long line, ProductDTO product, Set<String> tags, String error) {
+            this.line = line;
+            this.product = product;
+            this.tags = tags;
+            this.error = error;
+        }
+        
+        static ImportRow failed(long line, String error) {
+            return new ImportRow(line, null, null, error);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,285 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.repository.ProductRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+@ApplicationScoped
+public class ProductSearchIndex {
+    
+    public static final int MAX_CANDIDATES = 10_000;
+    
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int LOAD_BATCH_SIZE = 5_000;
+    private static final long[] EMPTY = new long[0];
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    // term -> sorted product ids; arrays are never mutated once published
+    private final ConcurrentSkipListMap<String, long[]> postings = new ConcurrentSkipListMap<>();
+    
+    // product id -> terms currently indexed for it, used to diff on update
+    private final ConcurrentHashMap<Long, String[]> documents = new ConcurrentHashMap<>();
+    
+    private final AtomicReference<Uni<Void>> loading = new AtomicReference<>();
+    
+    private volatile boolean ready;
+    
+    // Bumped by every flush; a load started under an older generation stops adding rows
+    private volatile long generation;
+    
+    public Uni<Void> ensureLoaded() {
+        if (ready) {
+            return Uni.createFrom().voidItem();
+        }
+        Uni<Void> current = loading.get();
+        if (current == null) {
+            Uni<Void> candidate = loadFrom(0L, generation)
+                // A flush abandoned this load; wait for the one that replaced it
+                .chain(loaded -> loaded ? Uni.createFrom().voidItem() : ensureLoaded())
+                .onFailure().invoke(error -> loading.set(null))
+                .memoize().indefinitely();
+            current = loading.compareAndSet(null, candidate) ? candidate : loading.get();
+        }
+        return current;
+    }
+    
+    // True once the index is complete, false when a flush abandoned the load
+    private Uni<Boolean> loadFrom(Long afterId, long loadGeneration) {
+        return productRepository.findSearchDocuments(afterId, LOAD_BATCH_SIZE)
+            .chain(rows -> {
+                Long lastId = afterId;
+                synchronized (this) {
+                    if (generation != loadGeneration) {
+                        return Uni.createFrom().item(false);
+                    }
+                    for (Object[] row : rows) {
+                        lastId = (Long) row[0];
+                        // Writes that raced ahead of the initial load are newer than this snapshot
+                        if (!documents.containsKey(lastId)) {
+                            index(lastId, (String) row[1], (String) row[2]);
+                        }
+                    }
+                    if (rows.size() < LOAD_BATCH_SIZE) {
+                        ready = true;
+                        return Uni.createFrom().item(true);
+                    }
+                }
+                return loadFrom(lastId, loadGeneration);
+            });
+    }
+    
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            index(event.getProduct());
+        }
+    }
+    
+    void onCacheFlush(@Observes CacheFlushEvent event) {
+        synchronized (this) {
+            generation++;
+            postings.clear();
+            documents.clear();
+            ready = false;
+            loading.set(null);
+        }
+    }
+    
+    public void index(Product product) {
+        index(product.getId(), product.getName(), product.getDescription());
+    }
+    
+    public synchronized void index(Long productId, String name, String description) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(name));
+        terms.addAll(tokenize(description));
+        String[] newTerms = terms.toArray(new String[0]);
+        String[] oldTerms = documents.put(productId, newTerms);
+        
+        Set<String> previous = oldTerms != null ? Set.of(oldTerms) : Set.of();
+        for (String term : previous) {
+            if (!terms.contains(term)) {
+                postings.computeIfPresent(term, (t, ids) -> without(ids, productId));
+            }
+        }
+        for (String term : newTerms) {
+            if (!previous.contains(term)) {
+                postings.compute(term, (t, ids) -> with(ids, productId));
+            }
+        }
+    }
+    
+    public synchronized void remove(Long productId) {
+        String[] oldTerms = documents.remove(productId);
+        if (oldTerms == null) {
+            return;
+        }
+        for (String term : oldTerms) {
+            postings.computeIfPresent(term, (t, ids) -> without(ids, productId));
+        }
+    }
+    
+    // Sorted ids matching every query token, or null when nothing in the query is indexable.
+    // The last token matches as a prefix; tokens without hits fall back to fuzzy matching.
+    public long[] search(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        
+        long[] result = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            long[] matches = i == tokens.size() - 1 ? prefixMatches(token) : exactMatches(token);
+            if (matches.length == 0 && token.length() >= MIN_FUZZY_LENGTH) {
+                matches = fuzzyMatches(token);
+            }
+            result = result == null ? matches : intersect(result, matches);
+            if (result.length == 0) {
+                return EMPTY;
+            }
+        }
+        return result;
+    }
+    
+    private long[] exactMatches(String token) {
+        return postings.getOrDefault(token, EMPTY);
+    }
+    
+    private long[] prefixMatches(String prefix) {
+        return union(postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values());
+    }
+    
+    private long[] fuzzyMatches(String token) {
+        int maxEdits = token.length() >= 8 ? 2 : 1;
+        String first = token.substring(0, 1);
+        List<long[]> matches = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry
+                : postings.subMap(first, true, first + Character.MAX_VALUE, true).entrySet()) {
+            String term = entry.getKey();
+            if (Math.abs(term.length() - token.length()) <= maxEdits
+                    && editDistance(token, term, maxEdits) <= maxEdits) {
+                matches.add(entry.getValue());
+            }
+        }
+        return union(matches);
+    }
+    
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+            .replaceAll("")
+            .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (token.length() >= MIN_TOKEN_LENGTH && !tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+    
+    private static long[] with(long[] ids, long id) {
+        if (ids == null) {
+            return new long[] { id };
+        }
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            return ids;
+        }
+        int insertAt = -pos - 1;
+        long[] copy = new long[ids.length + 1];
+        System.arraycopy(ids, 0, copy, 0, insertAt);
+        copy[insertAt] = id;
+        System.arraycopy(ids, insertAt, copy, insertAt + 1, ids.length - insertAt);
+        return copy;
+    }
+    
+    private static long[] without(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] copy = new long[ids.length - 1];
+        System.arraycopy(ids, 0, copy, 0, pos);
+        System.arraycopy(ids, pos + 1, copy, pos, ids.length - pos - 1);
+        return copy;
+    }
+    
+    private static long[] union(Collection<long[]> lists) {
+        if (lists.isEmpty()) {
+            return EMPTY;
+        }
+        if (lists.size() == 1) {
+            return lists.iterator().next();
+        }
+        return lists.stream()
+            .flatMapToLong(LongStream::of)
+            .sorted()
+            .distinct()
+            .toArray();
+    }
+    
+    private static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+    
+    private static int editDistance(String a, String b, int limit) {
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            int rowMin = curr[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (rowMin > limit) {
+                return rowMin;
+            }
+            int[] swap = prev;
+            prev = curr;
+            curr = swap;
+        }
+        return prev[b.length()];
+    }
+}
\ No newline at end of file
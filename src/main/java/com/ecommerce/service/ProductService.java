@@ -1,96 +1,500 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.dto.CacheStatsDTO;
 import com.ecommerce.domain.dto.PageDTO;
 import com.ecommerce.domain.dto.ProductDTO;
+import com.ecommerce.domain.dto.ProductDetailDTO;
+import com.ecommerce.domain.dto.ProductFacetsDTO;
 import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.model.Category;
 import com.ecommerce.domain.model.Product;
 import com.ecommerce.domain.model.ProductImage;
+import com.ecommerce.domain.model.Tag;
+import com.ecommerce.domain.repository.CategoryRepository;
+import com.ecommerce.domain.repository.ProductCandidates;
+import com.ecommerce.domain.repository.ProductCursor;
 import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.TagExpression;
+import com.ecommerce.domain.repository.TagRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.exception.ValidationException;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class ProductService {
     
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    
     @Inject
     ProductRepository productRepository;
     
+    @Inject
+    CategoryRepository categoryRepository;
+    
+    @Inject
+    TagRepository tagRepository;
+    
     @Inject
     ImageStorageService imageStorageService;
     
-    // Previous methods remain unchanged
+    @Inject
+    ProductSearchIndex searchIndex;
+    
+    @Inject
+    ProductFacetIndex facetIndex;
     
-    @Transactional
-    public Uni<ProductImage> addProductImage(Long productId, String imageUrl, Boolean isCover) {
-        return productRepository.findById(productId)
+    @Inject
+    ProductTagIndex tagIndex;
+    
+    @Inject
+    ProductDetailCache detailCache;
+    
+    @Inject
+    CategoryTree categoryTree;
+    
+    @Inject
+    StockReservationService stockReservationService;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    @ConfigProperty(name = "app.facets.price-buckets", defaultValue = "0,25,50,100,250,500")
+    List<BigDecimal> defaultPriceBuckets;
+    
+    public Uni<PageDTO<Product>> getFilteredProducts(ProductFilterDTO filter) {
+        if (filter.getPage() == null || filter.getPage() < 0) {
+            filter.setPage(0);
+        }
+        if (filter.getSize() == null || filter.getSize() <= 0) {
+            filter.setSize(DEFAULT_PAGE_SIZE);
+        }
+        
+        TagExpression tagExpression = TagExpression.of(filter.getTags(), filter.getTagQuery());
+        
+        return resolveCategoryScope(filter)
+            .chain(() -> resolveCandidates(filter, tagExpression))
+            .chain(candidates -> {
+                if (candidates != null && candidates.isEmpty()) {
+                    return Uni.createFrom().item(filter.getCursor() != null
+                        ? new PageDTO<>(List.of(), filter.getSize(), false, false, null)
+                        : new PageDTO<>(List.of(), 0, filter.getPage(), filter.getSize()));
+                }
+                return fetchPage(filter, candidates);
+            });
+    }
+    
+    // Expands the category filter to the category's subtree, a contiguous range of the tree's pre-order
+    private Uni<Void> resolveCategoryScope(ProductFilterDTO filter) {
+        if (filter.getCategoryId() == null || !Boolean.TRUE.equals(filter.getIncludeSubcategories())) {
+            return Uni.createFrom().voidItem();
+        }
+        return categoryTree.ensureLoaded()
+            .invoke(() -> filter.setCategoryIds(categoryTree.subtreeIds(filter.getCategoryId())));
+    }
+    
+    // Narrows the page query to ids resolved from the in-memory search and tag indexes
+    private Uni<ProductCandidates> resolveCandidates(ProductFilterDTO filter, TagExpression tagExpression) {
+        boolean hasSearch = filter.getSearchTerm() != null && !filter.getSearchTerm().isBlank();
+        if (!hasSearch && tagExpression == null) {
+            return Uni.createFrom().nullItem();
+        }
+        
+        Uni<long[]> searchMatches = hasSearch
+            ? searchIndex.ensureLoaded().map(v -> searchIndex.search(filter.getSearchTerm()))
+            : Uni.createFrom().nullItem();
+        
+        if (tagExpression == null) {
+            return searchMatches.map(matches -> {
+                // Nothing indexable, or too broad for an id list: let the database match
+                if (matches == null || matches.length > ProductSearchIndex.MAX_CANDIDATES) {
+                    return null;
+                }
+                return ProductCandidates.including(Arrays.stream(matches).boxed().toList(), true);
+            });
+        }
+        
+        return tagIndex.ensureLoaded()
+            .chain(() -> searchMatches)
+            .map(search -> {
+                CompressedBitmap matches = tagIndex.evaluate(tagExpression);
+                if (search != null) {
+                    matches = matches.and(CompressedBitmap.of(search));
+                }
+                if (matches.cardinality() <= ProductSearchIndex.MAX_CANDIDATES) {
+                    return ProductCandidates.including(boxed(matches), search != null);
+                }
+                CompressedBitmap excluded = tagIndex.complement(matches);
+                if (excluded.cardinality() <= ProductSearchIndex.MAX_CANDIDATES) {
+                    return ProductCandidates.excluding(boxed(excluded), tagIndex.maxKnownId(), search != null);
+                }
+                // Neither side is small enough to bind; the database evaluates the expression itself
+                return ProductCandidates.matching(tagExpression);
+            });
+    }
+    
+    private static List<Long> boxed(CompressedBitmap ids) {
+        return Arrays.stream(ids.toArray()).boxed().toList();
+    }
+    
+    private Uni<PageDTO<Product>> fetchPage(ProductFilterDTO filter, ProductCandidates candidates) {
+        if (filter.getCursor() != null) {
+            return fetchKeysetPage(filter, candidates);
+        }
+        return Uni.combine().all().unis(
+            productRepository.findFiltered(filter, candidates),
+            productRepository.countFiltered(filter, candidates)
+        ).asTuple()
+        .map(tuple -> new PageDTO<>(
+            tuple.getItem1(), tuple.getItem2(), filter.getPage(), filter.getSize()));
+    }
+    
+    private Uni<PageDTO<Product>> fetchKeysetPage(ProductFilterDTO filter, ProductCandidates candidates) {
+        String sortKey = ProductCursor.sortKey(filter.getSortBy());
+        boolean descending = ProductCursor.isDescending(filter.getSortDirection());
+        ProductCursor after = ProductCursor.decode(filter.getCursor(), sortKey, descending);
+        int size = filter.getSize();
+        
+        return productRepository.findFilteredAfter(filter, candidates, after, size + 1)
+            .chain(products -> {
+                boolean hasNext = products.size() > size;
+                List<Product> content = hasNext ? products.subList(0, size) : products;
+                String nextCursor = hasNext
+                    ? ProductCursor.after(content.get(size - 1), sortKey, descending).encode()
+                    : null;
+                PageDTO<Product> page = new PageDTO<>(content, size, hasNext, after != null, nextCursor);
+                
+                if (!Boolean.TRUE.equals(filter.getEstimateTotal())) {
+                    return Uni.createFrom().item(page);
+                }
+                if (candidates != null && candidates.getIncludedIds() != null) {
+                    page.setEstimatedTotal((long) candidates.getIncludedIds().size());
+                    return Uni.createFrom().item(page);
+                }
+                if (!hasPredicates(filter)) {
+                    return productRepository.estimateCount()
+                        .map(estimate -> {
+                            page.setEstimatedTotal(estimate);
+                            return page;
+                        });
+                }
+                return Uni.createFrom().item(page);
+            });
+    }
+    
+    private boolean hasPredicates(ProductFilterDTO filter) {
+        return (filter.getSearchTerm() != null && !filter.getSearchTerm().isBlank())
+            || filter.getCategoryId() != null
+            || filter.getMinPrice() != null
+            || filter.getMaxPrice() != null
+            || filter.getMinRating() != null
+            || Boolean.TRUE.equals(filter.getInStock())
+            || (filter.getTags() != null && !filter.getTags().isEmpty())
+            || (filter.getTagQuery() != null && !filter.getTagQuery().isBlank());
+    }
+    
+    public Uni<ProductFacetsDTO> getFacets(ProductFilterDTO filter, List<BigDecimal> priceBuckets) {
+        TagExpression tagExpression = TagExpression.of(filter.getTags(), filter.getTagQuery());
+        Uni<long[]> searchMatches = filter.getSearchTerm() == null || filter.getSearchTerm().isBlank()
+            ? Uni.createFrom().nullItem()
+            : searchIndex.ensureLoaded()
+                .map(v -> searchIndex.search(filter.getSearchTerm()))
+                // Nothing indexable in the term: match it in the database, as the listing does
+                .chain(matches -> matches != null
+                    ? Uni.createFrom().item(matches)
+                    : productRepository.findIdsContaining(filter.getSearchTerm())
+                        .map(ids -> ids.stream().mapToLong(Long::longValue).toArray()));
+        Uni<long[]> candidates = tagExpression == null ? searchMatches : tagIndex.ensureLoaded()
+            .chain(() -> searchMatches)
+            .map(search -> {
+                CompressedBitmap matches = tagIndex.evaluate(tagExpression);
+                return (search != null ? matches.and(CompressedBitmap.of(search)) : matches).toArray();
+            });
+        
+        List<BigDecimal> bounds = priceBuckets != null && !priceBuckets.isEmpty()
+            ? priceBuckets : defaultPriceBuckets;
+        
+        return facetIndex.ensureLoaded()
+            .chain(() -> resolveCategoryScope(filter))
+            .chain(() -> candidates)
+            .map(candidateIds -> facetIndex.facets(filter, candidateIds, bounds));
+    }
+    
+    public Uni<Product> getProductById(Long id) {
+        return productRepository.findById(id)
+            .onItem().ifNull().failWith(() -> 
+                new ResourceNotFoundException("Product not found"));
+    }
+    
+    // Serialized detail view, read through the product cache
+    public Uni<byte[]> getProductDetail(Long id) {
+        byte[] cached = detailCache.get(id);
+        if (cached != null) {
+            return Uni.createFrom().item(cached);
+        }
+        long ticket = detailCache.ticket();
+        return productRepository.findDetailById(id)
             .onItem().ifNull().failWith(() -> 
                 new ResourceNotFoundException("Product not found"))
-            .chain(product -> {
+            .map(product -> detailCache.put(ticket, toDetail(product)));
+    }
+    
+    public CacheStatsDTO getDetailCacheStats() {
+        return detailCache.stats();
+    }
+    
+    private ProductDetailDTO toDetail(Product product) {
+        ProductDetailDTO detail = new ProductDetailDTO();
+        detail.setId(product.getId());
+        detail.setName(product.getName());
+        detail.setDescription(product.getDescription());
+        detail.setPrice(product.getPrice());
+        detail.setStockQuantity(product.getStockQuantity());
+        if (product.getCategory() != null) {
+            detail.setCategoryId(product.getCategory().getId());
+            detail.setCategoryName(product.getCategory().getName());
+        }
+        detail.setImages(product.getImages().stream()
+            .sorted(Comparator.comparing(ProductImage::getId))
+            .map(image -> new ProductDetailDTO.Image(image.getId(), image.getImageUrl(), image.getIsCover()))
+            .collect(Collectors.toList()));
+        detail.setTags(product.getTags().stream()
+            .map(Tag::getName)
+            .collect(Collectors.toCollection(TreeSet::new)));
+        detail.setAverageRating(product.getAverageRating());
+        detail.setActive(product.getActive());
+        detail.setVersion(product.getVersion());
+        detail.setCreatedAt(product.getCreatedAt());
+        detail.setUpdatedAt(product.getUpdatedAt());
+        return detail;
+    }
+    
+    // Writes run in a reactive transaction of their own, since Hibernate Reactive does not join a JTA one,
+    // and announce the change only after it has committed: caches and indexes never see a rolled-back write
+    public Uni<Product> createProduct(ProductDTO productDTO) {
+        Product product = new Product();
+        updateProductFromDto(product, productDTO);
+        
+        if (productDTO.getImageUrls() != null) {
+            productDTO.getImageUrls().forEach(url -> {
                 ProductImage image = new ProductImage();
                 image.setProduct(product);
-                image.setImageUrl(imageUrl);
-                image.setIsCover(isCover != null && isCover);
-                
-                if (image.getIsCover()) {
-                    // Unset current cover image if exists
-                    product.getImages().stream()
-                        .filter(ProductImage::getIsCover)
-                        .forEach(img -> img.setIsCover(false));
-                }
-                
+                image.setImageUrl(url);
                 product.getImages().add(image);
-                return productRepository.persist(product)
-                    .map(p -> image);
             });
+        }
+        
+        Set<String> tagNames = normalizeTags(productDTO.getTags());
+        
+        return Panache.withTransaction(() -> resolveCategory(productDTO.getCategoryId())
+                .chain(category -> {
+                    product.setCategory(category);
+                    return resolveTags(tagNames);
+                })
+                .chain(tags -> {
+                    if (tags != null) {
+                        product.setTags(tags);
+                    }
+                    return productRepository.persistAndFlush(product);
+                }))
+            .invoke(saved -> productChanged.fire(
+                new ProductChangedEvent(saved, tagNames != null ? tagNames : Set.of())));
     }
     
-    @Transactional
-    public Uni<Boolean> deleteProductImage(Long productId, Long imageId) {
-        return productRepository.findById(productId)
+    public Uni<Product> updateProduct(Long id, ProductDTO productDTO) {
+        Set<String> tagNames = normalizeTags(productDTO.getTags());
+        AtomicBoolean stockEdited = new AtomicBoolean();
+        
+        return Panache.withTransaction(() -> productRepository.findById(id)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Product not found"))
+                .chain(product -> resolveCategory(productDTO.getCategoryId())
+                    .chain(category -> {
+                        stockEdited.set(!Objects.equals(product.getStockQuantity(), productDTO.getStockQuantity()));
+                        updateProductFromDto(product, productDTO);
+                        product.setCategory(category);
+                        return resolveTags(tagNames);
+                    })
+                    .chain(tags -> {
+                        // Omitted tags leave the current assignment untouched
+                        if (tags != null) {
+                            product.setTags(tags);
+                        }
+                        return productRepository.persistAndFlush(product);
+                    })))
+            // Sellable stock is held in reservation shards and follows a direct stock edit; the rebalance
+            // locks the product row, so it waits for the edit to commit
+            .call(saved -> stockEdited.get()
+                ? stockReservationService.rebalance(List.of(saved.getId()))
+                : Uni.createFrom().voidItem())
+            .invoke(saved -> productChanged.fire(new ProductChangedEvent(saved, tagNames)));
+    }
+    
+    public Uni<Boolean> deleteProduct(Long id) {
+        return Panache.withTransaction(() -> productRepository.deleteById(id))
+            .invoke(deleted -> {
+                if (deleted) {
+                    productChanged.fire(new ProductChangedEvent(id));
+                }
+            });
+    }
+    
+    static void updateProductFromDto(Product product, ProductDTO dto) {
+        product.setName(dto.getName());
+        product.setDescription(dto.getDescription());
+        product.setPrice(dto.getPrice());
+        product.setStockQuantity(dto.getStockQuantity());
+        if (dto.getActive() != null) {
+            product.setActive(dto.getActive());
+        }
+    }
+    
+    private Uni<Category> resolveCategory(Long categoryId) {
+        if (categoryId == null) {
+            return Uni.createFrom().nullItem();
+        }
+        return categoryRepository.findById(categoryId)
             .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Product not found"))
-            .chain(product -> {
-                ProductImage image = product.getImages().stream()
-                    .filter(img -> img.getId().equals(imageId))
-                    .findFirst()
-                    .orElse(null);
-                
+                new ResourceNotFoundException("Category not found"));
+    }
+    
+    static Set<String> normalizeTags(Set<String> names) {
+        if (names == null) {
+            return null;
+        }
+        return names.stream()
+            .map(TagExpression::normalize)
+            .filter(name -> !name.isEmpty())
+            .peek(name -> {
+                if (name.length() > 50) {
+                    throw new ValidationException("Tag names are limited to 50 characters");
+                }
+            })
+            .collect(Collectors.toSet());
+    }
+    
+    // Looks up existing tags in one query and creates the missing ones
+    private Uni<Set<Tag>> resolveTags(Set<String> names) {
+        if (names == null) {
+            return Uni.createFrom().nullItem();
+        }
+        if (names.isEmpty()) {
+            return Uni.createFrom().item(new HashSet<>());
+        }
+        return tagRepository.findByNames(names)
+            .chain(existing -> {
+                Map<String, Tag> byName = existing.stream()
+                    .collect(Collectors.toMap(tag -> TagExpression.normalize(tag.getName()),
+                        Function.identity(), (a, b) -> a));
+                List<Tag> missing = names.stream()
+                    .filter(name -> !byName.containsKey(name))
+                    .map(name -> {
+                        Tag tag = new Tag();
+                        tag.setName(name);
+                        return tag;
+                    })
+                    .collect(Collectors.toList());
+                if (missing.isEmpty()) {
+                    return Uni.createFrom().item(new HashSet<>(byName.values()));
+                }
+                return tagRepository.persist(missing)
+                    .map(v -> {
+                        Set<Tag> tags = new HashSet<>(byName.values());
+                        tags.addAll(missing);
+                        return tags;
+                    });
+            });
+    }
+    
+    public Uni<ProductImage> addProductImage(Long productId, String imageUrl, Boolean isCover) {
+        return Panache.withTransaction(() -> productRepository.findById(productId)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Product not found"))
+                .chain(product -> {
+                    ProductImage image = new ProductImage();
+                    image.setProduct(product);
+                    image.setImageUrl(imageUrl);
+                    image.setIsCover(isCover != null && isCover);
+                    
+                    if (image.getIsCover()) {
+                        // Unset current cover image if exists
+                        product.getImages().stream()
+                            .filter(ProductImage::getIsCover)
+                            .forEach(img -> img.setIsCover(false));
+                    }
+                    
+                    product.getImages().add(image);
+                    return productRepository.persistAndFlush(product)
+                        .map(p -> image);
+                }))
+            .invoke(image -> productChanged.fire(new ProductChangedEvent(image.getProduct())));
+    }
+    
+    public Uni<Boolean> deleteProductImage(Long productId, Long imageId) {
+        return Panache.withTransaction(() -> productRepository.findById(productId)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Product not found"))
+                .chain(product -> {
+                    ProductImage image = product.getImages().stream()
+                        .filter(img -> img.getId().equals(imageId))
+                        .findFirst()
+                        .orElse(null);
+                    
+                    if (image == null) {
+                        return Uni.createFrom().<ProductImage>nullItem();
+                    }
+                    
+                    product.getImages().remove(image);
+                    
+                    return productRepository.persistAndFlush(product)
+                        .map(p -> image);
+                }))
+            .chain(image -> {
                 if (image == null) {
                     return Uni.createFrom().item(false);
                 }
-                
-                String imageUrl = image.getImageUrl();
-                product.getImages().remove(image);
-                
-                return productRepository.persist(product)
-                    .chain(() -> imageStorageService.deleteImage(imageUrl))
+                productChanged.fire(new ProductChangedEvent(image.getProduct()));
+                return imageStorageService.deleteImage(image.getImageUrl())
                     .map(v -> true);
             });
     }
     
-    @Transactional
     public Uni<ProductImage> setCoverImage(Long productId, Long imageId) {
-        return productRepository.findById(productId)
-            .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Product not found"))
-            .chain(product -> {
-                ProductImage newCover = product.getImages().stream()
-                    .filter(img -> img.getId().equals(imageId))
-                    .findFirst()
-                    .orElseThrow(() -> 
-                        new ResourceNotFoundException("Image not found"));
-                
-                // Update cover image status
-                product.getImages().forEach(img -> 
-                    img.setIsCover(img.getId().equals(imageId)));
-                
-                return productRepository.persist(product)
-                    .map(p -> newCover);
-            });
+        return Panache.withTransaction(() -> productRepository.findById(productId)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Product not found"))
+                .chain(product -> {
+                    ProductImage newCover = product.getImages().stream()
+                        .filter(img -> img.getId().equals(imageId))
+                        .findFirst()
+                        .orElseThrow(() -> 
+                            new ResourceNotFoundException("Image not found"));
+                    
+                    // Update cover image status
+                    product.getImages().forEach(img -> 
+                        img.setIsCover(img.getId().equals(imageId)));
+                    
+                    return productRepository.persistAndFlush(product)
+                        .map(p -> newCover);
+                }))
+            .invoke(cover -> productChanged.fire(new ProductChangedEvent(cover.getProduct())));
     }
 }
\ No newline at end of file
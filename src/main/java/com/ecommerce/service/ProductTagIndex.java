@@ -0,0 +1,229 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.TagExpression;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@ApplicationScoped
+public class ProductTagIndex {
+    
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final String[] NO_TAGS = new String[0];
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Tag -> product ids carrying it, plus every known product id for NOT
+    private final Map<String, CompressedBitmap> postings = new HashMap<>();
+    private final Map<Long, String[]> productTags = new HashMap<>();
+    private CompressedBitmap universe = new CompressedBitmap();
+    private long maxKnownId;
+    
+    private final AtomicReference<Uni<Void>> loading = new AtomicReference<>();
+    
+    private volatile boolean ready;
+    
+    // Bumped by every flush; a load started under an older generation stops adding rows
+    private volatile long generation;
+    
+    public Uni<Void> ensureLoaded() {
+        if (ready) {
+            return Uni.createFrom().voidItem();
+        }
+        Uni<Void> current = loading.get();
+        if (current == null) {
+            Uni<Void> candidate = loadFrom(0L, generation)
+                // A flush abandoned this load; wait for the one that replaced it
+                .chain(loaded -> loaded ? Uni.createFrom().voidItem() : ensureLoaded())
+                .onFailure().invoke(error -> loading.set(null))
+                .memoize().indefinitely();
+            current = loading.compareAndSet(null, candidate) ? candidate : loading.get();
+        }
+        return current;
+    }
+    
+    // True once the index is complete, false when a flush abandoned the load
+    private Uni<Boolean> loadFrom(Long afterId, long loadGeneration) {
+        return productRepository.findIds(afterId, LOAD_BATCH_SIZE)
+            .chain(ids -> {
+                if (ids.isEmpty()) {
+                    return finish(loadGeneration);
+                }
+                Long lastId = ids.get(ids.size() - 1);
+                return productRepository.findTagNames(ids.get(0), lastId)
+                    .chain(tagRows -> {
+                        Map<Long, List<String>> tagsByProduct = new HashMap<>();
+                        for (Object[] tagRow : tagRows) {
+                            tagsByProduct.computeIfAbsent(((Number) tagRow[0]).longValue(),
+                                id -> new ArrayList<>()).add(TagExpression.normalize((String) tagRow[1]));
+                        }
+                        lock.writeLock().lock();
+                        try {
+                            if (generation != loadGeneration) {
+                                return Uni.createFrom().item(false);
+                            }
+                            for (Long id : ids) {
+                                // Writes that raced ahead of the initial load are newer than this snapshot
+                                if (!productTags.containsKey(id)) {
+                                    addProduct(id);
+                                    setTags(id, tagsByProduct.getOrDefault(id, List.of()));
+                                }
+                            }
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                        if (ids.size() < LOAD_BATCH_SIZE) {
+                            return finish(loadGeneration);
+                        }
+                        return loadFrom(lastId, loadGeneration);
+                    });
+            });
+    }
+    
+    private Uni<Boolean> finish(long loadGeneration) {
+        lock.writeLock().lock();
+        try {
+            ready = generation == loadGeneration;
+            return Uni.createFrom().item(ready);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            Long id = event.getProductId();
+            if (event.isDeleted()) {
+                setTags(id, List.of());
+                productTags.remove(id);
+                universe.remove(id);
+                return;
+            }
+            if (!productTags.containsKey(id)) {
+                addProduct(id);
+            }
+            // Only writes that touched tags carry them; stock or rating updates leave the postings alone
+            if (event.getTags() != null) {
+                setTags(id, event.getTags());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    void onCacheFlush(@Observes CacheFlushEvent event) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            postings.clear();
+            productTags.clear();
+            universe = new CompressedBitmap();
+            maxKnownId = 0;
+            ready = false;
+            loading.set(null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public CompressedBitmap evaluate(TagExpression expression) {
+        lock.readLock().lock();
+        try {
+            return eval(expression);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Known products that do not match; lets a broad result be sent to the database as "id not in"
+    public CompressedBitmap complement(CompressedBitmap matches) {
+        lock.readLock().lock();
+        try {
+            return universe.andNot(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public long maxKnownId() {
+        lock.readLock().lock();
+        try {
+            return maxKnownId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private CompressedBitmap eval(TagExpression expression) {
+        if (expression instanceof TagExpression.Tag) {
+            CompressedBitmap matches = postings.get(((TagExpression.Tag) expression).getName());
+            return matches != null ? matches.copy() : new CompressedBitmap();
+        }
+        if (expression instanceof TagExpression.Not) {
+            return universe.andNot(eval(((TagExpression.Not) expression).getOperand()));
+        }
+        List<TagExpression> operands = ((TagExpression.Junction) expression).getOperands();
+        if (expression instanceof TagExpression.Or) {
+            CompressedBitmap result = new CompressedBitmap();
+            for (TagExpression operand : operands) {
+                result = result.or(eval(operand));
+            }
+            return result;
+        }
+        
+        // AND: intersect the positive terms first, then subtract negated ones without materializing NOT
+        CompressedBitmap result = null;
+        List<TagExpression> negated = new ArrayList<>();
+        for (TagExpression operand : operands) {
+            if (operand instanceof TagExpression.Not) {
+                negated.add(((TagExpression.Not) operand).getOperand());
+                continue;
+            }
+            result = result == null ? eval(operand) : result.and(eval(operand));
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        if (result == null) {
+            result = universe.copy();
+        }
+        for (TagExpression operand : negated) {
+            result = result.andNot(eval(operand));
+        }
+        return result;
+    }
+    
+    private void addProduct(Long id) {
+        productTags.put(id, NO_TAGS);
+        universe.add(id);
+        maxKnownId = Math.max(maxKnownId, id);
+    }
+    
+    private void setTags(Long id, Collection<String> names) {
+        for (String tag : productTags.getOrDefault(id, NO_TAGS)) {
+            CompressedBitmap matches = postings.get(tag);
+            if (matches != null) {
+                matches.remove(id);
+                if (matches.isEmpty()) {
+                    postings.remove(tag);
+                }
+            }
+        }
+        String[] assigned = names.stream().distinct().toArray(String[]::new);
+        for (String tag : assigned) {
+            postings.computeIfAbsent(tag, t -> new CompressedBitmap()).add(id);
+        }
+        productTags.put(id, assigned.length == 0 ? NO_TAGS : assigned);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.ReviewRepository;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Periodically compares each product's stored rating aggregates with the totals of its reviews and
+// recomputes the ones that drifted, e.g. after a write that failed between the review and the delta.
+@ApplicationScoped
+public class RatingReconciler {
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    ReviewRepository reviewRepository;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    @ConfigProperty(name = "app.ratings.reconcile-batch-size", defaultValue = "1000")
+    int batchSize;
+    
+    @Scheduled(every = "{app.ratings.reconcile-every}", delayed = "1m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledReconcile() {
+        return reconcile()
+            .invoke(repaired -> {
+                if (repaired > 0) {
+                    System.err.println("Rating aggregates drifted from the reviews of " + repaired
+                        + " products; recomputed them");
+                }
+            })
+            .onFailure().invoke(error ->
+                System.err.println("Rating reconciliation failed: " + error.getMessage()))
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    // Number of products whose aggregates were recomputed
+    public Uni<Long> reconcile() {
+        AtomicLong repaired = new AtomicLong();
+        return Multi.createBy().repeating()
+            .uni(() -> new long[] { 0L }, lastId -> productRepository.findRatingAggregates(lastId[0], batchSize)
+                .call(stored -> stored.isEmpty() ? Uni.createFrom().voidItem() : repair(stored)
+                    .invoke(repaired::addAndGet))
+                .invoke(stored -> {
+                    if (!stored.isEmpty()) {
+                        lastId[0] = (Long) stored.get(stored.size() - 1)[0];
+                    }
+                }))
+            .whilst(stored -> stored.size() == batchSize)
+            .collect().last()
+            .map(last -> repaired.get());
+    }
+    
+    private Uni<Integer> repair(List<Object[]> stored) {
+        Long fromId = (Long) stored.get(0)[0];
+        Long toId = (Long) stored.get(stored.size() - 1)[0];
+        return reviewRepository.aggregateRatings(fromId, toId)
+            .chain(actual -> {
+                Map<Long, Object[]> totals = new HashMap<>();
+                for (Object[] row : actual) {
+                    totals.put((Long) row[0], row);
+                }
+                List<Long> drifted = new ArrayList<>();
+                for (Object[] row : stored) {
+                    if (!matches(row, totals.get((Long) row[0]))) {
+                        drifted.add((Long) row[0]);
+                    }
+                }
+                if (drifted.isEmpty()) {
+                    return Uni.createFrom().item(0);
+                }
+                // The recompute reads the reviews inside its own UPDATE, so concurrent deltas are not lost
+                return productRepository.recomputeRatings(drifted)
+                    .call(() -> productRepository.findDetailsByIds(drifted)
+                        .invoke(products -> products.forEach(product ->
+                            productChanged.fire(new ProductChangedEvent(product)))))
+                    .map(updated -> drifted.size());
+            });
+    }
+    
+    // Both rows are id, count, sum, then 1-5 star counts; no review rows means all zeros
+    private static boolean matches(Object[] stored, Object[] actual) {
+        for (int i = 1; i < stored.length; i++) {
+            long expected = actual != null && actual[i] != null ? ((Number) actual[i]).longValue() : 0L;
+            long current = stored[i] != null ? ((Number) stored[i]).longValue() : 0L;
+            if (expected != current) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
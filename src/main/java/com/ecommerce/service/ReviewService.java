@@ -1,130 +1,260 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.dto.PageDTO;
 import com.ecommerce.domain.dto.ReviewDTO;
+import com.ecommerce.domain.dto.ReviewSummaryDTO;
+import com.ecommerce.domain.dto.ReviewViewDTO;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.event.ReviewChangedEvent;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.model.RatingAggregate;
 import com.ecommerce.domain.model.Review;
 import com.ecommerce.domain.model.ReviewImage;
+import com.ecommerce.domain.repository.ReviewCursor;
 import com.ecommerce.domain.repository.ReviewRepository;
 import com.ecommerce.domain.repository.ProductRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.exception.ValidationException;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class ReviewService {
     
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUMMARY_IDS = 100;
+    
     @Inject
     ReviewRepository reviewRepository;
     
     @Inject
     ProductRepository productRepository;
     
-    public Uni<List<Review>> getProductReviews(Long productId) {
-        return reviewRepository.findByProduct(productId);
+    @Inject
+    TopReviewRanking topReviewRanking;
+    
+    @Inject
+    HelpfulVoteBuffer helpfulVoteBuffer;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    @Inject
+    Event<ReviewChangedEvent> reviewChanged;
+    
+    public Uni<PageDTO<ReviewViewDTO>> getProductReviews(Long productId, String sort, String cursor, Integer size) {
+        String sortKey = ReviewCursor.sortKey(sort);
+        ReviewCursor after = ReviewCursor.decode(cursor, sortKey);
+        int pageSize = size == null || size < 1 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        
+        return reviewRepository.findPage(productId, sortKey, after, pageSize + 1)
+            .chain(reviews -> {
+                boolean hasNext = reviews.size() > pageSize;
+                List<Review> content = hasNext ? reviews.subList(0, pageSize) : reviews;
+                String nextCursor = hasNext
+                    ? ReviewCursor.after(content.get(pageSize - 1), sortKey).encode()
+                    : null;
+                return toViews(productId, content)
+                    .map(views -> new PageDTO<>(views, pageSize, hasNext, after != null, nextCursor));
+            });
     }
     
-    public Uni<List<Review>> getUserReviews(String userId) {
-        return reviewRepository.findByUser(userId);
+    public Uni<List<ReviewViewDTO>> getTopReviews(Long productId, Integer limit) {
+        int count = limit == null || limit < 1 ? topReviewRanking.size() : Math.min(limit, topReviewRanking.size());
+        return topReviewRanking.top(productId, count)
+            .chain(ids -> ids.isEmpty()
+                ? Uni.createFrom().item(List.<Review>of())
+                : reviewRepository.findByIds(ids)
+                    .map(reviews -> {
+                        // Back into ranking order; a review deleted since it was ranked drops out
+                        Map<Long, Review> byId = reviews.stream()
+                            .collect(Collectors.toMap(Review::getId, Function.identity()));
+                        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+                    }))
+            .chain(reviews -> toViews(productId, reviews));
     }
     
-    @Transactional
-    public Uni<Review> createReview(Long productId, String userId, ReviewDTO reviewDTO) {
-        return productRepository.findById(productId)
-            .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Product not found"))
-            .chain(product -> {
-                Review review = new Review();
-                review.setProduct(product);
-                review.setUserId(userId);
-                review.setRating(reviewDTO.getRating());
-                review.setComment(reviewDTO.getComment());
-                
-                if (reviewDTO.getImageUrls() != null) {
-                    reviewDTO.getImageUrls().forEach(url -> {
-                        ReviewImage image = new ReviewImage();
-                        image.setImageUrl(url);
-                        image.setReview(review);
-                        review.getImages().add(image);
-                    });
+    public Uni<ReviewSummaryDTO> getSummary(Long productId) {
+        return getSummaries(List.of(productId))
+            .map(summaries -> {
+                if (summaries.isEmpty()) {
+                    throw new ResourceNotFoundException("Product not found");
                 }
-                
-                return reviewRepository.persist(review)
-                    .chain(savedReview -> reviewRepository.getAverageRating(productId)
-                        .chain(avgRating -> {
-                            product.setAverageRating(avgRating);
-                            return productRepository.persist(product)
-                                .map(p -> savedReview);
-                        }));
+                return summaries.get(0);
             });
     }
     
-    @Transactional
-    public Uni<Review> updateReview(Long reviewId, String userId, ReviewDTO reviewDTO) {
-        return reviewRepository.findById(reviewId)
-            .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Review not found"))
-            .chain(review -> {
-                if (!review.getUserId().equals(userId)) {
-                    return Uni.createFrom().failure(
-                        new SecurityException("Not authorized to update this review"));
-                }
-                
-                review.setRating(reviewDTO.getRating());
-                review.setComment(reviewDTO.getComment());
-                
-                review.getImages().clear();
-                if (reviewDTO.getImageUrls() != null) {
-                    reviewDTO.getImageUrls().forEach(url -> {
-                        ReviewImage image = new ReviewImage();
-                        image.setImageUrl(url);
-                        image.setReview(review);
-                        review.getImages().add(image);
-                    });
+    // Summaries in request order; unknown product ids are left out
+    public Uni<List<ReviewSummaryDTO>> getSummaries(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        if (productIds.size() > MAX_SUMMARY_IDS) {
+            throw new ValidationException("At most " + MAX_SUMMARY_IDS + " product ids per request");
+        }
+        return productRepository.findRatings(new LinkedHashSet<>(productIds))
+            .map(rows -> {
+                Map<Long, ReviewSummaryDTO> byId = new HashMap<>();
+                for (Object[] row : rows) {
+                    byId.put((Long) row[0], new ReviewSummaryDTO((Long) row[0], (RatingAggregate) row[1]));
                 }
-                
-                return reviewRepository.persist(review)
-                    .chain(savedReview -> reviewRepository.getAverageRating(review.getProduct().getId())
-                        .chain(avgRating -> {
-                            review.getProduct().setAverageRating(avgRating);
-                            return productRepository.persist(review.getProduct())
-                                .map(p -> savedReview);
-                        }));
+                return productIds.stream().distinct().map(byId::get).filter(Objects::nonNull)
+                    .collect(Collectors.toList());
             });
     }
     
-    @Transactional
-    public Uni<Void> deleteReview(Long reviewId, String userId) {
-        return reviewRepository.findById(reviewId)
-            .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Review not found"))
-            .chain(review -> {
-                if (!review.getUserId().equals(userId)) {
-                    return Uni.createFrom().failure(
-                        new SecurityException("Not authorized to delete this review"));
+    // Images of the whole page in one query instead of one per review
+    private Uni<List<ReviewViewDTO>> toViews(Long productId, List<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        List<Long> ids = reviews.stream().map(Review::getId).collect(Collectors.toList());
+        return reviewRepository.findImageUrls(ids)
+            .map(rows -> {
+                Map<Long, List<String>> images = new HashMap<>();
+                for (Object[] row : rows) {
+                    images.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
                 }
-                
-                Long productId = review.getProduct().getId();
-                return reviewRepository.delete(review)
-                    .chain(() -> reviewRepository.getAverageRating(productId))
-                    .chain(avgRating -> productRepository.findById(productId)
-                        .chain(product -> {
-                            product.setAverageRating(avgRating);
-                            return productRepository.persist(product);
-                        }))
-                    .replaceWith(null);
+                return reviews.stream()
+                    .map(review -> new ReviewViewDTO(review, productId, images.getOrDefault(review.getId(), List.of())))
+                    .collect(Collectors.toList());
             });
     }
     
-    @Transactional
-    public Uni<Review> voteHelpful(Long reviewId) {
-        return reviewRepository.findById(reviewId)
-            .onItem().ifNull().failWith(() -> 
-                new ResourceNotFoundException("Review not found"))
-            .chain(review -> {
-                review.setHelpfulVotes(review.getHelpfulVotes() + 1);
-                return reviewRepository.persist(review);
+    public Uni<List<Review>> getUserReviews(String userId) {
+        return reviewRepository.findByUser(userId);
+    }
+    
+    public Uni<Review> createReview(Long productId, String userId, ReviewDTO reviewDTO) {
+        AtomicReference<Product> rated = new AtomicReference<>();
+        return Panache.withTransaction(() -> productRepository.findById(productId)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Product not found"))
+                .chain(product -> {
+                    Review review = new Review();
+                    review.setProduct(product);
+                    review.setUserId(userId);
+                    review.setRating(reviewDTO.getRating());
+                    review.setComment(reviewDTO.getComment());
+                    
+                    if (reviewDTO.getImageUrls() != null) {
+                        reviewDTO.getImageUrls().forEach(url -> {
+                            ReviewImage image = new ReviewImage();
+                            image.setImageUrl(url);
+                            image.setReview(review);
+                            review.getImages().add(image);
+                        });
+                    }
+                    
+                    return reviewRepository.persist(review)
+                        .call(savedReview -> applyRating(productId, 0, savedReview.getRating())
+                            .invoke(rated::set));
+                }))
+            .invoke(savedReview -> {
+                announce(rated.get());
+                reviewChanged.fire(
+                    new ReviewChangedEvent(productId, savedReview.getId(), savedReview.getHelpfulVotes()));
             });
     }
+    
+    public Uni<Review> updateReview(Long reviewId, String userId, ReviewDTO reviewDTO) {
+        AtomicReference<Product> rated = new AtomicReference<>();
+        return Panache.withTransaction(() -> reviewRepository.findById(reviewId)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Review not found"))
+                .chain(review -> {
+                    if (!review.getUserId().equals(userId)) {
+                        return Uni.createFrom().failure(
+                            new SecurityException("Not authorized to update this review"));
+                    }
+                    
+                    int previousRating = review.getRating();
+                    review.setRating(reviewDTO.getRating());
+                    review.setComment(reviewDTO.getComment());
+                    
+                    review.getImages().clear();
+                    if (reviewDTO.getImageUrls() != null) {
+                        reviewDTO.getImageUrls().forEach(url -> {
+                            ReviewImage image = new ReviewImage();
+                            image.setImageUrl(url);
+                            image.setReview(review);
+                            review.getImages().add(image);
+                        });
+                    }
+                    
+                    // A comment-only edit leaves the aggregates alone
+                    if (previousRating == review.getRating()) {
+                        return reviewRepository.persist(review);
+                    }
+                    return reviewRepository.persist(review)
+                        .call(savedReview -> applyRating(
+                            review.getProduct().getId(), previousRating, savedReview.getRating())
+                            .invoke(rated::set));
+                }))
+            .invoke(() -> announce(rated.get()));
+    }
+    
+    public Uni<Void> deleteReview(Long reviewId, String userId) {
+        AtomicReference<Product> rated = new AtomicReference<>();
+        AtomicReference<Long> reviewed = new AtomicReference<>();
+        return Panache.withTransaction(() -> reviewRepository.findById(reviewId)
+                .onItem().ifNull().failWith(() -> 
+                    new ResourceNotFoundException("Review not found"))
+                .chain(review -> {
+                    if (!review.getUserId().equals(userId)) {
+                        return Uni.createFrom().failure(
+                            new SecurityException("Not authorized to delete this review"));
+                    }
+                    
+                    Long productId = review.getProduct().getId();
+                    int rating = review.getRating();
+                    reviewed.set(productId);
+                    return reviewRepository.delete(review)
+                        .chain(() -> applyRating(productId, rating, 0))
+                        .invoke(rated::set);
+                }))
+            .invoke(() -> {
+                announce(rated.get());
+                reviewChanged.fire(ReviewChangedEvent.deleted(reviewed.get(), reviewId));
+            })
+            .replaceWithVoid();
+    }
+    
+    // Delta update of the product's running aggregates, returning the refreshed product
+    private Uni<Product> applyRating(Long productId, int removedRating, int addedRating) {
+        return reviewRepository.flush()
+            .chain(() -> productRepository.applyRatingDelta(
+                productId, removedRating, addedRating, LocalDateTime.now()))
+            .chain(() -> productRepository.refresh(productId));
+    }
+    
+    // Called once the review write has committed, so caches never pick up a rolled-back aggregate
+    private void announce(Product product) {
+        if (product != null) {
+            productChanged.fire(new ProductChangedEvent(product));
+        }
+    }
+    
+    // Acknowledged once logged; the vote reaches the review row with the next flush. Unknown reviews are
+    // turned away here, as the flush could only drop their votes.
+    public Uni<Void> voteHelpful(Long reviewId) {
+        return reviewRepository.count("id", reviewId)
+            .chain(count -> count == 0
+                ? Uni.createFrom().failure(new ResourceNotFoundException("Review not found"))
+                : helpfulVoteBuffer.record(reviewId));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.LowStockAlertDTO;
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.StockAlertRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Evaluates stock alerts against the stock levels carried by product change events, so no stock write
+// queries stock_alerts. Active thresholds are held per product in memory. An alert fires when stock
+// falls to its threshold and not again until stock has climbed back a margin above it, so a level
+// hovering around the threshold alerts once. Fired alerts wait for the next digest, which mails them
+// together; a product is mailed at most once per cooldown. Other nodes' writes move the low state too
+// but are left to the node that made them to mail.
+@ApplicationScoped
+public class StockAlertEvaluator {
+    
+    @Inject
+    StockAlertRepository alertRepository;
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    EmailService emailService;
+    
+    // Share of the threshold stock must climb above it to re-arm an alert, at least one unit
+    @ConfigProperty(name = "app.inventory.alert-hysteresis-percent", defaultValue = "20")
+    int hysteresisPercent;
+    
+    @ConfigProperty(name = "app.inventory.alert-cooldown-minutes", defaultValue = "60")
+    int cooldownMinutes;
+    
+    // Product id -> highest active threshold
+    private LongIntMap thresholds = new LongIntMap();
+    
+    // Product id -> stock when its alert fired; present until the alert re-arms
+    private LongIntMap low = new LongIntMap();
+    
+    // Product id -> latest stock of alerts waiting for the digest
+    private final LongIntMap pending = new LongIntMap();
+    
+    // Product id -> minute, since the epoch, it was last mailed
+    private final LongIntMap lastMailed = new LongIntMap();
+    
+    void onStart(@Observes StartupEvent ev) {
+        reload().subscribe().with(v -> { }, error ->
+            System.err.println("Failed to load stock alerts: " + error.getMessage()));
+    }
+    
+    // Picks up alerts changed on other nodes
+    @Scheduled(every = "{app.inventory.alert-reload-every}", delayed = "1m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledReload() {
+        return reload()
+            .onFailure().invoke(error ->
+                System.err.println("Failed to reload stock alerts: " + error.getMessage()))
+            .onFailure().recoverWithNull();
+    }
+    
+    // Products already below their threshold are taken as alerted, so restarts and reloads send nothing
+    Uni<Void> reload() {
+        return alertRepository.findActiveThresholds()
+            .invoke(rows -> {
+                LongIntMap loadedThresholds = new LongIntMap(rows.size());
+                LongIntMap loadedLow = new LongIntMap();
+                synchronized (this) {
+                    for (Object[] row : rows) {
+                        long productId = ((Number) row[0]).longValue();
+                        int threshold = ((Number) row[1]).intValue();
+                        int stock = ((Number) row[2]).intValue();
+                        loadedThresholds.put(productId, threshold);
+                        boolean wasLow = low.containsKey(productId) && stock <= threshold + margin(threshold);
+                        if (wasLow || stock <= threshold) {
+                            loadedLow.put(productId, low.get(productId, stock));
+                        }
+                    }
+                    thresholds = loadedThresholds;
+                    low = loadedLow;
+                    prune(pending);
+                    prune(lastMailed);
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    // Applies a created or updated alert of the product. Runs in the caller's session after the alert was
+    // flushed; an alert that starts out below its threshold fires right away.
+    public Uni<Void> reload(Long productId) {
+        return alertRepository.findActiveThreshold(productId)
+            .invoke(row -> {
+                synchronized (this) {
+                    if (row == null) {
+                        thresholds.remove(productId);
+                        low.remove(productId);
+                        pending.remove(productId);
+                        return;
+                    }
+                    thresholds.put(productId, ((Number) row[1]).intValue());
+                    evaluate(productId, ((Number) row[2]).intValue(), true);
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            return;
+        }
+        Integer stock = event.getProduct().getStockQuantity();
+        if (stock != null) {
+            synchronized (this) {
+                evaluate(event.getProductId(), stock, !event.isRemote());
+            }
+        }
+    }
+    
+    private void evaluate(long productId, int stock, boolean notify) {
+        int threshold = thresholds.get(productId, -1);
+        if (threshold < 0) {
+            return;
+        }
+        if (low.containsKey(productId)) {
+            if (stock > threshold + margin(threshold)) {
+                low.remove(productId);
+                pending.remove(productId);
+            } else if (pending.containsKey(productId)) {
+                pending.put(productId, stock);
+            }
+            return;
+        }
+        if (stock <= threshold) {
+            low.put(productId, stock);
+            int mailedAt = lastMailed.get(productId, Integer.MIN_VALUE);
+            if (notify && (mailedAt == Integer.MIN_VALUE || minute() - mailedAt >= cooldownMinutes)) {
+                pending.put(productId, stock);
+            }
+        }
+    }
+    
+    @Scheduled(every = "{app.inventory.alert-digest-every}", delayed = "1m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> sendDigest() {
+        Map<Long, int[]> alerts = new HashMap<>();
+        synchronized (this) {
+            pending.forEach((productId, stock) ->
+                alerts.put(productId, new int[] { stock, thresholds.get(productId, 0) }));
+            pending.clear();
+        }
+        if (alerts.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return productRepository.findNames(alerts.keySet())
+            .chain(names -> {
+                List<LowStockAlertDTO> digest = new ArrayList<>();
+                for (Object[] row : names) {
+                    int[] alert = alerts.get((Long) row[0]);
+                    digest.add(new LowStockAlertDTO((Long) row[0], (String) row[1], alert[0], alert[1]));
+                }
+                if (digest.isEmpty()) {
+                    return Uni.createFrom().voidItem();
+                }
+                digest.sort((a, b) -> Integer.compare(a.getStockQuantity(), b.getStockQuantity()));
+                return emailService.sendLowStockDigest(digest);
+            })
+            .invoke(() -> {
+                int now = minute();
+                synchronized (this) {
+                    alerts.keySet().forEach(productId -> lastMailed.put(productId, now));
+                }
+            })
+            .onFailure().invoke(error -> {
+                System.err.println("Failed to send low stock digest: " + error.getMessage());
+                // Back into the next digest unless newer state replaced them meanwhile
+                synchronized (this) {
+                    alerts.forEach((productId, alert) -> {
+                        if (low.containsKey(productId) && !pending.containsKey(productId)) {
+                            pending.put(productId, alert[0]);
+                        }
+                    });
+                }
+            })
+            .onFailure().recoverWithNull();
+    }
+    
+    private int margin(int threshold) {
+        return Math.max(1, threshold * hysteresisPercent / 100);
+    }
+    
+    private void prune(LongIntMap map) {
+        List<Long> stale = new ArrayList<>();
+        map.forEach((productId, value) -> {
+            if (!thresholds.containsKey(productId)) {
+                stale.add(productId);
+            }
+        });
+        stale.forEach(map::remove);
+    }
+    
+    private static int minute() {
+        return (int) TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+}
\ No newline at end of file
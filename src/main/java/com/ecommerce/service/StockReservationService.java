@@ -0,0 +1,148 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.event.ProductChangedEvent;
+import com.ecommerce.domain.model.TransactionType;
+import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.StockReservationRepository;
+import com.ecommerce.domain.repository.StockReservationRepository.StockChange;
+import com.ecommerce.exception.InsufficientStockException;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Checkout stock holds: taken when an order is placed, turned into sales when payment succeeds and
+// returned when it fails, is cancelled, or the hold outlives its TTL.
+@ApplicationScoped
+public class StockReservationService {
+    
+    @Inject
+    StockReservationRepository reservationRepository;
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    @Inject
+    InventoryAnalyticsAggregator analyticsAggregator;
+    
+    @Inject
+    TopSellingTracker topSelling;
+    
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+    
+    @ConfigProperty(name = "app.inventory.shards", defaultValue = "8")
+    int shards;
+    
+    @ConfigProperty(name = "app.inventory.reservation-ttl-minutes", defaultValue = "15")
+    long ttlMinutes;
+    
+    @ConfigProperty(name = "app.inventory.reservation-attempts", defaultValue = "3")
+    int attempts;
+    
+    @ConfigProperty(name = "app.inventory.expiry-batch-size", defaultValue = "500")
+    int expiryBatchSize;
+    
+    // Hold id for attaching the holds to the order once it is saved
+    public Uni<String> reserve(Map<Long, Integer> quantities) {
+        String holdId = UUID.randomUUID().toString();
+        return reserve(holdId, quantities, 1).replaceWith(holdId);
+    }
+    
+    private Uni<Void> reserve(String holdId, Map<Long, Integer> quantities, int attempt) {
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(ttlMinutes);
+        return reservationRepository.reserve(holdId, quantities, shards, expiresAt)
+            .chain(failed -> {
+                if (failed == null) {
+                    return Uni.createFrom().voidItem();
+                }
+                return reservationRepository.findSellable(failed)
+                    .chain(sellable -> {
+                        long shardRows = ((Number) sellable[0]).longValue();
+                        long available = ((Number) sellable[1]).longValue();
+                        if (attempt >= attempts || (shardRows > 0 && available < quantities.get(failed))) {
+                            return Uni.createFrom().failure(new InsufficientStockException(failed));
+                        }
+                        // Never spread (created since), or a concurrent checkout drained a planned shard
+                        Uni<Void> ready = shardRows == 0
+                            ? reservationRepository.rebalance(List.of(failed), shards)
+                            : Uni.createFrom().voidItem();
+                        return ready.chain(() -> reserve(holdId, quantities, attempt + 1));
+                    });
+            });
+    }
+    
+    public Uni<Void> attach(String holdId, Long orderId) {
+        return reservationRepository.attach(holdId, orderId).replaceWithVoid();
+    }
+    
+    public Uni<Void> commit(Long orderId) {
+        return reservationRepository.commit(orderId, shards)
+            .call(result -> {
+                if (!result.getShortfall().isEmpty()) {
+                    System.err.println("Order " + orderId + " was paid after its stock hold expired and products "
+                        + result.getShortfall() + " are no longer available");
+                }
+                for (int i = 0; i < result.getSold().size(); i++) {
+                    analyticsAggregator.record(result.getTransactionIds().get(i));
+                    topSelling.recordSale(result.getSold().get(i), result.getSoldQuantities().get(i));
+                }
+                return announce(result.getSold());
+            })
+            .replaceWithVoid();
+    }
+    
+    public Uni<Void> release(Long orderId) {
+        return reservationRepository.release(orderId, shards).replaceWithVoid();
+    }
+    
+    public Uni<Void> releaseHold(String holdId) {
+        return reservationRepository.releaseHold(holdId, shards).replaceWithVoid();
+    }
+    
+    // Rejected changes carry their error; returns the products whose stock moved
+    public Uni<List<Long>> recordStockChanges(List<StockChange> changes) {
+        return reservationRepository.recordStockChanges(changes, shards)
+            .invoke(() -> changes.stream()
+                .filter(change -> change.getTransactionId() != null)
+                .forEach(change -> {
+                    analyticsAggregator.record(change.getTransactionId());
+                    if (change.getType() == TransactionType.SALE) {
+                        topSelling.recordSale(change.getProductId(), change.getQuantity());
+                    }
+                }));
+    }
+    
+    public Uni<Void> rebalance(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return reservationRepository.rebalance(productIds, shards);
+    }
+    
+    @Scheduled(every = "{app.inventory.expiry-sweep-every}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> releaseExpired() {
+        return reservationRepository.expire(expiryBatchSize, shards)
+            .chain(released -> released == expiryBatchSize ? releaseExpired() : Uni.createFrom().voidItem())
+            .onFailure().invoke(error ->
+                System.err.println("Failed to release expired stock holds: " + error.getMessage()))
+            .onFailure().recoverWithNull();
+    }
+    
+    // Stock levels changed underneath the caches
+    private Uni<Void> announce(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return productRepository.findDetailsByIds(productIds)
+            .invoke(products -> products.forEach(product -> productChanged.fire(new ProductChangedEvent(product))))
+            .replaceWithVoid();
+    }
+}
\ No newline at end of file
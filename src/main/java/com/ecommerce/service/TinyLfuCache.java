@@ -0,0 +1,277 @@
+package com.ecommerce.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.ToIntFunction;
+
+// Bounded cache with W-TinyLFU admission: new entries land in a small LRU window, and an entry
+// leaving the window only enters the main segmented LRU if a frequency sketch says it is accessed
+// more often than the main region's eviction victim. Bounded by both entry count and total weight.
+public final class TinyLfuCache<K, V> {
+    
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    
+    private final int maximumSize;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToIntFunction<V> weigher;
+    
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final FrequencySketch sketch;
+    private final Node<K, V> window = Node.sentinel();
+    private final Node<K, V> probation = Node.sentinel();
+    private final Node<K, V> protectedSegment = Node.sentinel();
+    private final long[] segmentWeight = new long[3];
+    
+    private long evictionCount;
+    private long evictionWeight;
+    
+    public TinyLfuCache(int maximumSize, long maximumWeight, ToIntFunction<V> weigher) {
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 4 / 5;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+    
+    public synchronized V getIfPresent(K key) {
+        sketch.increment(key.hashCode());
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        onAccess(node);
+        return node.value;
+    }
+    
+    public synchronized void put(K key, V value) {
+        merge(key, value, (current, replacement) -> replacement);
+    }
+    
+    // Stores the value, or remapping(current, value) when the key is already cached
+    public synchronized void merge(K key, V value, BinaryOperator<V> remapping) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            V merged = remapping.apply(node.value, value);
+            if (merged != node.value) {
+                int weight = weigher.applyAsInt(merged);
+                segmentWeight[node.segment] += weight - node.weight;
+                node.value = merged;
+                node.weight = weight;
+            }
+            onAccess(node);
+            evict();
+            return;
+        }
+        
+        int weight = weigher.applyAsInt(value);
+        if (weight > maximumWeight - windowMaximum) {
+            return;
+        }
+        sketch.increment(key.hashCode());
+        node = new Node<>(key, value, weight);
+        data.put(key, node);
+        link(window, node, WINDOW);
+        evict();
+    }
+    
+    public synchronized void invalidate(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+    
+    public synchronized void invalidateAll() {
+        data.clear();
+        for (Node<K, V> head : List.of(window, probation, protectedSegment)) {
+            head.next = head;
+            head.prev = head;
+        }
+        segmentWeight[WINDOW] = 0;
+        segmentWeight[PROBATION] = 0;
+        segmentWeight[PROTECTED] = 0;
+    }
+    
+    public synchronized boolean containsKey(K key) {
+        return data.containsKey(key);
+    }
+    
+    public synchronized int size() {
+        return data.size();
+    }
+    
+    public synchronized long weight() {
+        return segmentWeight[WINDOW] + segmentWeight[PROBATION] + segmentWeight[PROTECTED];
+    }
+    
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+    
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+    
+    public synchronized long evictionWeight() {
+        return evictionWeight;
+    }
+    
+    private void onAccess(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW:
+                moveToHead(window, node);
+                break;
+            case PROBATION:
+                // A second hit promotes into the protected segment, demoting its LRU entries if needed
+                unlink(node);
+                link(protectedSegment, node, PROTECTED);
+                while (segmentWeight[PROTECTED] > protectedMaximum && protectedSegment.prev != node) {
+                    Node<K, V> demoted = protectedSegment.prev;
+                    unlink(demoted);
+                    link(probation, demoted, PROBATION);
+                }
+                break;
+            default:
+                moveToHead(protectedSegment, node);
+        }
+    }
+    
+    private void evict() {
+        long mainMaximum = maximumWeight - windowMaximum;
+        
+        // Window overflow: each LRU window entry competes with the main region's victim for admission
+        while (segmentWeight[WINDOW] > windowMaximum || data.size() > maximumSize) {
+            Node<K, V> candidate = window.prev;
+            if (candidate == window) {
+                break;
+            }
+            unlink(candidate);
+            while (segmentWeight[PROBATION] + segmentWeight[PROTECTED] + candidate.weight > mainMaximum
+                    || data.size() > maximumSize) {
+                Node<K, V> victim = probation.prev != probation ? probation.prev
+                    : protectedSegment.prev != protectedSegment ? protectedSegment.prev : null;
+                if (victim == null || sketch.frequency(candidate.key.hashCode())
+                        <= sketch.frequency(victim.key.hashCode())) {
+                    evict(candidate);
+                    candidate = null;
+                    break;
+                }
+                unlink(victim);
+                evict(victim);
+            }
+            if (candidate != null) {
+                link(probation, candidate, PROBATION);
+            }
+        }
+    }
+    
+    private void evict(Node<K, V> node) {
+        data.remove(node.key);
+        evictionCount++;
+        evictionWeight += node.weight;
+    }
+    
+    private void link(Node<K, V> head, Node<K, V> node, int segment) {
+        node.segment = segment;
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+        segmentWeight[segment] += node.weight;
+    }
+    
+    private void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        segmentWeight[node.segment] -= node.weight;
+    }
+    
+    private void moveToHead(Node<K, V> head, Node<K, V> node) {
+        int segment = node.segment;
+        unlink(node);
+        link(head, node, segment);
+    }
+    
+    private static final class Node<K, V> {
+        private final K key;
+        private V value;
+        private int weight;
+        private int segment;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+        
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+        
+        static <K, V> Node<K, V> sentinel() {
+            Node<K, V> head = new Node<>(null, null, 0);
+            head.prev = head;
+            head.next = head;
+            return head;
+        }
+    }
+    
+    // Count-min sketch of 4-bit counters, halved periodically so old popularity ages out
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+        
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+        
+        FrequencySketch(int maximumSize) {
+            int size = Integer.highestOneBit(Math.max(16, maximumSize - 1)) << 1;
+            this.table = new long[size];
+            this.sampleSize = 10 * size;
+        }
+        
+        int frequency(int hash) {
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset(hash, i)) & 0xfL));
+            }
+            return frequency;
+        }
+        
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = offset(hash, i);
+                if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+        
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+        
+        private static int offset(int hash, int i) {
+            return ((hash >>> (i << 3)) & 15) << 2;
+        }
+    }
+}
\ No newline at end of file
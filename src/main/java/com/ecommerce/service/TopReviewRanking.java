@@ -0,0 +1,169 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.event.CacheFlushEvent;
+import com.ecommerce.domain.event.ReviewChangedEvent;
+import com.ecommerce.domain.repository.ReviewRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The most helpful reviews of recently viewed products, kept in vote order as votes arrive so a
+// request never sorts a product's reviews. Each ranking holds the top min(size, review count) reviews.
+@ApplicationScoped
+public class TopReviewRanking {
+    
+    private static final Comparator<Entry> MOST_HELPFUL =
+        Comparator.comparingInt((Entry entry) -> entry.votes).reversed()
+            .thenComparing(Comparator.comparingLong((Entry entry) -> entry.reviewId).reversed());
+    
+    @Inject
+    ReviewRepository reviewRepository;
+    
+    @ConfigProperty(name = "app.reviews.top-size", defaultValue = "10")
+    int size;
+    
+    @ConfigProperty(name = "app.reviews.top-products", defaultValue = "10000")
+    int maxProducts;
+    
+    // Votes cast on other nodes only show up once a ranking is reloaded
+    @ConfigProperty(name = "app.reviews.top-ttl-seconds", defaultValue = "300")
+    long ttlSeconds;
+    
+    private TinyLfuCache<Long, Ranking> rankings;
+    
+    private final AtomicLong changes = new AtomicLong();
+    
+    @PostConstruct
+    void init() {
+        rankings = new TinyLfuCache<>(maxProducts, maxProducts, ranking -> 1);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    // Review ids of the product's most helpful reviews, best first
+    public Uni<List<Long>> top(Long productId, int limit) {
+        Ranking ranking = rankings.getIfPresent(productId);
+        if (ranking != null && !ranking.isExpired(ttlSeconds)) {
+            return Uni.createFrom().item(ranking.ids(limit));
+        }
+        long ticket = changes.get();
+        return reviewRepository.findMostHelpful(productId, size)
+            .map(rows -> {
+                Ranking loaded = new Ranking(size);
+                for (Object[] row : rows) {
+                    loaded.add(new Entry((Long) row[0], row[1] != null ? (Integer) row[1] : 0));
+                }
+                // A review write that raced the load may be missing; serve it once and reload next time
+                if (ticket == changes.get()) {
+                    rankings.put(productId, loaded);
+                } else {
+                    rankings.invalidate(productId);
+                }
+                return loaded.ids(limit);
+            });
+    }
+    
+    void onReviewChanged(@Observes ReviewChangedEvent event) {
+        changes.incrementAndGet();
+        Ranking ranking = rankings.getIfPresent(event.getProductId());
+        if (ranking != null && !ranking.apply(event)) {
+            rankings.invalidate(event.getProductId());
+        }
+    }
+    
+    void onCacheFlush(@Observes CacheFlushEvent event) {
+        changes.incrementAndGet();
+        rankings.invalidateAll();
+    }
+    
+    private static final class Entry {
+        private final Long reviewId;
+        private final int votes;
+        
+        Entry(Long reviewId, int votes) {
+            this.reviewId = reviewId;
+            this.votes = votes;
+        }
+    }
+    
+    private static final class Ranking {
+        private final int capacity;
+        private final long loadedAt = System.nanoTime();
+        private final TreeSet<Entry> order = new TreeSet<>(MOST_HELPFUL);
+        private final Map<Long, Entry> byId = new HashMap<>();
+        
+        Ranking(int capacity) {
+            this.capacity = capacity;
+        }
+        
+        boolean isExpired(long ttlSeconds) {
+            return System.nanoTime() - loadedAt > ttlSeconds * 1_000_000_000L;
+        }
+        
+        synchronized void add(Entry entry) {
+            Entry previous = byId.put(entry.reviewId, entry);
+            if (previous != null) {
+                order.remove(previous);
+            }
+            order.add(entry);
+        }
+        
+        synchronized List<Long> ids(int limit) {
+            List<Long> ids = new ArrayList<>(Math.min(limit, order.size()));
+            for (Entry entry : order) {
+                if (ids.size() == limit) {
+                    break;
+                }
+                ids.add(entry.reviewId);
+            }
+            return ids;
+        }
+        
+        // False when the ranking can no longer tell which reviews belong in it and must be reloaded
+        synchronized boolean apply(ReviewChangedEvent event) {
+            Entry current = byId.get(event.getReviewId());
+            boolean full = order.size() == capacity;
+            if (event.isDeleted()) {
+                if (current == null) {
+                    return true;
+                }
+                byId.remove(current.reviewId);
+                order.remove(current);
+                // The next best review is not known here
+                return !full;
+            }
+            Entry updated = new Entry(event.getReviewId(), event.getHelpfulVotes());
+            if (current != null) {
+                // A review losing votes could drop below one that is not tracked
+                if (updated.votes < current.votes && full) {
+                    return false;
+                }
+                add(updated);
+                return true;
+            }
+            if (!full) {
+                // Fewer tracked reviews than capacity means every review of the product is tracked
+                add(updated);
+                return true;
+            }
+            if (MOST_HELPFUL.compare(updated, order.last()) < 0) {
+                Entry evicted = order.pollLast();
+                byId.remove(evicted.reviewId);
+                add(updated);
+            }
+            return true;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.repository.InventoryAnalyticsRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+// Best-selling products of the rolling 1, 7 and 30 day windows, kept in memory so the dashboard never
+// aggregates inventory_analytics. Each day has a Space-Saving summary of bounded size: a product outside
+// it replaces the smallest counter and starts from that counter's count, so heavy sellers are always
+// kept and a count is overestimated by at most the smallest count. Windows merge their days. Sales from
+// this node are added as they happen; the summaries are rebuilt from inventory_analytics periodically,
+// which also drops days that left the longest window and brings in other nodes' sales.
+@ApplicationScoped
+public class TopSellingTracker {
+    
+    public static final List<Integer> WINDOWS = List.of(1, 7, 30);
+    
+    @Inject
+    InventoryAnalyticsRepository analyticsRepository;
+    
+    @ConfigProperty(name = "app.analytics.top-selling-capacity", defaultValue = "1000")
+    int capacity;
+    
+    private volatile Map<LocalDate, SpaceSaving> days = new ConcurrentHashMap<>();
+    
+    void onStart(@Observes StartupEvent ev) {
+        refresh().subscribe().with(v -> { }, error ->
+            System.err.println("Failed to load top selling products: " + error.getMessage()));
+    }
+    
+    @Scheduled(every = "{app.analytics.top-selling-refresh}", delayed = "1m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledRefresh() {
+        return refresh()
+            .onFailure().invoke(error ->
+                System.err.println("Failed to refresh top selling products: " + error.getMessage()))
+            .onFailure().recoverWithNull();
+    }
+    
+    // Summaries hold each day's top rows exactly; sales not yet flushed to the analytics table are
+    // picked up by the next refresh
+    Uni<Void> refresh() {
+        LocalDate since = LocalDate.now().minusDays(WINDOWS.get(WINDOWS.size() - 1) - 1);
+        return analyticsRepository.findDailyTopSales(since, capacity)
+            .invoke(rows -> {
+                Map<LocalDate, SpaceSaving> loaded = new ConcurrentHashMap<>();
+                for (Object[] row : rows) {
+                    loaded.computeIfAbsent((LocalDate) row[0], day -> new SpaceSaving(capacity))
+                        .add(((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+                }
+                days = loaded;
+            })
+            .replaceWithVoid();
+    }
+    
+    public void recordSale(Long productId, int quantity) {
+        days.computeIfAbsent(LocalDate.now(), day -> new SpaceSaving(capacity)).add(productId, quantity);
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+    
+    // Product id and estimated units sold over the last windowDays days including today, best first
+    public List<long[]> top(int windowDays, int limit) {
+        LocalDate today = LocalDate.now();
+        Map<Long, Long> totals = new HashMap<>();
+        days.forEach((day, summary) -> {
+            if (!day.isAfter(today) && day.isAfter(today.minusDays(windowDays))) {
+                summary.forEach((productId, count) -> totals.merge(productId, count, Long::sum));
+            }
+        });
+        List<long[]> ranked = new ArrayList<>(totals.size());
+        totals.forEach((productId, count) -> ranked.add(new long[] { productId, count }));
+        ranked.sort(Comparator.comparingLong((long[] entry) -> entry[1]).reversed()
+            .thenComparingLong(entry -> entry[0]));
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+    }
+    
+    private static final class SpaceSaving {
+        private final int capacity;
+        private final Map<Long, Counter> counters = new HashMap<>();
+        private final TreeSet<Counter> byCount = new TreeSet<>(
+            Comparator.comparingLong((Counter counter) -> counter.count).thenComparingLong(counter -> counter.productId));
+        
+        SpaceSaving(int capacity) {
+            this.capacity = capacity;
+        }
+        
+        synchronized void add(long productId, long quantity) {
+            Counter counter = counters.get(productId);
+            if (counter == null) {
+                if (counters.size() < capacity) {
+                    counter = new Counter(productId, 0);
+                } else {
+                    Counter smallest = byCount.pollFirst();
+                    counters.remove(smallest.productId);
+                    counter = new Counter(productId, smallest.count);
+                }
+                counters.put(productId, counter);
+            } else {
+                byCount.remove(counter);
+            }
+            counter.count += quantity;
+            byCount.add(counter);
+        }
+        
+        synchronized void forEach(BiConsumer<Long, Long> action) {
+            counters.values().forEach(counter -> action.accept(counter.productId, counter.count));
+        }
+    }
+    
+    private static final class Counter {
+        private final long productId;
+        private long count;
+        
+        Counter(long productId, long count) {
+            this.productId = productId;
+            this.count = count;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.repository.InventoryAnalyticsRepository;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Fills in turnover_rate and days_out_of_stock for inventory_analytics. A run covers a date range and
+// splits the product id range into partitions that are processed in parallel, each in chunks of products
+// with set-based SQL. Every chunk commits together with its checkpoint, so a run interrupted by a restart
+// or a failure resumes after the last committed chunk, on this node or whichever takes over the partition
+// lease.
+@ApplicationScoped
+public class TurnoverJob {
+    
+    static final String JOB = "inventory-turnover";
+    
+    @Inject
+    InventoryAnalyticsRepository analyticsRepository;
+    
+    @ConfigProperty(name = "app.analytics.turnover-partitions", defaultValue = "8")
+    int partitions;
+    
+    // Partitions processed at once, kept well below the connection pool size
+    @ConfigProperty(name = "app.analytics.turnover-parallelism", defaultValue = "4")
+    int parallelism;
+    
+    @ConfigProperty(name = "app.analytics.turnover-chunk-size", defaultValue = "500")
+    int chunkSize;
+    
+    // Days covered by the first run; later runs start at the last day of the previous one
+    @ConfigProperty(name = "app.analytics.turnover-backfill-days", defaultValue = "90")
+    int backfillDays;
+    
+    @ConfigProperty(name = "app.analytics.turnover-lease-minutes", defaultValue = "10")
+    long leaseMinutes;
+    
+    private final String owner = UUID.randomUUID().toString();
+    
+    @Scheduled(every = "{app.analytics.turnover-every}", delayed = "2m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledRun() {
+        return run()
+            .onFailure().invoke(error ->
+                System.err.println("Inventory turnover job failed: " + error.getMessage()))
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    // True when the open run, resumed or new, was completed by this call
+    public Uni<Boolean> run() {
+        return analyticsRepository.findOpenRun(JOB)
+            .chain(open -> open != null ? Uni.createFrom().item(open) : openRun())
+            .chain(run -> {
+                long runId = (Long) run[0];
+                LocalDate from = (LocalDate) run[1];
+                LocalDate to = (LocalDate) run[2];
+                return analyticsRepository.findPendingPartitions(runId)
+                    .onItem().transformToMulti(pending -> Multi.createFrom().iterable(pending))
+                    .onItem().transformToUni(partition -> processPartition(runId,
+                        ((Number) partition[0]).intValue(), ((Number) partition[1]).longValue(),
+                        ((Number) partition[2]).longValue(), from, to))
+                    .merge(parallelism)
+                    .collect().last()
+                    .chain(() -> analyticsRepository.completeRun(runId));
+            });
+    }
+    
+    // Today's figures change as transactions arrive, so each run starts at the previous run's last day
+    private Uni<Object[]> openRun() {
+        LocalDate today = LocalDate.now();
+        return analyticsRepository.findLastCompletedDate(JOB)
+            .chain(last -> analyticsRepository.createRun(JOB,
+                last != null ? last : today.minusDays(backfillDays), today, partitions))
+            .chain(() -> analyticsRepository.findOpenRun(JOB));
+    }
+    
+    private Uni<Void> processPartition(long runId, int partition, long lastId, long toId, LocalDate from,
+            LocalDate to) {
+        return analyticsRepository.leasePartition(runId, partition, owner,
+                LocalDateTime.now().plusMinutes(leaseMinutes))
+            .chain(leased -> {
+                if (!leased) {
+                    // Another node is working on it
+                    return Uni.createFrom().voidItem();
+                }
+                return analyticsRepository.findChunkEnd(lastId, toId, chunkSize)
+                    .chain(chunkEnd -> chunkEnd == null
+                        ? analyticsRepository.completePartition(runId, partition)
+                        : analyticsRepository.computeTurnover(runId, partition, lastId, chunkEnd, from, to)
+                            .chain(() -> processPartition(runId, partition, chunkEnd, toId, from, to)));
+            });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+-- Runs of partitioned analytics batch jobs; at most one open run per job
+CREATE TABLE analytics_job_runs (
+    id BIGSERIAL PRIMARY KEY,
+    job VARCHAR(64) NOT NULL,
+    from_date DATE NOT NULL,
+    to_date DATE NOT NULL,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+CREATE UNIQUE INDEX idx_analytics_job_runs_open ON analytics_job_runs(job) WHERE completed_at IS NULL;
+CREATE INDEX idx_analytics_job_runs_job ON analytics_job_runs(job, to_date);
+
+-- Product id range (from exclusive, to inclusive) of each partition, checkpointed after every chunk
+CREATE TABLE analytics_job_partitions (
+    run_id BIGINT NOT NULL REFERENCES analytics_job_runs(id) ON DELETE CASCADE,
+    partition_no INTEGER NOT NULL,
+    from_product_id BIGINT NOT NULL,
+    to_product_id BIGINT NOT NULL,
+    last_product_id BIGINT NOT NULL,
+    leased_by VARCHAR(64),
+    leased_until TIMESTAMP,
+    completed_at TIMESTAMP,
+    PRIMARY KEY (run_id, partition_no)
+);
\ No newline at end of file
@@ -0,0 +1,7 @@
+-- Dashboard figures computed by one node per interval and shared by all
+CREATE TABLE analytics_snapshots (
+    name VARCHAR(64) PRIMARY KEY,
+    payload TEXT,
+    computed_at TIMESTAMP,
+    computing_until TIMESTAMP
+);
\ No newline at end of file
@@ -0,0 +1,13 @@
+-- The low stock set: active products at or below their threshold. The predicate compares two columns,
+-- which no index on products can search, so these partial indexes hold only the products in the set and
+-- the queries repeat their predicate and ordering expressions exactly. Postgres keeps them current on
+-- every stock update.
+
+-- Listing, ordered by how far stock is below the threshold
+CREATE INDEX idx_products_low_stock ON products ((stock_quantity - low_stock_threshold), id)
+    WHERE active = TRUE AND stock_quantity <= low_stock_threshold;
+
+-- Stockout risk, ordered by the share of the threshold still in stock
+CREATE INDEX idx_products_stockout_risk
+    ON products ((stock_quantity * 1.0 / NULLIF(low_stock_threshold, 0)) NULLS FIRST, id)
+    WHERE active = TRUE AND stock_quantity <= low_stock_threshold;
\ No newline at end of file
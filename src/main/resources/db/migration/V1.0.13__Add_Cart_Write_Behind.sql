@@ -0,0 +1,20 @@
+-- Buffered cart lines are written back as upserts keyed by cart and product, so duplicate lines left
+-- by concurrent adds are merged into the oldest one first
+WITH merged AS (
+    SELECT MIN(id) AS keep_id, SUM(quantity) AS quantity, SUM(subtotal) AS subtotal
+    FROM cart_items
+    GROUP BY cart_id, product_id
+    HAVING COUNT(*) > 1
+)
+UPDATE cart_items i SET quantity = m.quantity, subtotal = m.subtotal
+FROM merged m
+WHERE i.id = m.keep_id;
+
+DELETE FROM cart_items i
+USING cart_items other
+WHERE i.cart_id = other.cart_id AND i.product_id = other.product_id AND i.id > other.id;
+
+ALTER TABLE cart_items ADD CONSTRAINT uq_cart_items_cart_product UNIQUE (cart_id, product_id);
+
+-- Carts are loaded by shopper when they are not in memory
+CREATE INDEX idx_carts_user ON carts(user_id, id);
\ No newline at end of file
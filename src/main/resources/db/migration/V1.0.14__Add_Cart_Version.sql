@@ -0,0 +1,3 @@
+-- Write-back guard: a node writes a cart only over the version it loaded, so a cart changed on
+-- another node meanwhile is reloaded instead of overwritten
+ALTER TABLE carts ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
\ No newline at end of file
@@ -0,0 +1,3 @@
+-- The highest sort reads rating desc, id desc, which a backward scan of the ascending rating index
+-- cannot serve with the id tie-break still descending
+CREATE INDEX idx_reviews_product_highest ON reviews(product_id, rating DESC, id DESC);
\ No newline at end of file
@@ -0,0 +1,36 @@
+-- Running review aggregates per product
+ALTER TABLE products
+    ADD COLUMN review_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN rating_sum BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_1_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN rating_2_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN rating_3_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN rating_4_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN rating_5_count INTEGER NOT NULL DEFAULT 0;
+
+-- Backfill from existing reviews
+UPDATE products p
+SET review_count = a.review_count,
+    rating_sum = a.rating_sum,
+    rating_1_count = a.rating_1_count,
+    rating_2_count = a.rating_2_count,
+    rating_3_count = a.rating_3_count,
+    rating_4_count = a.rating_4_count,
+    rating_5_count = a.rating_5_count,
+    average_rating = a.rating_sum::DOUBLE PRECISION / a.review_count
+FROM (
+    SELECT product_id,
+           COUNT(*) AS review_count,
+           SUM(rating) AS rating_sum,
+           COUNT(*) FILTER (WHERE rating = 1) AS rating_1_count,
+           COUNT(*) FILTER (WHERE rating = 2) AS rating_2_count,
+           COUNT(*) FILTER (WHERE rating = 3) AS rating_3_count,
+           COUNT(*) FILTER (WHERE rating = 4) AS rating_4_count,
+           COUNT(*) FILTER (WHERE rating = 5) AS rating_5_count
+    FROM reviews
+    WHERE product_id IS NOT NULL
+    GROUP BY product_id
+) a
+WHERE p.id = a.product_id;
+
+CREATE INDEX idx_reviews_product_rating ON reviews(product_id, rating);
\ No newline at end of file
@@ -0,0 +1,14 @@
+-- Keyset pagination of a product's reviews in each sort mode
+UPDATE reviews SET helpful_votes = 0 WHERE helpful_votes IS NULL;
+UPDATE reviews SET verified_purchase = FALSE WHERE verified_purchase IS NULL;
+ALTER TABLE reviews
+    ALTER COLUMN helpful_votes SET NOT NULL,
+    ALTER COLUMN verified_purchase SET NOT NULL;
+
+CREATE INDEX idx_reviews_product_newest ON reviews(product_id, id DESC);
+CREATE INDEX idx_reviews_product_helpful ON reviews(product_id, helpful_votes DESC, id DESC);
+CREATE INDEX idx_reviews_product_verified ON reviews(product_id, verified_purchase DESC, id DESC);
+
+-- Rating sorts break ties on the id as well
+DROP INDEX idx_reviews_product_rating;
+CREATE INDEX idx_reviews_product_rating ON reviews(product_id, rating, id DESC);
\ No newline at end of file
@@ -0,0 +1,7 @@
+-- Helpful vote log segments already applied, per node-local log, so a replay after a crash is skipped
+CREATE TABLE helpful_vote_flushes (
+    log_id VARCHAR(64) NOT NULL,
+    segment BIGINT NOT NULL,
+    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (log_id, segment)
+);
\ No newline at end of file
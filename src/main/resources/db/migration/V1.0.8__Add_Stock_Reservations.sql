@@ -0,0 +1,34 @@
+-- Sellable (unreserved) stock per product, split across shards so concurrent checkouts of one
+-- product mostly decrement different rows
+CREATE TABLE inventory_shards (
+    product_id BIGINT NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    shard SMALLINT NOT NULL,
+    available INTEGER NOT NULL CHECK (available >= 0),
+    PRIMARY KEY (product_id, shard)
+);
+
+-- Checkout holds; hold_id groups the lines of one checkout before its order exists
+CREATE TABLE stock_reservations (
+    id BIGSERIAL PRIMARY KEY,
+    hold_id VARCHAR(64) NOT NULL,
+    order_id BIGINT REFERENCES orders(id),
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    shard INTEGER NOT NULL,
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    status VARCHAR(20) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_stock_reservations_hold ON stock_reservations(hold_id);
+CREATE INDEX idx_stock_reservations_order ON stock_reservations(order_id);
+CREATE INDEX idx_stock_reservations_held ON stock_reservations(product_id) WHERE status = 'HELD';
+CREATE INDEX idx_stock_reservations_expiry ON stock_reservations(expires_at) WHERE status = 'HELD';
+
+-- Spread existing stock over the default 8 shards
+INSERT INTO inventory_shards (product_id, shard, available)
+SELECT p.id, s.shard,
+       GREATEST(p.stock_quantity, 0) / 8 + CASE WHEN s.shard < GREATEST(p.stock_quantity, 0) % 8 THEN 1 ELSE 0 END
+FROM products p
+CROSS JOIN generate_series(0, 7) AS s(shard);
\ No newline at end of file
@@ -0,0 +1,26 @@
+-- Analytics are rolled up by the application instead of a per-row trigger
+DROP TRIGGER IF EXISTS inventory_transaction_analytics ON inventory_transactions;
+DROP FUNCTION IF EXISTS update_inventory_analytics();
+
+-- Stock level around each transaction, and when a flush folded it into inventory_analytics
+ALTER TABLE inventory_transactions ADD COLUMN stock_before INTEGER;
+ALTER TABLE inventory_transactions ADD COLUMN stock_after INTEGER;
+ALTER TABLE inventory_transactions ADD COLUMN aggregated_at TIMESTAMP;
+
+-- Existing transactions went through the trigger
+UPDATE inventory_transactions SET aggregated_at = created_at;
+
+CREATE INDEX idx_inventory_transactions_unaggregated ON inventory_transactions(id)
+    WHERE aggregated_at IS NULL;
+
+-- Transactions that set each day's starting and ending stock, so flushes can arrive in any order
+ALTER TABLE inventory_analytics ADD COLUMN first_transaction_id BIGINT;
+ALTER TABLE inventory_analytics ADD COLUMN last_transaction_id BIGINT;
+
+-- One row per product and day; the trigger's upsert relied on this without creating it
+DELETE FROM inventory_analytics a
+    USING inventory_analytics b
+    WHERE a.product_id = b.product_id AND a.date = b.date AND a.id > b.id;
+
+ALTER TABLE inventory_analytics
+    ADD CONSTRAINT uk_inventory_analytics_product_date UNIQUE (product_id, date);
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.dto.ProductFilterDTO;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Filter compilation over every combination of the six optional predicates (search term, category,
+// min/max price, min rating, in stock): "cached" is the steady state of a shared compiler, "uncached"
+// builds every shape from scratch as the repository did before shapes were cached.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductFilterCompilerBenchmark {
+    
+    private static final int PREDICATES = 6;
+    private static final int COMBINATIONS = 1 << PREDICATES;
+    
+    private final ProductFilterDTO[] filters = new ProductFilterDTO[COMBINATIONS];
+    private ProductFilterCompiler compiler;
+    
+    @Setup
+    public void setUp() {
+        for (int combination = 0; combination < COMBINATIONS; combination++) {
+            filters[combination] = filter(combination);
+        }
+        compiler = new ProductFilterCompiler();
+        for (ProductFilterDTO filter : filters) {
+            compiler.compile(filter, null, ProductFilterCompiler.Mode.OFFSET);
+        }
+    }
+    
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+        for (ProductFilterDTO filter : filters) {
+            ProductFilterCompiler.CompiledQuery query = compiler
+                .compile(filter, null, ProductFilterCompiler.Mode.OFFSET);
+            blackhole.consume(query.bindSelect(filter, null, null));
+        }
+    }
+    
+    @Benchmark
+    public void uncached(Blackhole blackhole) {
+        for (ProductFilterDTO filter : filters) {
+            ProductFilterCompiler.CompiledQuery query = new ProductFilterCompiler()
+                .compile(filter, null, ProductFilterCompiler.Mode.OFFSET);
+            blackhole.consume(query.bindSelect(filter, null, null));
+        }
+    }
+    
+    private static ProductFilterDTO filter(int combination) {
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setSortBy("price");
+        filter.setSortDirection("desc");
+        if ((combination & 1) != 0) {
+            filter.setSearchTerm("wireless");
+        }
+        if ((combination & 1 << 1) != 0) {
+            filter.setCategoryId(7L);
+        }
+        if ((combination & 1 << 2) != 0) {
+            filter.setMinPrice(new BigDecimal("10.00"));
+        }
+        if ((combination & 1 << 3) != 0) {
+            filter.setMaxPrice(new BigDecimal("250.00"));
+        }
+        if ((combination & 1 << 4) != 0) {
+            filter.setMinRating(3.5);
+        }
+        if ((combination & 1 << 5) != 0) {
+            filter.setInStock(true);
+        }
+        return filter;
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProductFilterCompilerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedBitmapTest {
+    
+    // One past the largest chunk that is still stored as a sorted array
+    private static final int PAST_ARRAY_LIMIT = 4097;
+    
+    @Test
+    void addCrossesArrayLimitWithinOneChunk() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int i = 0; i < PAST_ARRAY_LIMIT; i++) {
+            bitmap.add(i * 3L);
+        }
+        
+        assertEquals(PAST_ARRAY_LIMIT, bitmap.cardinality());
+        assertTrue(bitmap.contains(0));
+        assertTrue(bitmap.contains((PAST_ARRAY_LIMIT - 1) * 3L));
+        assertFalse(bitmap.contains(1));
+        assertArrayEquals(expected(0, PAST_ARRAY_LIMIT), bitmap.toArray());
+    }
+    
+    @Test
+    void removeCrossesArrayLimitWithinOneChunk() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int i = 0; i < PAST_ARRAY_LIMIT + 10; i++) {
+            bitmap.add(i * 3L);
+        }
+        for (int i = 0; i < 11; i++) {
+            bitmap.remove(i * 3L);
+        }
+        
+        assertEquals(PAST_ARRAY_LIMIT - 1, bitmap.cardinality());
+        assertFalse(bitmap.contains(0));
+        assertArrayEquals(expected(11, PAST_ARRAY_LIMIT + 10), bitmap.toArray());
+        
+        // Back over the limit and down to nothing again
+        bitmap.add(0);
+        bitmap.add(3);
+        assertEquals(PAST_ARRAY_LIMIT + 1, bitmap.cardinality());
+        for (long id : bitmap.toArray()) {
+            bitmap.remove(id);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+    
+    @Test
+    void setOperationsAgreeAcrossContainerKinds() {
+        CompressedBitmap dense = new CompressedBitmap();
+        CompressedBitmap sparse = new CompressedBitmap();
+        for (int i = 0; i < PAST_ARRAY_LIMIT * 2; i++) {
+            dense.add(i);
+        }
+        for (int i = 0; i < 100; i++) {
+            sparse.add(i * 100L);
+        }
+        
+        assertEquals(82, dense.and(sparse).cardinality());
+        assertEquals(PAST_ARRAY_LIMIT * 2 + 18, dense.or(sparse).cardinality());
+        assertEquals(PAST_ARRAY_LIMIT * 2 - 82, dense.andNot(sparse).cardinality());
+        assertEquals(18, sparse.andNot(dense).cardinality());
+    }
+    
+    private static long[] expected(int from, int to) {
+        long[] ids = new long[to - from];
+        for (int i = from; i < to; i++) {
+            ids[i - from] = i * 3L;
+        }
+        return ids;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.ecommerce.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Reading a 20,000 row supplier catalog in import batches, the stage every import row passes through
+// before validation and the batch writes; the end-to-end rate of a real import is reported in its
+// result as rows per minute.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductImportReaderBenchmark {
+    
+    private static final int ROWS = 20_000;
+    private static final int BATCH_SIZE = 500;
+    
+    private Path file;
+    
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("product-import", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("name,description,price,stock_quantity,tags,active\n");
+            for (int i = 0; i < ROWS; i++) {
+                writer.write("Imported product " + i + ",\"Bulk, generated\"," + (i % 500 + 1) + ".99,"
+                    + i % 100 + ",bulk|batch-" + i % 20 + ",true\n");
+            }
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Benchmark
+    public void readCsv(Blackhole blackhole) throws IOException {
+        try (ProductImportReader reader = new ProductImportReader(file, ProductExportService.Format.CSV)) {
+            List<ProductImportReader.Record> records;
+            do {
+                records = reader.next(BATCH_SIZE);
+                blackhole.consume(records);
+            } while (records.size() == BATCH_SIZE);
+        }
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProductImportReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
\ No newline at end of file
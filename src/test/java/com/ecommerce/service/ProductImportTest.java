@@ -0,0 +1,92 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductImportResultDTO;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.inject.Inject;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Imports a generated supplier catalog spanning several batches end to end
+@QuarkusTest
+class ProductImportTest {
+    
+    private static final int ROWS = 2_000;
+    
+    @Inject
+    ProductImportService importService;
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Test
+    void importsEveryRowOfAMultiBatchFile() throws IOException {
+        String run = "import-test-" + UUID.randomUUID().toString().substring(0, 8);
+        Path file = Files.createTempFile("product-import", ".csv");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("name,description,price,stock_quantity,tags,active\n");
+                for (int i = 0; i < ROWS; i++) {
+                    writer.write(run + " " + i + ",\"Bulk, generated\"," + (i % 500 + 1) + ".99,"
+                        + i % 100 + "," + run + "|" + run + "-" + i % 20 + ",true\n");
+                }
+            }
+            
+            ProductImportResultDTO result = onOwnContext(() ->
+                    importService.importFile(file, ProductExportService.Format.CSV))
+                .await().atMost(Duration.ofMinutes(5));
+            
+            assertEquals(ROWS, result.getRows());
+            assertEquals(0, result.getFailed(), () -> result.getErrors().toString());
+            assertEquals(ROWS, result.getCreated());
+            assertEquals(ROWS, count("select count(*) from products where name like ?1", run + " %"));
+            assertEquals(ROWS * 2L, count("select count(*) from product_tags pt join tags t on t.id = pt.tag_id " +
+                "where t.name like ?1", run + "%"));
+        } finally {
+            Files.deleteIfExists(file);
+            onOwnContext(() -> sessionFactory.withTransaction(session -> session
+                    .createNativeQuery("delete from product_tags where product_id in " +
+                        "(select id from products where name like ?1)")
+                    .setParameter(1, run + " %")
+                    .executeUpdate()
+                    .chain(() -> session.createNativeQuery("delete from products where name like ?1")
+                        .setParameter(1, run + " %")
+                        .executeUpdate())
+                    .chain(() -> session.createNativeQuery("delete from tags where name like ?1")
+                        .setParameter(1, run + "%")
+                        .executeUpdate())))
+                .await().atMost(Duration.ofSeconds(30));
+        }
+    }
+    
+    private long count(String sql, String pattern) {
+        return onOwnContext(() -> sessionFactory.withSession(session -> session
+                .createNativeQuery(sql, Long.class)
+                .setParameter(1, pattern)
+                .getSingleResult()))
+            .await().atMost(Duration.ofSeconds(30));
+    }
+    
+    private <T> Uni<T> onOwnContext(Supplier<Uni<T>> work) {
+        return Uni.createFrom().emitter(emitter -> {
+            Context context = VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext());
+            context.runOnContext(ignored -> work.get().subscribe().with(emitter::complete, emitter::fail));
+        });
+    }
+}
\ No newline at end of file
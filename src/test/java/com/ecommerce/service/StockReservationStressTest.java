@@ -0,0 +1,81 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.repository.StockReservationRepository;
+import com.ecommerce.exception.InsufficientStockException;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+class StockReservationStressTest {
+    
+    private static final int CHECKOUTS = 5000;
+    private static final int STOCK = 1000;
+    
+    @Inject
+    StockReservationService reservationService;
+    
+    @Inject
+    StockReservationRepository reservationRepository;
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Test
+    void concurrentCheckoutsNeverOversell() {
+        Long productId = onOwnContext(() -> sessionFactory.withTransaction(session -> session
+                .createNativeQuery("insert into products (name, price, stock_quantity, active, version) " +
+                    "values (?1, ?2, ?3, true, 0) returning id", Long.class)
+                .setParameter(1, "Stress test product")
+                .setParameter(2, new BigDecimal("9.99"))
+                .setParameter(3, STOCK)
+                .getSingleResult()))
+            .call(id -> onOwnContext(() -> reservationService.rebalance(List.of(id))))
+            .await().atMost(Duration.ofSeconds(30));
+        
+        // Every checkout runs on its own request context, as concurrent HTTP requests would
+        List<Uni<Boolean>> checkouts = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            checkouts.add(onOwnContext(() -> reservationService.reserve(Map.of(productId, 1)))
+                .map(holdId -> true)
+                .onFailure(InsufficientStockException.class).recoverWithItem(false));
+        }
+        List<Boolean> held = Uni.join().all(checkouts).andFailFast()
+            .await().atMost(Duration.ofMinutes(5));
+        
+        assertEquals(STOCK, held.stream().filter(Boolean::booleanValue).count());
+        Object[] sellable = onOwnContext(() -> reservationRepository.findSellable(productId))
+            .await().atMost(Duration.ofSeconds(30));
+        assertEquals(0L, ((Number) sellable[1]).longValue());
+        Long reserved = onOwnContext(() -> sessionFactory.withSession(session -> session
+                .createNativeQuery("select coalesce(sum(quantity), 0) from stock_reservations " +
+                    "where product_id = ?1 and status = 'HELD'", Long.class)
+                .setParameter(1, productId)
+                .getSingleResult()))
+            .await().atMost(Duration.ofSeconds(30));
+        assertEquals(STOCK, reserved.longValue());
+    }
+    
+    private <T> Uni<T> onOwnContext(Supplier<Uni<T>> work) {
+        return Uni.createFrom().emitter(emitter -> {
+            Context context = VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext());
+            context.runOnContext(ignored -> work.get().subscribe().with(emitter::complete, emitter::fail));
+        });
+    }
+}
\ No newline at end of file